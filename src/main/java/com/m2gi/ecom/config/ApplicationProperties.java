@@ -1,5 +1,10 @@
 package com.m2gi.ecom.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -9,4 +14,812 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  * See {@link tech.jhipster.config.JHipsterProperties} for a good example.
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
-public class ApplicationProperties {}
+public class ApplicationProperties {
+
+    private final Inventory inventory = new Inventory();
+
+    private final Idempotency idempotency = new Idempotency();
+
+    private final CartLock cartLock = new CartLock();
+
+    private final GuestCart guestCart = new GuestCart();
+
+    private final Search search = new Search();
+
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    public Idempotency getIdempotency() {
+        return idempotency;
+    }
+
+    public CartLock getCartLock() {
+        return cartLock;
+    }
+
+    public GuestCart getGuestCart() {
+        return guestCart;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public static class Inventory {
+
+        private final Engine engine = new Engine();
+
+        private final Reservation reservation = new Reservation();
+
+        private final Retry retry = new Retry();
+
+        private final Stream stream = new Stream();
+
+        private final FlashSale flashSale = new FlashSale();
+
+        private final Ledger ledger = new Ledger();
+
+        private final LowStock lowStock = new LowStock();
+
+        private final Availability availability = new Availability();
+
+        public Engine getEngine() {
+            return engine;
+        }
+
+        public Reservation getReservation() {
+            return reservation;
+        }
+
+        public Retry getRetry() {
+            return retry;
+        }
+
+        public Stream getStream() {
+            return stream;
+        }
+
+        public FlashSale getFlashSale() {
+            return flashSale;
+        }
+
+        public Ledger getLedger() {
+            return ledger;
+        }
+
+        public LowStock getLowStock() {
+            return lowStock;
+        }
+
+        public Availability getAvailability() {
+            return availability;
+        }
+
+        /**
+         * Single-writer in-memory engine for the stock of hot products.
+         */
+        public static class Engine {
+
+            private boolean enabled = false;
+
+            /**
+             * Ids of the products always handled by the engine.
+             */
+            private Set<Long> hotProducts = new HashSet<>();
+
+            /**
+             * Number of stock mutations within a detection interval above which a product is handled by the engine,
+             * {@code 0} disables the automatic detection.
+             */
+            private int autoDetectionThreshold = 0;
+
+            private Duration detectionInterval = Duration.ofSeconds(10);
+
+            private int ringBufferSize = 4096;
+
+            private Duration flushInterval = Duration.ofMillis(200);
+
+            private Duration submitTimeout = Duration.ofSeconds(5);
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public Set<Long> getHotProducts() {
+                return hotProducts;
+            }
+
+            public void setHotProducts(Set<Long> hotProducts) {
+                this.hotProducts = hotProducts;
+            }
+
+            public int getAutoDetectionThreshold() {
+                return autoDetectionThreshold;
+            }
+
+            public void setAutoDetectionThreshold(int autoDetectionThreshold) {
+                this.autoDetectionThreshold = autoDetectionThreshold;
+            }
+
+            public Duration getDetectionInterval() {
+                return detectionInterval;
+            }
+
+            public void setDetectionInterval(Duration detectionInterval) {
+                this.detectionInterval = detectionInterval;
+            }
+
+            public int getRingBufferSize() {
+                return ringBufferSize;
+            }
+
+            public void setRingBufferSize(int ringBufferSize) {
+                this.ringBufferSize = ringBufferSize;
+            }
+
+            public Duration getFlushInterval() {
+                return flushInterval;
+            }
+
+            public void setFlushInterval(Duration flushInterval) {
+                this.flushInterval = flushInterval;
+            }
+
+            public Duration getSubmitTimeout() {
+                return submitTimeout;
+            }
+
+            public void setSubmitTimeout(Duration submitTimeout) {
+                this.submitTimeout = submitTimeout;
+            }
+        }
+
+        /**
+         * Stock held by the cart lines, given back when they expire.
+         */
+        public static class Reservation {
+
+            /**
+             * Time to live of a cart line, from its creation.
+             */
+            private Duration ttl = Duration.ofDays(3);
+
+            private Duration tickDuration = Duration.ofSeconds(10);
+
+            private int wheelSize = 4096;
+
+            /**
+             * Maximum number of cart lines expired in one transaction.
+             */
+            private int expiryBatchSize = 500;
+
+            public Duration getTtl() {
+                return ttl;
+            }
+
+            public void setTtl(Duration ttl) {
+                this.ttl = ttl;
+            }
+
+            public Duration getTickDuration() {
+                return tickDuration;
+            }
+
+            public void setTickDuration(Duration tickDuration) {
+                this.tickDuration = tickDuration;
+            }
+
+            public int getWheelSize() {
+                return wheelSize;
+            }
+
+            public void setWheelSize(int wheelSize) {
+                this.wheelSize = wheelSize;
+            }
+
+            public int getExpiryBatchSize() {
+                return expiryBatchSize;
+            }
+
+            public void setExpiryBatchSize(int expiryBatchSize) {
+                this.expiryBatchSize = expiryBatchSize;
+            }
+        }
+
+        /**
+         * Retries of the transactions failing on an optimistic-lock conflict on {@code Product.version}.
+         */
+        public static class Retry {
+
+            private int maxAttempts = 4;
+
+            private Duration initialBackoff = Duration.ofMillis(20);
+
+            private Duration maxBackoff = Duration.ofMillis(500);
+
+            private double multiplier = 2;
+
+            /**
+             * Answer a conflict with a 409 at once instead of retrying.
+             */
+            private boolean failFast = false;
+
+            /**
+             * Number of buckets the product ids are spread into for the metrics.
+             */
+            private int metricBuckets = 16;
+
+            public int getMaxAttempts() {
+                return maxAttempts;
+            }
+
+            public void setMaxAttempts(int maxAttempts) {
+                this.maxAttempts = maxAttempts;
+            }
+
+            public Duration getInitialBackoff() {
+                return initialBackoff;
+            }
+
+            public void setInitialBackoff(Duration initialBackoff) {
+                this.initialBackoff = initialBackoff;
+            }
+
+            public Duration getMaxBackoff() {
+                return maxBackoff;
+            }
+
+            public void setMaxBackoff(Duration maxBackoff) {
+                this.maxBackoff = maxBackoff;
+            }
+
+            public double getMultiplier() {
+                return multiplier;
+            }
+
+            public void setMultiplier(double multiplier) {
+                this.multiplier = multiplier;
+            }
+
+            public boolean isFailFast() {
+                return failFast;
+            }
+
+            public void setFailFast(boolean failFast) {
+                this.failFast = failFast;
+            }
+
+            public int getMetricBuckets() {
+                return metricBuckets;
+            }
+
+            public void setMetricBuckets(int metricBuckets) {
+                this.metricBuckets = metricBuckets;
+            }
+        }
+
+        /**
+         * Server-sent events pushing the stock changes of the products.
+         */
+        public static class Stream {
+
+            /**
+             * Interval the changes of a product are coalesced over, at most one event is pushed per product and interval.
+             */
+            private Duration interval = Duration.ofSeconds(1);
+
+            private Duration timeout = Duration.ofMinutes(30);
+
+            /**
+             * Maximum number of products followed by one stream.
+             */
+            private int maxProducts = 50;
+
+            public Duration getInterval() {
+                return interval;
+            }
+
+            public void setInterval(Duration interval) {
+                this.interval = interval;
+            }
+
+            public Duration getTimeout() {
+                return timeout;
+            }
+
+            public void setTimeout(Duration timeout) {
+                this.timeout = timeout;
+            }
+
+            public int getMaxProducts() {
+                return maxProducts;
+            }
+
+            public void setMaxProducts(int maxProducts) {
+                this.maxProducts = maxProducts;
+            }
+        }
+
+        /**
+         * Waiting room of the products on flash sale, only the shoppers admitted from its queue can add them to their cart.
+         */
+        public static class FlashSale {
+
+            /**
+             * Ids of the products on flash sale from the startup.
+             */
+            private Set<Long> products = new HashSet<>();
+
+            /**
+             * Maximum number of shoppers admitted at the same time per product, which bounds the concurrent writes of its row.
+             */
+            private int maxAdmitted = 20;
+
+            /**
+             * Maximum number of shoppers waiting per product.
+             */
+            private int maxWaiting = 100000;
+
+            /**
+             * Time an admitted shopper has to add the product to the cart.
+             */
+            private Duration tokenTtl = Duration.ofMinutes(2);
+
+            /**
+             * Time after which a waiting shopper who stopped polling the status of the ticket leaves the queue.
+             */
+            private Duration abandonTimeout = Duration.ofSeconds(30);
+
+            private Duration admissionInterval = Duration.ofMillis(500);
+
+            public Set<Long> getProducts() {
+                return products;
+            }
+
+            public void setProducts(Set<Long> products) {
+                this.products = products;
+            }
+
+            public int getMaxAdmitted() {
+                return maxAdmitted;
+            }
+
+            public void setMaxAdmitted(int maxAdmitted) {
+                this.maxAdmitted = maxAdmitted;
+            }
+
+            public int getMaxWaiting() {
+                return maxWaiting;
+            }
+
+            public void setMaxWaiting(int maxWaiting) {
+                this.maxWaiting = maxWaiting;
+            }
+
+            public Duration getTokenTtl() {
+                return tokenTtl;
+            }
+
+            public void setTokenTtl(Duration tokenTtl) {
+                this.tokenTtl = tokenTtl;
+            }
+
+            public Duration getAbandonTimeout() {
+                return abandonTimeout;
+            }
+
+            public void setAbandonTimeout(Duration abandonTimeout) {
+                this.abandonTimeout = abandonTimeout;
+            }
+
+            public Duration getAdmissionInterval() {
+                return admissionInterval;
+            }
+
+            public void setAdmissionInterval(Duration admissionInterval) {
+                this.admissionInterval = admissionInterval;
+            }
+        }
+
+        /**
+         * Append-only ledger of the stock movements, folded into per-product snapshots.
+         */
+        public static class Ledger {
+
+            private Duration compactionInterval = Duration.ofMinutes(1);
+
+            /**
+             * Maximum number of movements folded into the snapshots per transaction.
+             */
+            private int compactionChunkSize = 5000;
+
+            /**
+             * Time the folded movements are kept for the audit.
+             */
+            private Duration retention = Duration.ofDays(90);
+
+            public Duration getCompactionInterval() {
+                return compactionInterval;
+            }
+
+            public void setCompactionInterval(Duration compactionInterval) {
+                this.compactionInterval = compactionInterval;
+            }
+
+            public int getCompactionChunkSize() {
+                return compactionChunkSize;
+            }
+
+            public void setCompactionChunkSize(int compactionChunkSize) {
+                this.compactionChunkSize = compactionChunkSize;
+            }
+
+            public Duration getRetention() {
+                return retention;
+            }
+
+            public void setRetention(Duration retention) {
+                this.retention = retention;
+            }
+        }
+
+        /**
+         * Watcher of the products whose stock is at or below their low stock threshold.
+         */
+        public static class LowStock {
+
+            /**
+             * Threshold of the products without one.
+             */
+            private int defaultThreshold = 0;
+
+            /**
+             * Interval of the digests mailed to the administrators, listing the products newly at risk.
+             */
+            private Duration digestInterval = Duration.ofMinutes(15);
+
+            public int getDefaultThreshold() {
+                return defaultThreshold;
+            }
+
+            public void setDefaultThreshold(int defaultThreshold) {
+                this.defaultThreshold = defaultThreshold;
+            }
+
+            public Duration getDigestInterval() {
+                return digestInterval;
+            }
+
+            public void setDigestInterval(Duration digestInterval) {
+                this.digestInterval = digestInterval;
+            }
+        }
+
+        /**
+         * Coarse availability of the products shown by the listings instead of their stock.
+         */
+        public static class Availability {
+
+            /**
+             * Stock at or below which a product in stock is shown as low.
+             */
+            private int lowQuantity = 5;
+
+            public int getLowQuantity() {
+                return lowQuantity;
+            }
+
+            public void setLowQuantity(int lowQuantity) {
+                this.lowQuantity = lowQuantity;
+            }
+        }
+    }
+
+    /**
+     * Replay of the responses of non-idempotent requests sent again with the same {@code Idempotency-Key} header.
+     */
+    public static class Idempotency {
+
+        private boolean enabled = true;
+
+        /**
+         * Patterns of the paths of the {@code POST} requests accepting the header.
+         */
+        private List<String> paths = new ArrayList<>(List.of("/api/cart/products/*", "/api/cart/lines:batch", "/api/orders"));
+
+        private Duration ttl = Duration.ofHours(24);
+
+        /**
+         * Maximum number of keys kept in memory, the oldest completed ones are evicted first.
+         */
+        private int maxEntries = 10000;
+
+        /**
+         * Also persist the responses in the {@code idempotency_key} table, so they are shared by the instances and survive a
+         * restart.
+         */
+        private boolean jdbc = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getPaths() {
+            return paths;
+        }
+
+        public void setPaths(List<String> paths) {
+            this.paths = paths;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public boolean isJdbc() {
+            return jdbc;
+        }
+
+        public void setJdbc(boolean jdbc) {
+            this.jdbc = jdbc;
+        }
+    }
+
+    /**
+     * Locks serializing the mutations of a same cart within the instance.
+     */
+    public static class CartLock {
+
+        /**
+         * Number of locks the carts are spread into.
+         */
+        private int stripes = 1024;
+
+        /**
+         * Maximum time a mutation waits for the lock of its cart, before failing with a {@code 409}.
+         */
+        private Duration timeout = Duration.ofSeconds(10);
+
+        public int getStripes() {
+            return stripes;
+        }
+
+        public void setStripes(int stripes) {
+            this.stripes = stripes;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    /**
+     * Carts of the anonymous visitors, kept off the heap and merged into the cart of the user at login.
+     */
+    public static class GuestCart {
+
+        /**
+         * Off-heap memory of the guest carts, in megabytes. The least recently used carts are evicted beyond it.
+         */
+        private int maxSizeMb = 64;
+
+        /**
+         * Time a guest cart is kept after its last change.
+         */
+        private Duration ttl = Duration.ofDays(3);
+
+        private int maxLines = 100;
+
+        private String cookieName = "guest-cart";
+
+        public int getMaxSizeMb() {
+            return maxSizeMb;
+        }
+
+        public void setMaxSizeMb(int maxSizeMb) {
+            this.maxSizeMb = maxSizeMb;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public int getMaxLines() {
+            return maxLines;
+        }
+
+        public void setMaxLines(int maxLines) {
+            this.maxLines = maxLines;
+        }
+
+        public String getCookieName() {
+            return cookieName;
+        }
+
+        public void setCookieName(String cookieName) {
+            this.cookieName = cookieName;
+        }
+    }
+
+    /**
+     * Search of the products.
+     */
+    public static class Search {
+
+        public enum Strategy {
+            /**
+             * In-memory inverted index ranked with BM25.
+             */
+            INDEX,
+            /**
+             * {@code like} predicates on the {@code product} table, without any index.
+             */
+            LIKE,
+            /**
+             * Full-text search of PostgreSQL ranked with {@code ts_rank}, then trigram similarity when nothing matches.
+             */
+            POSTGRESQL,
+        }
+
+        private Strategy strategy = Strategy.INDEX;
+
+        /**
+         * Delay between the checks for the catalog changes shared by many products, after which the search and facet
+         * indexes are rebuilt.
+         */
+        private Duration rebuildDelay = Duration.ofSeconds(10);
+
+        private final Suggest suggest = new Suggest();
+
+        private final Fuzzy fuzzy = new Fuzzy();
+
+        private final ResultCache resultCache = new ResultCache();
+
+        public Strategy getStrategy() {
+            return strategy;
+        }
+
+        public void setStrategy(Strategy strategy) {
+            this.strategy = strategy;
+        }
+
+        public Duration getRebuildDelay() {
+            return rebuildDelay;
+        }
+
+        public void setRebuildDelay(Duration rebuildDelay) {
+            this.rebuildDelay = rebuildDelay;
+        }
+
+        public Suggest getSuggest() {
+            return suggest;
+        }
+
+        public Fuzzy getFuzzy() {
+            return fuzzy;
+        }
+
+        public ResultCache getResultCache() {
+            return resultCache;
+        }
+
+        /**
+         * Suggestions of the search box, from the names of the products, the brands and the categories.
+         */
+        public static class Suggest {
+
+            /**
+             * Suggestions kept for each prefix, the most popular first.
+             */
+            private int maxResults = 10;
+
+            /**
+             * Delay between the checks for catalog changes, after which the suggestions are rebuilt.
+             */
+            private Duration rebuildDelay = Duration.ofSeconds(10);
+
+            public int getMaxResults() {
+                return maxResults;
+            }
+
+            public void setMaxResults(int maxResults) {
+                this.maxResults = maxResults;
+            }
+
+            public Duration getRebuildDelay() {
+                return rebuildDelay;
+            }
+
+            public void setRebuildDelay(Duration rebuildDelay) {
+                this.rebuildDelay = rebuildDelay;
+            }
+        }
+
+        /**
+         * Typo-tolerant search of the {@code index} strategy, matching the terms within one or two edits of the query.
+         */
+        public static class Fuzzy {
+
+            private boolean enabled = true;
+
+            /**
+             * Number of products found exactly below which the products found with typos are added after them.
+             */
+            private int minHits = 5;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMinHits() {
+                return minHits;
+            }
+
+            public void setMinHits(int minHits) {
+                this.minHits = minHits;
+            }
+        }
+
+        /**
+         * Cache of the ids of the products found by the searches and listed by the listings.
+         */
+        public static class ResultCache {
+
+            private boolean enabled = true;
+
+            /**
+             * Results kept, the most popular queries being the most likely to stay.
+             */
+            private int maxEntries = 1000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(int maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.m2gi.ecom.config;
 
 import java.time.Duration;
 import org.ehcache.config.builders.*;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.impl.serialization.PlainJavaSerializer;
 import org.ehcache.jsr107.Eh107Configuration;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
@@ -23,8 +25,9 @@ public class CacheConfiguration {
     private GitProperties gitProperties;
     private BuildProperties buildProperties;
     private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
+    private final javax.cache.configuration.Configuration<Object, Object> guestCartConfiguration;
 
-    public CacheConfiguration(JHipsterProperties jHipsterProperties) {
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
         JHipsterProperties.Cache.Ehcache ehcache = jHipsterProperties.getCache().getEhcache();
 
         jcacheConfiguration =
@@ -34,6 +37,23 @@ public class CacheConfiguration {
                     .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ehcache.getTimeToLiveSeconds())))
                     .build()
             );
+
+        // Off the heap, so that the carts of short browsing sessions do not put pressure on the garbage collector
+        ApplicationProperties.GuestCart guestCart = applicationProperties.getGuestCart();
+        guestCartConfiguration =
+            Eh107Configuration.fromEhcacheCacheConfiguration(
+                CacheConfigurationBuilder
+                    .newCacheConfigurationBuilder(
+                        Object.class,
+                        Object.class,
+                        ResourcePoolsBuilder.newResourcePoolsBuilder().offheap(guestCart.getMaxSizeMb(), MemoryUnit.MB)
+                    )
+                    .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(guestCart.getTtl()))
+                    // The off-heap tier stores bytes, and has no default serializer for the Object type
+                    .withKeySerializer(new PlainJavaSerializer<>(getClass().getClassLoader()))
+                    .withValueSerializer(new PlainJavaSerializer<>(getClass().getClassLoader()))
+                    .build()
+            );
     }
 
     @Bean
@@ -41,16 +61,26 @@ public class CacheConfiguration {
         return cm -> {
             createCache(cm, com.m2gi.ecom.repository.UserRepository.USERS_BY_LOGIN_CACHE);
             createCache(cm, com.m2gi.ecom.repository.UserRepository.USERS_BY_EMAIL_CACHE);
+            createCache(cm, com.m2gi.ecom.service.impl.CartViewCache.CART_VIEWS_BY_LOGIN_CACHE);
+            createCache(cm, com.m2gi.ecom.service.impl.GuestCartStore.GUEST_CARTS_CACHE, guestCartConfiguration);
             // jhipster-needle-ehcache-add-entry
         };
     }
 
     private void createCache(javax.cache.CacheManager cm, String cacheName) {
+        createCache(cm, cacheName, jcacheConfiguration);
+    }
+
+    private void createCache(
+        javax.cache.CacheManager cm,
+        String cacheName,
+        javax.cache.configuration.Configuration<Object, Object> configuration
+    ) {
         javax.cache.Cache<Object, Object> cache = cm.getCache(cacheName);
         if (cache != null) {
             cache.clear();
         } else {
-            cm.createCache(cacheName, jcacheConfiguration);
+            cm.createCache(cacheName, configuration);
         }
     }
 
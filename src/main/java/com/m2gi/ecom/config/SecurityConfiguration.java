@@ -95,8 +95,12 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
             .antMatchers("/api/account/reset-password/finish").permitAll()
             .antMatchers("/api/admin/**").hasAuthority(AuthoritiesConstants.ADMIN)
             .antMatchers("/api/products").permitAll()
+            .antMatchers("/api/products/suggest").permitAll()
+            // Opened by an EventSource, which cannot send the Authorization header
+            .antMatchers("/api/products/stock-stream").permitAll()
             .antMatchers("/api/promotions/active").permitAll()
             .antMatchers("/api/categories/**").permitAll()
+            .antMatchers("/api/guest-cart/**").permitAll()
             .antMatchers("/api/**").authenticated()
             .antMatchers("/management/health").permitAll()
             .antMatchers("/management/health/**").permitAll()
@@ -1,6 +1,7 @@
 package com.m2gi.ecom.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.m2gi.ecom.domain.enumeration.Availability;
 import com.m2gi.ecom.domain.enumeration.WeightUnit;
 import io.swagger.annotations.ApiModelProperty;
 import java.io.Serializable;
@@ -8,6 +9,7 @@ import java.math.BigDecimal;
 import java.util.HashSet;
 import java.util.Set;
 import javax.persistence.*;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 /**
@@ -61,6 +63,16 @@ public class Product implements Serializable {
     @Column(name = "weight_unit")
     private WeightUnit weightUnit;
 
+    @Min(value = 0)
+    @Column(name = "low_stock_threshold")
+    private Integer lowStockThreshold;
+
+    /**
+     * Set on the listings only, in place of the quantity.
+     */
+    @Transient
+    private Availability availability;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnoreProperties(value = { "parent", "children", "associatedProducts" }, allowSetters = true)
     private Category category;
@@ -240,6 +252,32 @@ public class Product implements Serializable {
         this.weightUnit = weightUnit;
     }
 
+    public Integer getLowStockThreshold() {
+        return this.lowStockThreshold;
+    }
+
+    public Product lowStockThreshold(Integer lowStockThreshold) {
+        this.setLowStockThreshold(lowStockThreshold);
+        return this;
+    }
+
+    public void setLowStockThreshold(Integer lowStockThreshold) {
+        this.lowStockThreshold = lowStockThreshold;
+    }
+
+    public Availability getAvailability() {
+        return this.availability;
+    }
+
+    public Product availability(Availability availability) {
+        this.setAvailability(availability);
+        return this;
+    }
+
+    public void setAvailability(Availability availability) {
+        this.availability = availability;
+    }
+
     public Category getCategory() {
         return this.category;
     }
@@ -363,6 +401,31 @@ public class Product implements Serializable {
         return this;
     }
 
+    /**
+     * A copy of this product for the listings, with its availability instead of its quantity and version. The relationships
+     * are shared, not copied.
+     */
+    public Product listingCopy(Availability availability) {
+        final Product copy = new Product();
+        copy.id = this.id;
+        copy.name = this.name;
+        copy.description = this.description;
+        copy.origin = this.origin;
+        copy.brand = this.brand;
+        copy.imagePath = this.imagePath;
+        copy.price = this.price;
+        copy.weight = this.weight;
+        copy.weightUnit = this.weightUnit;
+        copy.lowStockThreshold = this.lowStockThreshold;
+        copy.availability = availability;
+        copy.category = this.category;
+        copy.relatedCategories = this.relatedCategories;
+        copy.tags = this.tags;
+        copy.recipes = this.recipes;
+        copy.associatedPromotions = this.associatedPromotions;
+        return copy;
+    }
+
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
 
     @Override
@@ -397,6 +460,7 @@ public class Product implements Serializable {
             ", price=" + getPrice() +
             ", weight=" + getWeight() +
             ", weightUnit='" + getWeightUnit() + "'" +
+            ", lowStockThreshold=" + getLowStockThreshold() +
             "}";
     }
 }
@@ -10,7 +10,7 @@ import javax.validation.constraints.*;
  * A ProductCart.
  */
 @Entity
-@Table(name = "product_cart")
+@Table(name = "product_cart", uniqueConstraints = @UniqueConstraint(columnNames = { "cart_id", "product_id" }))
 public class ProductCart implements Serializable {
 
     private static final long serialVersionUID = 1L;
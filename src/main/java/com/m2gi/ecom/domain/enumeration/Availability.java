@@ -0,0 +1,23 @@
+package com.m2gi.ecom.domain.enumeration;
+
+/**
+ * The coarse availability of a product, shown by the listings instead of its stock.
+ */
+public enum Availability {
+    IN_STOCK,
+    LOW,
+    OUT;
+
+    /**
+     * The availability of a stock.
+     *
+     * @param quantity the stock.
+     * @param lowQuantity the stock at or below which a product in stock is low.
+     */
+    public static Availability of(int quantity, int lowQuantity) {
+        if (quantity <= 0) {
+            return OUT;
+        }
+        return quantity <= lowQuantity ? LOW : IN_STOCK;
+    }
+}
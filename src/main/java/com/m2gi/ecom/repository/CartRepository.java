@@ -17,6 +17,15 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     @Query("select cart from Cart cart left join fetch cart.lines where cart.user.user.login =:login")
     Optional<Cart> findOneWithEagerRelationshipsByLogin(@Param("login") String login);
 
+    @Query("select cart.id from Cart cart where cart.user.user.login =:login")
+    Optional<Long> findIdByLogin(@Param("login") String login);
+
+    @Query(
+        "select distinct cart from Cart cart left join fetch cart.lines line left join fetch line.product product " +
+        "left join fetch product.tags where cart.user.user.login =:login"
+    )
+    Optional<Cart> findOneWithProductsByLogin(@Param("login") String login);
+
     @Modifying
     @Query("delete from ProductCart p where p.cart = :cart")
     void empty(@Param("cart") Cart cart);
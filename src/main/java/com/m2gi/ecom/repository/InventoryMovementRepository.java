@@ -0,0 +1,193 @@
+package com.m2gi.ecom.repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Append-only ledger of the stock movements of the products, in the {@code inventory_movement} table.
+ * <p>
+ * The movements are folded into the {@code inventory_snapshot} table by {@link #compact(int)}: the stock of a product is its
+ * snapshot plus the tail of its movements not compacted yet. The rows of the {@code product} table are never touched here.
+ */
+@Repository
+public class InventoryMovementRepository {
+
+    /**
+     * A movement to append.
+     */
+    public static final class Movement {
+
+        private final Long productId;
+
+        private final int delta;
+
+        private final String reason;
+
+        public Movement(Long productId, int delta, String reason) {
+            this.productId = productId;
+            this.delta = delta;
+            this.reason = reason;
+        }
+
+        public Long getProductId() {
+            return productId;
+        }
+
+        public int getDelta() {
+            return delta;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+
+    /**
+     * The stock of a product according to its row and to the ledger.
+     */
+    public static final class Discrepancy {
+
+        private final Long productId;
+
+        private final int quantity;
+
+        private final int ledgerQuantity;
+
+        public Discrepancy(Long productId, int quantity, int ledgerQuantity) {
+            this.productId = productId;
+            this.quantity = quantity;
+            this.ledgerQuantity = ledgerQuantity;
+        }
+
+        public Long getProductId() {
+            return productId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public int getLedgerQuantity() {
+            return ledgerQuantity;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public InventoryMovementRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Append movements in one JDBC batch.
+     */
+    public void appendAll(List<Movement> movements, Instant datetime) {
+        if (movements.isEmpty()) {
+            return;
+        }
+        final Timestamp createdDate = Timestamp.from(datetime);
+        final List<Object[]> batchArgs = new ArrayList<>(movements.size());
+        movements.forEach(movement ->
+            batchArgs.add(new Object[] { movement.getProductId(), movement.getDelta(), movement.getReason(), createdDate })
+        );
+        jdbcTemplate.batchUpdate(
+            "insert into inventory_movement (product_id, delta, reason, created_date, compacted) values (?, ?, ?, ?, false)",
+            batchArgs
+        );
+    }
+
+    /**
+     * The stock of a product according to the ledger, read in one statement so that a concurrent compaction is either
+     * fully seen or not at all.
+     */
+    public int findQuantity(Long productId) {
+        final Integer quantity = jdbcTemplate.queryForObject(
+            "select coalesce((select s.quantity from inventory_snapshot s where s.product_id = ?), 0) + " +
+            "coalesce((select sum(m.delta) from inventory_movement m where m.product_id = ? and m.compacted = false), 0)",
+            Integer.class,
+            productId,
+            productId
+        );
+        return quantity != null ? quantity : 0;
+    }
+
+    /**
+     * The products whose {@code product.quantity} differs from the stock computed from the ledger.
+     */
+    public List<Discrepancy> findDiscrepancies() {
+        return jdbcTemplate.query(
+            "select p.id, p.quantity, coalesce(s.quantity, 0) + coalesce(t.delta, 0) as ledger_quantity from product p " +
+            "left join inventory_snapshot s on s.product_id = p.id " +
+            "left join (select m.product_id, sum(m.delta) as delta from inventory_movement m where m.compacted = false " +
+            "group by m.product_id) t on t.product_id = p.id " +
+            "where coalesce(p.quantity, 0) <> coalesce(s.quantity, 0) + coalesce(t.delta, 0) order by p.id",
+            (rs, rowNum) -> new Discrepancy(rs.getLong(1), rs.getInt(2), rs.getInt(3))
+        );
+    }
+
+    /**
+     * Fold the oldest movements not compacted yet into the snapshots of their products, and mark them as compacted.
+     *
+     * @param limit the maximum number of movements to fold.
+     * @return the number of folded movements.
+     */
+    public int compact(int limit) {
+        final List<Long> ids = new ArrayList<>();
+        // Sorted by product id, so that the snapshot rows are locked in the same order by every compaction
+        final Map<Long, Integer> deltaByProduct = new TreeMap<>();
+        jdbcTemplate.query(
+            "select id, product_id, delta from inventory_movement where compacted = false order by id limit ? for update",
+            rs -> {
+                ids.add(rs.getLong(1));
+                deltaByProduct.merge(rs.getLong(2), rs.getInt(3), Integer::sum);
+            },
+            limit
+        );
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        final Timestamp now = Timestamp.from(Instant.now());
+        final List<Object[]> updateArgs = new ArrayList<>(deltaByProduct.size());
+        deltaByProduct.forEach((productId, delta) -> updateArgs.add(new Object[] { delta, now, productId }));
+        final int[] counts = jdbcTemplate.batchUpdate(
+            "update inventory_snapshot set quantity = quantity + ?, last_modified_date = ? where product_id = ?",
+            updateArgs
+        );
+        final List<Object[]> insertArgs = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                insertArgs.add(new Object[] { updateArgs.get(i)[2], updateArgs.get(i)[0], now });
+            }
+        }
+        if (!insertArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                "insert into inventory_snapshot (product_id, quantity, last_modified_date) values (?, ?, ?)",
+                insertArgs
+            );
+        }
+        jdbcTemplate.update(
+            "update inventory_movement set compacted = true where id in (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")",
+            ids.toArray()
+        );
+        return ids.size();
+    }
+
+    /**
+     * Delete the compacted movements older than a datetime, the snapshots already hold them.
+     *
+     * @return the number of deleted movements.
+     */
+    public int deleteCompactedBefore(Instant datetime) {
+        return jdbcTemplate.update(
+            "delete from inventory_movement where compacted = true and created_date < ?",
+            Timestamp.from(datetime)
+        );
+    }
+}
@@ -2,8 +2,13 @@ package com.m2gi.ecom.repository;
 
 import com.m2gi.ecom.domain.ProductCart;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -15,9 +20,87 @@ import org.springframework.stereotype.Repository;
 @SuppressWarnings("unused")
 @Repository
 public interface ProductCartRepository extends JpaRepository<ProductCart, Long> {
+    /**
+     * Stock held by a cart line, without loading the entity.
+     */
+    interface Hold {
+        Long getId();
+
+        Long getProductId();
+
+        Integer getQuantity();
+
+        Instant getCreationDatetime();
+
+        /**
+         * Login of the user owning the cart of the line, if any.
+         */
+        String getLogin();
+    }
+
     @Modifying
     @Query("delete from ProductCart p where p.id=:id")
     void deleteWithId(@Param("id") long id);
 
-    List<ProductCart> findAllByCreationDatetimeBefore(Instant datetime);
+    @Query("select p.cart.id from ProductCart p where p.id = :id")
+    Optional<Long> findCartIdById(@Param("id") Long id);
+
+    @Modifying
+    @Query("delete from ProductCart p where p.id in :ids")
+    void deleteAllWithIds(@Param("ids") Collection<Long> ids);
+
+    @Query(
+        "select p.id as id, p.product.id as productId, p.quantity as quantity, p.creationDatetime as creationDatetime, " +
+        "account.login as login from ProductCart p left join p.cart cart left join cart.user details left join details.user account"
+    )
+    List<Hold> findAllHolds();
+
+    @Query(
+        "select p.id as id, p.product.id as productId, p.quantity as quantity, p.creationDatetime as creationDatetime, " +
+        "account.login as login from ProductCart p left join p.cart cart left join cart.user details left join details.user account " +
+        "where p.id in :ids"
+    )
+    List<Hold> findHolds(@Param("ids") Collection<Long> ids);
+
+    @Query(
+        "select p.id as id, p.product.id as productId, p.quantity as quantity, p.creationDatetime as creationDatetime, " +
+        "account.login as login from ProductCart p left join p.cart cart left join cart.user details left join details.user account " +
+        "where cart.id = :cartId"
+    )
+    List<Hold> findHoldsByCartId(@Param("cartId") Long cartId);
+
+    /**
+     * Select a chunk of the lines created before {@code cutoff}, after the given ones in {@code (creationDatetime, id)}
+     * order.
+     */
+    @Query(
+        "select p.id as id, p.product.id as productId, p.quantity as quantity, p.creationDatetime as creationDatetime, " +
+        "account.login as login from ProductCart p left join p.cart cart left join cart.user details left join details.user account " +
+        "where p.creationDatetime < :cutoff and (p.creationDatetime > :afterDatetime " +
+        "or (p.creationDatetime = :afterDatetime and p.id > :afterId)) order by p.creationDatetime, p.id"
+    )
+    List<Hold> findHoldsCreatedBefore(
+        @Param("cutoff") Instant cutoff,
+        @Param("afterDatetime") Instant afterDatetime,
+        @Param("afterId") Long afterId,
+        Pageable pageable
+    );
+
+    /**
+     * Lock the given lines until the end of the transaction.
+     *
+     * @return the ids of the lines which still exist.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p.id from ProductCart p where p.id in :ids order by p.id")
+    List<Long> lockIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Lock the lines of a cart until the end of the transaction.
+     *
+     * @return the ids of the lines.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p.id from ProductCart p where p.cart.id = :cartId order by p.id")
+    List<Long> lockIdsByCartId(@Param("cartId") Long cartId);
 }
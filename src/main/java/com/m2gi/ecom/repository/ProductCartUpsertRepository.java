@@ -0,0 +1,101 @@
+package com.m2gi.ecom.repository;
+
+import com.m2gi.ecom.domain.ProductCart;
+import java.sql.Timestamp;
+import java.time.Instant;
+import javax.persistence.EntityManager;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Upsert of the cart lines, so that a cart holds a single line per product.
+ * <p>
+ * On PostgreSQL the line is inserted with an {@code INSERT ... ON CONFLICT DO UPDATE} on the unique
+ * {@code (cart_id, product_id)} constraint. Other databases, such as H2 which only knows {@code ON CONFLICT DO NOTHING}, get
+ * an update followed by an insert when no line was updated.
+ */
+@Repository
+public class ProductCartUpsertRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EntityManager em;
+
+    private volatile Boolean postgres;
+
+    public ProductCartUpsertRepository(JdbcTemplate jdbcTemplate, EntityManager em) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.em = em;
+    }
+
+    /**
+     * Add a quantity of a product to a cart, in the existing line of the product if any. The creation datetime of the line
+     * is set to the given one, so that its whole quantity is held again for a full time to live.
+     *
+     * @param cartId the id of the cart.
+     * @param productId the id of the product.
+     * @param quantity the quantity to add.
+     * @param creationDatetime the new creation datetime of the line.
+     * @return the line, reloaded from the database.
+     */
+    public ProductCart addQuantity(Long cartId, Long productId, int quantity, Instant creationDatetime) {
+        // The pending changes of the persistence context, such as removed lines, must be visible to the upsert
+        em.flush();
+        final Timestamp creationTimestamp = Timestamp.from(creationDatetime);
+        final Long lineId;
+        if (isPostgres()) {
+            lineId =
+                jdbcTemplate.queryForObject(
+                    "insert into product_cart (id, quantity, creation_datetime, product_id, cart_id) " +
+                    "values (nextval('sequence_generator'), ?, ?, ?, ?) on conflict (cart_id, product_id) do update " +
+                    "set quantity = product_cart.quantity + excluded.quantity, creation_datetime = excluded.creation_datetime " +
+                    "returning id",
+                    Long.class,
+                    quantity,
+                    creationTimestamp,
+                    productId,
+                    cartId
+                );
+        } else {
+            final int updated = jdbcTemplate.update(
+                "update product_cart set quantity = quantity + ?, creation_datetime = ? where cart_id = ? and product_id = ?",
+                quantity,
+                creationTimestamp,
+                cartId,
+                productId
+            );
+            if (updated == 0) {
+                jdbcTemplate.update(
+                    "insert into product_cart (id, quantity, creation_datetime, product_id, cart_id) " +
+                    "values (next value for sequence_generator, ?, ?, ?, ?)",
+                    quantity,
+                    creationTimestamp,
+                    productId,
+                    cartId
+                );
+            }
+            lineId =
+                jdbcTemplate.queryForObject(
+                    "select id from product_cart where cart_id = ? and product_id = ?",
+                    Long.class,
+                    cartId,
+                    productId
+                );
+        }
+        // The line may already be loaded, with its previous quantity
+        final ProductCart line = em.find(ProductCart.class, lineId);
+        em.refresh(line);
+        return line;
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres =
+                jdbcTemplate.execute(
+                    (ConnectionCallback<Boolean>) connection -> "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())
+                );
+        }
+        return postgres;
+    }
+}
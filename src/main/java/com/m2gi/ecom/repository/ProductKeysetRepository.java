@@ -0,0 +1,200 @@
+package com.m2gi.ecom.repository;
+
+import com.m2gi.ecom.domain.Product;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Keyset pagination of the product ids: a page starts right after the sort key and id of the last product of the previous
+ * page, instead of skipping an offset, so every page costs the same whatever its depth.
+ * <p>
+ * The id breaks the ties of the sort key. The nullable sort keys are compared through {@code coalesce}, the same way in
+ * the predicate and in the order.
+ */
+@Repository
+public class ProductKeysetRepository {
+
+    /**
+     * Product ids per {@code in} list, as PostgreSQL accepts at most 32767 bind parameters per statement.
+     */
+    private static final int IDS_CHUNK_SIZE = 1000;
+
+    /**
+     * The properties the products can be paged by.
+     */
+    public enum SortKey {
+        NAME("name", "p.name"),
+        PRICE("price", "p.price"),
+        BRAND("brand", "coalesce(p.brand, '')"),
+        ORIGIN("origin", "coalesce(p.origin, '')"),
+        WEIGHT("weight", "coalesce(p.weight, 0)"),
+        ID("id", "p.id");
+
+        private final String property;
+
+        private final String expression;
+
+        SortKey(String property, String expression) {
+            this.property = property;
+            this.expression = expression;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+
+        public static Optional<SortKey> ofProperty(String property) {
+            for (SortKey key : values()) {
+                if (key.property.equals(property)) {
+                    return Optional.of(key);
+                }
+            }
+            return Optional.empty();
+        }
+
+        /**
+         * The sort key of a product, as compared by the queries.
+         */
+        public Comparable<?> valueOf(Product product) {
+            switch (this) {
+                case NAME:
+                    return product.getName();
+                case PRICE:
+                    return product.getPrice();
+                case BRAND:
+                    return Objects.requireNonNullElse(product.getBrand(), "");
+                case ORIGIN:
+                    return Objects.requireNonNullElse(product.getOrigin(), "");
+                case WEIGHT:
+                    return Objects.requireNonNullElse(product.getWeight(), BigDecimal.ZERO);
+                default:
+                    return product.getId();
+            }
+        }
+
+        /**
+         * Parse a sort key written with {@link String#valueOf(Object)}, or {@link BigDecimal#toPlainString()}.
+         *
+         * @throws NumberFormatException if the key is not a number while it should.
+         */
+        public Comparable<?> parse(String value) {
+            switch (this) {
+                case PRICE:
+                case WEIGHT:
+                    return new BigDecimal(value);
+                case ID:
+                    return Long.valueOf(value);
+                default:
+                    return value;
+            }
+        }
+
+        /**
+         * Write a sort key, to be read back by {@link #parse(String)}.
+         */
+        public String format(Comparable<?> value) {
+            return value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : String.valueOf(value);
+        }
+
+        private Comparable<?> normalize(Object value) {
+            // The numbers read by the queries may not be of the type of the property
+            return value == null ? null : parse(value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString());
+        }
+    }
+
+    private final EntityManager em;
+
+    public ProductKeysetRepository(EntityManager em) {
+        this.em = em;
+    }
+
+    /**
+     * Find the ids of a page of products.
+     *
+     * @param categoryId the category of the products, its subcategories included, or {@code null} for every product.
+     * @param key the sort key.
+     * @param direction the direction of the sort key and id.
+     * @param afterValue the sort key of the last product of the previous page, or {@code null} for the first page.
+     * @param afterId the id of the last product of the previous page, or {@code null} for the first page.
+     * @param limit the maximum number of ids.
+     * @return the ids of the page, in order.
+     */
+    public List<Long> findIds(Long categoryId, SortKey key, Sort.Direction direction, Comparable<?> afterValue, Long afterId, int limit) {
+        final String comparison = direction.isAscending() ? ">" : "<";
+        final String order = direction.isAscending() ? "asc" : "desc";
+        final StringBuilder jpql = new StringBuilder("select p.id from Product p");
+        final List<String> predicates = new ArrayList<>();
+        if (categoryId != null) {
+            jpql.append(" join p.relatedCategories c");
+            predicates.add("c.id = :categoryId");
+        }
+        if (afterId != null) {
+            if (key == SortKey.ID) {
+                predicates.add("p.id " + comparison + " :afterId");
+            } else {
+                predicates.add(
+                    "(" +
+                    key.expression +
+                    " " +
+                    comparison +
+                    " :afterValue or (" +
+                    key.expression +
+                    " = :afterValue and p.id " +
+                    comparison +
+                    " :afterId))"
+                );
+            }
+        }
+        if (!predicates.isEmpty()) {
+            jpql.append(" where ").append(String.join(" and ", predicates));
+        }
+        jpql.append(" order by ");
+        if (key != SortKey.ID) {
+            jpql.append(key.expression).append(" ").append(order).append(", ");
+        }
+        jpql.append("p.id ").append(order);
+
+        final TypedQuery<Long> query = em.createQuery(jpql.toString(), Long.class).setMaxResults(limit);
+        if (categoryId != null) {
+            query.setParameter("categoryId", categoryId);
+        }
+        if (afterId != null) {
+            query.setParameter("afterId", afterId);
+            if (key != SortKey.ID) {
+                query.setParameter("afterValue", afterValue);
+            }
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * Find the sort keys of products, to page through products found elsewhere, such as by a search.
+     *
+     * @param ids the ids of the products.
+     * @param key the sort key.
+     * @return the sort keys, by product id.
+     */
+    public Map<Long, Comparable<?>> findSortValues(Collection<Long> ids, SortKey key) {
+        final Map<Long, Comparable<?>> values = new HashMap<>();
+        final List<Long> allIds = new ArrayList<>(ids);
+        for (int start = 0; start < allIds.size(); start += IDS_CHUNK_SIZE) {
+            final List<Long> chunk = allIds.subList(start, Math.min(start + IDS_CHUNK_SIZE, allIds.size()));
+            em
+                .createQuery("select p.id, " + key.expression + " from Product p where p.id in :ids", Object[].class)
+                .setParameter("ids", chunk)
+                .getResultList()
+                .forEach(row -> values.put((Long) row[0], key.normalize(row[1])));
+        }
+        return values;
+    }
+}
@@ -1,6 +1,7 @@
 package com.m2gi.ecom.repository;
 
 import com.m2gi.ecom.domain.ProductOrder;
+import java.util.List;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
@@ -9,4 +10,19 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface ProductOrderRepository extends JpaRepository<ProductOrder, Long> {}
+public interface ProductOrderRepository extends JpaRepository<ProductOrder, Long> {
+    /**
+     * Units sold of a product.
+     */
+    interface ProductSales {
+        Long getProductId();
+
+        Long getUnits();
+    }
+
+    @Query(
+        "select productOrder.product.id as productId, sum(productOrder.quantity) as units from ProductOrder productOrder " +
+        "group by productOrder.product.id"
+    )
+    List<ProductSales> findAllProductSales();
+}
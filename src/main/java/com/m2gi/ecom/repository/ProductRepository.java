@@ -3,6 +3,7 @@ package com.m2gi.ecom.repository;
 import com.m2gi.ecom.domain.Category;
 import com.m2gi.ecom.domain.Product;
 import com.m2gi.ecom.domain.UserDetails;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
@@ -17,6 +18,15 @@ import org.springframework.stereotype.Repository;
  */
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
+    /**
+     * Stock level of a product, without loading the entity.
+     */
+    interface StockLevel {
+        Long getId();
+
+        Integer getQuantity();
+    }
+
     @Query(
         value = "select distinct product from Product product left join fetch product.relatedCategories left join fetch product.tags",
         countQuery = "select count(distinct product) from Product product"
@@ -26,6 +36,12 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("select distinct product from Product product left join fetch product.relatedCategories left join fetch product.tags")
     List<Product> findAllWithEagerRelationships(Sort sort);
 
+    @Query(
+        "select distinct product from Product product left join fetch product.relatedCategories left join fetch product.tags " +
+        "where product.id in :ids"
+    )
+    List<Product> findAllWithEagerRelationshipsByIdIn(@Param("ids") Collection<Long> ids, Sort sort);
+
     @Query(
         "select distinct product from Product product left join fetch product.relatedCategories left join fetch product.tags " +
         "where(  lower(product.name)        like concat('%', :query, '%')   " +
@@ -34,6 +50,50 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     )
     List<Product> findAllFromResearch(@Param("query") String query, Sort sort);
 
+    @Query(
+        "select product.id from Product product " +
+        "where(  lower(product.name)        like concat('%', :query, '%')   " +
+        "or      lower(product.origin)      like concat('%', :query, '%')   " +
+        "or      lower(product.brand)       like concat('%', :query, '%')  ) " +
+        "order by product.name, product.id"
+    )
+    List<Long> findAllIdsFromResearch(@Param("query") String query);
+
+    @Query("select product.id from Product product")
+    List<Long> findAllIds();
+
+    @Query("select product.id from Product product join product.relatedCategories rc where rc.id = :categoryId")
+    List<Long> findAllIdsFromCategory(@Param("categoryId") Long categoryId);
+
+    /**
+     * Id of a product found by a native search.
+     */
+    interface SearchHit {
+        Long getId();
+    }
+
+    /**
+     * Full-text search of the products, the best ranked first. PostgreSQL only.
+     */
+    @Query(
+        value = "select p.id as id from product p, websearch_to_tsquery('french', :query) q " +
+        "where p.search_vector @@ q " +
+        "order by ts_rank(p.search_vector, q) desc, p.id",
+        nativeQuery = true
+    )
+    List<SearchHit> findAllFullText(@Param("query") String query);
+
+    /**
+     * Trigram search of the products, tolerant to typos, the most similar first. PostgreSQL only.
+     */
+    @Query(
+        value = "select p.id as id from product p " +
+        "where :query <% lower(coalesce(p.name, '') || ' ' || coalesce(p.brand, '') || ' ' || coalesce(p.origin, '')) " +
+        "order by word_similarity(:query, lower(coalesce(p.name, '') || ' ' || coalesce(p.brand, '') || ' ' || coalesce(p.origin, ''))) desc, p.id",
+        nativeQuery = true
+    )
+    List<SearchHit> findAllSimilar(@Param("query") String query);
+
     @Query(
         "select product from Product product left join fetch product.relatedCategories left join fetch product.tags where product.id =:id"
     )
@@ -49,4 +109,57 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
         "select distinct product from Product product left join fetch product.relatedCategories rc left join fetch product.tags where :cat = rc"
     )
     List<Product> findAllFromCategory(@Param("cat") Category cat, Sort sort);
+
+    /**
+     * Atomically take {@code quantity} units from the "id" product stock, only if enough units are available.
+     * The version is bumped so that concurrent read-modify-write updates of the entity are detected.
+     *
+     * @param id the id of the product.
+     * @param quantity the number of units to take.
+     * @return the number of updated rows, {@code 0} if the stock is insufficient.
+     */
+    @Modifying
+    @Query(
+        "update Product product set product.quantity = product.quantity - :quantity, product.version = product.version + 1 " +
+        "where product.id = :id and product.quantity >= :quantity"
+    )
+    int decrementQuantity(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Atomically give back {@code quantity} units to the "id" product stock.
+     *
+     * @param id the id of the product.
+     * @param quantity the number of units to give back.
+     * @return the number of updated rows.
+     */
+    @Modifying
+    @Query(
+        "update Product product set product.quantity = product.quantity + :quantity, product.version = product.version + 1 " +
+        "where product.id = :id"
+    )
+    int incrementQuantity(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Query("select product.id as id, product.quantity as quantity from Product product where product.id in :ids")
+    List<StockLevel> findStockLevels(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Low stock threshold of a product, without loading the entity.
+     */
+    interface LowStockThreshold {
+        Long getId();
+
+        Integer getLowStockThreshold();
+    }
+
+    @Query(
+        "select product.id as id, product.lowStockThreshold as lowStockThreshold from Product product " +
+        "where product.lowStockThreshold is not null"
+    )
+    List<LowStockThreshold> findLowStockThresholds();
+
+    @Query(
+        "select product.id as id, product.quantity as quantity from Product product " +
+        "where product.quantity <= coalesce(product.lowStockThreshold, :defaultThreshold)"
+    )
+    List<StockLevel> findAllAtRisk(@Param("defaultThreshold") int defaultThreshold);
 }
@@ -0,0 +1,103 @@
+package com.m2gi.ecom.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Grouped stock updates of the products, applying the quantities of many products in one round trip.
+ * <p>
+ * On PostgreSQL the quantities are joined as a {@code VALUES} list in a single {@code UPDATE ... FROM} statement. Other
+ * databases, such as H2 which has no {@code UPDATE ... FROM}, get one JDBC batch of single-row updates. The rows are
+ * locked in product id order in both cases, like every other stock update.
+ * <p>
+ * The {@code VALUES} lists are split in chunks, as PostgreSQL accepts at most 32767 bind parameters per statement.
+ */
+@Repository
+public class ProductStockBatchRepository {
+
+    private static final int VALUES_CHUNK_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres;
+
+    public ProductStockBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Add quantities to the stock of products, and bump their version.
+     *
+     * @param quantityByProduct the quantity to add, by product id. Negative quantities are taken from the stock.
+     * @return the number of updated products.
+     */
+    public int incrementQuantities(Map<Long, Integer> quantityByProduct) {
+        if (quantityByProduct.isEmpty()) {
+            return 0;
+        }
+        final Map<Long, Integer> sorted = new TreeMap<>(quantityByProduct);
+        if (isPostgres()) {
+            return incrementQuantitiesFromValues(sorted);
+        }
+        final List<Object[]> batchArgs = new ArrayList<>(sorted.size());
+        sorted.forEach((productId, quantity) -> batchArgs.add(new Object[] { quantity, productId }));
+        int updated = 0;
+        for (int count : jdbcTemplate.batchUpdate(
+            "update product set quantity = quantity + ?, version = version + 1 where id = ?",
+            batchArgs
+        )) {
+            updated += Math.max(count, 0);
+        }
+        return updated;
+    }
+
+    private int incrementQuantitiesFromValues(Map<Long, Integer> sorted) {
+        final Long[] ids = sorted.keySet().toArray(new Long[0]);
+        // UPDATE ... FROM does not lock the rows in any given order
+        jdbcTemplate.query(
+            "select id from product where id = any(?) order by id for update",
+            ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)),
+            rs -> {}
+        );
+        int updated = 0;
+        final List<Object> args = new ArrayList<>(Math.min(sorted.size(), VALUES_CHUNK_SIZE) * 2);
+        for (Map.Entry<Long, Integer> entry : sorted.entrySet()) {
+            args.add(entry.getKey());
+            args.add(entry.getValue());
+            if (args.size() == VALUES_CHUNK_SIZE * 2) {
+                updated += updateFromValues(args);
+                args.clear();
+            }
+        }
+        if (!args.isEmpty()) {
+            updated += updateFromValues(args);
+        }
+        return updated;
+    }
+
+    private int updateFromValues(List<Object> args) {
+        return jdbcTemplate.update(
+            "update product set quantity = product.quantity + delta.quantity, version = product.version + 1 " +
+            "from (values " +
+            String.join(", ", Collections.nCopies(args.size() / 2, "(cast(? as bigint), cast(? as integer))")) +
+            ") as delta(id, quantity) where product.id = delta.id",
+            args.toArray()
+        );
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres =
+                jdbcTemplate.execute(
+                    (ConnectionCallback<Boolean>) connection -> "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())
+                );
+        }
+        return postgres;
+    }
+}
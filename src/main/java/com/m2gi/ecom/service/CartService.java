@@ -2,6 +2,8 @@ package com.m2gi.ecom.service;
 
 import com.m2gi.ecom.domain.Cart;
 import com.m2gi.ecom.domain.ProductCart;
+import com.m2gi.ecom.service.dto.CartDTO;
+import com.m2gi.ecom.service.dto.CartLineOperationDTO;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,6 +15,15 @@ public interface CartService {
     ProductCart updateLine(Long lineId, int quantity);
     void removeLine(Long lineId);
 
+    /**
+     * Apply a batch of line operations to the cart of a user, in one transaction.
+     *
+     * @param login the login of the user.
+     * @param operations the operations, applied in order.
+     * @return the view of the resulting cart.
+     */
+    CartDTO applyLineOperations(String login, List<CartLineOperationDTO> operations);
+
     /**
      * Save a cart.
      *
@@ -49,6 +60,14 @@ public interface CartService {
      */
     Optional<Cart> findOneWithEagerRelationshipsByLogin(String login);
 
+    /**
+     * Get the view of the cart of a user, from the cache when possible.
+     *
+     * @param login the login of the user.
+     * @return the view of the cart.
+     */
+    Optional<CartDTO> findViewByLogin(String login);
+
     /**
      * Get the "id" cart.
      *
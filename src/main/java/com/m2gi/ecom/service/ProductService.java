@@ -2,6 +2,9 @@ package com.m2gi.ecom.service;
 
 import com.m2gi.ecom.domain.Category;
 import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.service.dto.ProductCursor;
+import com.m2gi.ecom.service.dto.ProductPageDTO;
+import com.m2gi.ecom.service.dto.StockReceiptDTO;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
@@ -28,6 +31,15 @@ public interface ProductService {
      */
     Optional<Product> partialUpdate(Product product);
 
+    /**
+     * Add the units of a supplier delivery to the stock of its products, relatively to their current stock.
+     *
+     * @param receipts the units received, by product. The receipts of a same product are summed.
+     * @return the number of restocked products.
+     * @throws com.m2gi.ecom.service.errors.InvalidStockReceiptException if a receipt is not positive or targets an unknown product.
+     */
+    int receiveStock(List<StockReceiptDTO> receipts);
+
     /**
      * Get all the products.
      *
@@ -38,6 +50,8 @@ public interface ProductService {
     /**
      * Get products from query.
      *
+     * @param query the research query.
+     * @param sort the sort, or unsorted to rank the products by relevance.
      * @return the list of entities.
      */
     List<Product> findResearch(String query, Sort sort);
@@ -49,6 +63,27 @@ public interface ProductService {
      */
     List<Product> findCategory(Category cat, Sort sort);
 
+    /**
+     * Get a page of products, starting after the last product of the previous page.
+     *
+     * @param query the research query, or {@code null}.
+     * @param categoryId the id of the category when there is no query, or {@code null} for all the products.
+     * @param sort the sort by one property, or unsorted to rank the searched products by relevance.
+     * @param after the cursor of the previous page, or {@code null} for the first page.
+     * @param size the maximum number of products.
+     * @return the page, with the cursor of the next one.
+     */
+    ProductPageDTO findPage(String query, Long categoryId, Sort sort, ProductCursor after, int size);
+
+    /**
+     * Get the ids of every product found, without loading them.
+     *
+     * @param query the research query, or {@code null}.
+     * @param categoryId the id of the category when there is no query, or {@code null} for all the products.
+     * @return the ids.
+     */
+    List<Long> findIds(String query, Long categoryId);
+
     /**
      * Get all the products with eager load of many-to-many relationships.
      *
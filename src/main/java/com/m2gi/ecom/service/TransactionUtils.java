@@ -0,0 +1,73 @@
+package com.m2gi.ecom.service;
+
+import java.util.function.Consumer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Utility class for the Spring transactions.
+ */
+public final class TransactionUtils {
+
+    private TransactionUtils() {}
+
+    /**
+     * Run an action once the current transaction is committed, or at once outside a transaction.
+     * <p>
+     * The resources of the committed transaction are still bound while the action runs, so the transactions it opens must
+     * be new ones, such as the ones of {@link #newReadOnlyTransactionTemplate(PlatformTransactionManager)}.
+     *
+     * @param action the action.
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            }
+        );
+    }
+
+    /**
+     * Run an action once the current transaction is completed, or at once outside a transaction, as if committed.
+     *
+     * @param action the action, given whether the transaction was committed.
+     */
+    public static void afterCompletion(Consumer<Boolean> action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.accept(status == STATUS_COMMITTED);
+                }
+            }
+        );
+    }
+
+    /**
+     * A template of read-only transactions, always new ones, so that they also run in the actions of
+     * {@link #afterCommit(Runnable)}.
+     *
+     * @param transactionManager the transaction manager.
+     * @return the template.
+     */
+    public static TransactionTemplate newReadOnlyTransactionTemplate(PlatformTransactionManager transactionManager) {
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+}
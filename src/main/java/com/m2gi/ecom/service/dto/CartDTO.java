@@ -0,0 +1,307 @@
+package com.m2gi.ecom.service.dto;
+
+import com.m2gi.ecom.domain.Cart;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.domain.ProductCart;
+import com.m2gi.ecom.domain.Tag;
+import com.m2gi.ecom.domain.enumeration.WeightUnit;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A DTO representing the content of a {@link Cart}, as displayed to its user.
+ * <p>
+ * It keeps the shape of the cart entity, with only the product fields needed to display the lines.
+ */
+public class CartDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    private List<Line> lines = new ArrayList<>();
+
+    public CartDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public CartDTO(Long id, List<ProductCart> lines) {
+        this.id = id;
+        this.lines = lines.stream().map(Line::new).collect(Collectors.toList());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<Line> lines) {
+        this.lines = lines;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CartDTO{" +
+            "id=" + id +
+            ", lines=" + lines +
+            "}";
+    }
+
+    public static class Line implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long id;
+
+        private Integer quantity;
+
+        private Instant creationDatetime;
+
+        private ProductSummary product;
+
+        public Line() {
+            // Empty constructor needed for Jackson.
+        }
+
+        public Line(ProductCart line) {
+            this.id = line.getId();
+            this.quantity = line.getQuantity();
+            this.creationDatetime = line.getCreationDatetime();
+            this.product = line.getProduct() == null ? null : new ProductSummary(line.getProduct());
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(Integer quantity) {
+            this.quantity = quantity;
+        }
+
+        public Instant getCreationDatetime() {
+            return creationDatetime;
+        }
+
+        public void setCreationDatetime(Instant creationDatetime) {
+            this.creationDatetime = creationDatetime;
+        }
+
+        public ProductSummary getProduct() {
+            return product;
+        }
+
+        public void setProduct(ProductSummary product) {
+            this.product = product;
+        }
+
+        // prettier-ignore
+        @Override
+        public String toString() {
+            return "Line{" +
+                "id=" + id +
+                ", quantity=" + quantity +
+                ", product=" + product +
+                "}";
+        }
+    }
+
+    public static class ProductSummary implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long id;
+
+        private String name;
+
+        /**
+         * Stock of the product when the view was built, the server checks it again on every change.
+         */
+        private Integer quantity;
+
+        private String origin;
+
+        private String brand;
+
+        private String imagePath;
+
+        private BigDecimal price;
+
+        private BigDecimal weight;
+
+        private WeightUnit weightUnit;
+
+        private List<TagSummary> tags = new ArrayList<>();
+
+        public ProductSummary() {
+            // Empty constructor needed for Jackson.
+        }
+
+        public ProductSummary(Product product) {
+            this.id = product.getId();
+            this.name = product.getName();
+            this.quantity = product.getQuantity();
+            this.origin = product.getOrigin();
+            this.brand = product.getBrand();
+            this.imagePath = product.getImagePath();
+            this.price = product.getPrice();
+            this.weight = product.getWeight();
+            this.weightUnit = product.getWeightUnit();
+            this.tags = product.getTags().stream().map(TagSummary::new).collect(Collectors.toList());
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(Integer quantity) {
+            this.quantity = quantity;
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        public void setOrigin(String origin) {
+            this.origin = origin;
+        }
+
+        public String getBrand() {
+            return brand;
+        }
+
+        public void setBrand(String brand) {
+            this.brand = brand;
+        }
+
+        public String getImagePath() {
+            return imagePath;
+        }
+
+        public void setImagePath(String imagePath) {
+            this.imagePath = imagePath;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        public void setPrice(BigDecimal price) {
+            this.price = price;
+        }
+
+        public BigDecimal getWeight() {
+            return weight;
+        }
+
+        public void setWeight(BigDecimal weight) {
+            this.weight = weight;
+        }
+
+        public WeightUnit getWeightUnit() {
+            return weightUnit;
+        }
+
+        public void setWeightUnit(WeightUnit weightUnit) {
+            this.weightUnit = weightUnit;
+        }
+
+        public List<TagSummary> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<TagSummary> tags) {
+            this.tags = tags;
+        }
+
+        // prettier-ignore
+        @Override
+        public String toString() {
+            return "ProductSummary{" +
+                "id=" + id +
+                ", name='" + name + "'" +
+                ", price=" + price +
+                "}";
+        }
+    }
+
+    public static class TagSummary implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long id;
+
+        private String name;
+
+        private String color;
+
+        public TagSummary() {
+            // Empty constructor needed for Jackson.
+        }
+
+        public TagSummary(Tag tag) {
+            this.id = tag.getId();
+            this.name = tag.getName();
+            this.color = tag.getColor();
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getColor() {
+            return color;
+        }
+
+        public void setColor(String color) {
+            this.color = color;
+        }
+    }
+}
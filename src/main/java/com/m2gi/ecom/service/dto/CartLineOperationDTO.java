@@ -0,0 +1,96 @@
+package com.m2gi.ecom.service.dto;
+
+/**
+ * A DTO representing one change to the lines of a cart, applied with the other changes of its batch.
+ */
+public class CartLineOperationDTO {
+
+    public enum Action {
+        /**
+         * Add {@code quantity} units of {@code productId}, to its line if the cart already has one.
+         */
+        ADD,
+        /**
+         * Set the quantity of the line {@code lineId}.
+         */
+        UPDATE,
+        /**
+         * Remove the line {@code lineId}.
+         */
+        REMOVE,
+    }
+
+    private Action action;
+
+    private Long productId;
+
+    private Long lineId;
+
+    private Integer quantity;
+
+    public CartLineOperationDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public CartLineOperationDTO(Action action, Long productId, Long lineId, Integer quantity) {
+        this.action = action;
+        this.productId = productId;
+        this.lineId = lineId;
+        this.quantity = quantity;
+    }
+
+    public static CartLineOperationDTO add(Long productId, int quantity) {
+        return new CartLineOperationDTO(Action.ADD, productId, null, quantity);
+    }
+
+    public static CartLineOperationDTO update(Long lineId, int quantity) {
+        return new CartLineOperationDTO(Action.UPDATE, null, lineId, quantity);
+    }
+
+    public static CartLineOperationDTO remove(Long lineId) {
+        return new CartLineOperationDTO(Action.REMOVE, null, lineId, null);
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public void setAction(Action action) {
+        this.action = action;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Long getLineId() {
+        return lineId;
+    }
+
+    public void setLineId(Long lineId) {
+        this.lineId = lineId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CartLineOperationDTO{" +
+            "action=" + action +
+            ", productId=" + productId +
+            ", lineId=" + lineId +
+            ", quantity=" + quantity +
+            "}";
+    }
+}
@@ -0,0 +1,82 @@
+package com.m2gi.ecom.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO representing the number of products found with a value of a facet, such as a brand.
+ */
+public class FacetCountDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String value;
+
+    private String label;
+
+    private Integer count;
+
+    public FacetCountDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public FacetCountDTO(String value, String label, Integer count) {
+        this.value = value;
+        this.label = label;
+        this.count = count;
+    }
+
+    /**
+     * The value of the facet, the id of a category or else its displayed label.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public void setCount(Integer count) {
+        this.count = count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FacetCountDTO)) {
+            return false;
+        }
+        FacetCountDTO that = (FacetCountDTO) o;
+        return Objects.equals(value, that.value) && Objects.equals(label, that.label) && Objects.equals(count, that.count);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(value, label, count);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "FacetCountDTO{" +
+            "value='" + value + "'" +
+            ", label='" + label + "'" +
+            ", count=" + count +
+            "}";
+    }
+}
@@ -0,0 +1,95 @@
+package com.m2gi.ecom.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO representing the ticket of a shopper in the waiting room of a product on flash sale.
+ */
+public class FlashSaleTicketDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Status {
+        /**
+         * The shopper waits in the queue.
+         */
+        WAITING,
+        /**
+         * The shopper can add the product to the cart, until the token expires.
+         */
+        ADMITTED,
+        /**
+         * The product was added to the cart with the token.
+         */
+        USED,
+        /**
+         * The token was not used in time, or the shopper left the queue.
+         */
+        EXPIRED,
+    }
+
+    private String id;
+
+    private Long productId;
+
+    private Status status;
+
+    /**
+     * Position in the queue while waiting, {@code 1} being the next admitted shopper.
+     */
+    private Long position;
+
+    public FlashSaleTicketDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public FlashSaleTicketDTO(String id, Long productId, Status status, Long position) {
+        this.id = id;
+        this.productId = productId;
+        this.status = status;
+        this.position = position;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Long getPosition() {
+        return position;
+    }
+
+    public void setPosition(Long position) {
+        this.position = position;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "FlashSaleTicketDTO{" +
+            "id='" + id + "'" +
+            ", productId=" + productId +
+            ", status=" + status +
+            ", position=" + position +
+            "}";
+    }
+}
@@ -0,0 +1,45 @@
+package com.m2gi.ecom.service.dto;
+
+/**
+ * A DTO representing a line of the cart of an anonymous visitor.
+ */
+public class GuestCartLineDTO {
+
+    private Long productId;
+
+    private Integer quantity;
+
+    public GuestCartLineDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public GuestCartLineDTO(Long productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "GuestCartLineDTO{" +
+            "productId=" + productId +
+            ", quantity=" + quantity +
+            "}";
+    }
+}
@@ -0,0 +1,83 @@
+package com.m2gi.ecom.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO representing a product whose stock is at or below its low stock threshold.
+ */
+public class LowStockDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long productId;
+
+    private Integer quantity;
+
+    private Integer threshold;
+
+    public LowStockDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public LowStockDTO(Long productId, Integer quantity, Integer threshold) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.threshold = threshold;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public Integer getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(Integer threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LowStockDTO)) {
+            return false;
+        }
+        LowStockDTO that = (LowStockDTO) o;
+        return (
+            Objects.equals(productId, that.productId) &&
+            Objects.equals(quantity, that.quantity) &&
+            Objects.equals(threshold, that.threshold)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(productId, quantity, threshold);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "LowStockDTO{" +
+            "productId=" + productId +
+            ", quantity=" + quantity +
+            ", threshold=" + threshold +
+            "}";
+    }
+}
@@ -0,0 +1,95 @@
+package com.m2gi.ecom.service.dto;
+
+import com.m2gi.ecom.service.errors.InvalidCursorException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * The position of the last product of a page, from which the next page starts: the sort it was listed with, its sort key
+ * and its id. Given to the clients as an opaque string.
+ */
+public final class ProductCursor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String SEPARATOR = "\n";
+
+    private final String sort;
+
+    private final String value;
+
+    private final Long id;
+
+    public ProductCursor(String sort, String value, Long id) {
+        this.sort = sort;
+        this.value = value;
+        this.id = id;
+    }
+
+    /**
+     * Read a cursor given by {@link #encode()}.
+     *
+     * @throws InvalidCursorException if the cursor was not given by {@link #encode()}.
+     */
+    public static ProductCursor decode(String cursor) {
+        try {
+            final String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, 3);
+            if (parts.length != 3) {
+                throw new InvalidCursorException("Invalid cursor");
+            }
+            return new ProductCursor(parts[0], parts[2], Long.valueOf(parts[1]));
+        } catch (IllegalArgumentException e) {
+            // Also the NumberFormatException of the id
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+
+    public String encode() {
+        final String cursor = sort + SEPARATOR + id + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The sort of the listing, such as {@code name,ASC}, so that a cursor is not used with another one.
+     */
+    public String getSort() {
+        return sort;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ProductCursor)) {
+            return false;
+        }
+        ProductCursor that = (ProductCursor) o;
+        return Objects.equals(sort, that.sort) && Objects.equals(value, that.value) && Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sort, value, id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ProductCursor{" +
+            "sort='" + sort + "'" +
+            ", value='" + value + "'" +
+            ", id=" + id +
+            "}";
+    }
+}
@@ -0,0 +1,55 @@
+package com.m2gi.ecom.service.dto;
+
+import com.m2gi.ecom.domain.Product;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO representing a page of products, with the cursor of the next page.
+ */
+public class ProductPageDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<Product> products = new ArrayList<>();
+
+    private ProductCursor next;
+
+    public ProductPageDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public ProductPageDTO(List<Product> products, ProductCursor next) {
+        this.products = products;
+        this.next = next;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public void setProducts(List<Product> products) {
+        this.products = products;
+    }
+
+    /**
+     * The cursor of the next page, {@code null} on the last page.
+     */
+    public ProductCursor getNext() {
+        return next;
+    }
+
+    public void setNext(ProductCursor next) {
+        this.next = next;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ProductPageDTO{" +
+            "products=" + products.size() +
+            ", next=" + next +
+            "}";
+    }
+}
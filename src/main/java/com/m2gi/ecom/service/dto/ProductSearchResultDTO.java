@@ -0,0 +1,57 @@
+package com.m2gi.ecom.service.dto;
+
+import com.m2gi.ecom.domain.Product;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A DTO representing the products found by a search, with the counts of their facets.
+ */
+public class ProductSearchResultDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<Product> products = new ArrayList<>();
+
+    private Map<String, List<FacetCountDTO>> facets = new LinkedHashMap<>();
+
+    public ProductSearchResultDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public ProductSearchResultDTO(List<Product> products, Map<String, List<FacetCountDTO>> facets) {
+        this.products = products;
+        this.facets = facets;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public void setProducts(List<Product> products) {
+        this.products = products;
+    }
+
+    /**
+     * The counts of each facet, by facet name, the most frequent value first.
+     */
+    public Map<String, List<FacetCountDTO>> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(Map<String, List<FacetCountDTO>> facets) {
+        this.facets = facets;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ProductSearchResultDTO{" +
+            "products=" + products.size() +
+            ", facets=" + facets +
+            "}";
+    }
+}
@@ -0,0 +1,61 @@
+package com.m2gi.ecom.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO representing a product whose stock differs from the one computed from the inventory ledger.
+ */
+public class StockDiscrepancyDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long productId;
+
+    private Integer quantity;
+
+    private Integer ledgerQuantity;
+
+    public StockDiscrepancyDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public StockDiscrepancyDTO(Long productId, Integer quantity, Integer ledgerQuantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.ledgerQuantity = ledgerQuantity;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public Integer getLedgerQuantity() {
+        return ledgerQuantity;
+    }
+
+    public void setLedgerQuantity(Integer ledgerQuantity) {
+        this.ledgerQuantity = ledgerQuantity;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StockDiscrepancyDTO{" +
+            "productId=" + productId +
+            ", quantity=" + quantity +
+            ", ledgerQuantity=" + ledgerQuantity +
+            "}";
+    }
+}
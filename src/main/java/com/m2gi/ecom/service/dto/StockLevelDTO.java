@@ -0,0 +1,67 @@
+package com.m2gi.ecom.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO representing the available stock of a product, as pushed to the product pages.
+ */
+public class StockLevelDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long productId;
+
+    private Integer quantity;
+
+    public StockLevelDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public StockLevelDTO(Long productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StockLevelDTO)) {
+            return false;
+        }
+        StockLevelDTO that = (StockLevelDTO) o;
+        return Objects.equals(productId, that.productId) && Objects.equals(quantity, that.quantity);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(productId, quantity);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StockLevelDTO{" +
+            "productId=" + productId +
+            ", quantity=" + quantity +
+            "}";
+    }
+}
@@ -0,0 +1,46 @@
+package com.m2gi.ecom.service.dto;
+
+/**
+ * A DTO representing the units of a product received from a supplier, added to its stock with the other receipts of
+ * the delivery.
+ */
+public class StockReceiptDTO {
+
+    private Long productId;
+
+    private Integer delta;
+
+    public StockReceiptDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public StockReceiptDTO(Long productId, Integer delta) {
+        this.productId = productId;
+        this.delta = delta;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Integer getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Integer delta) {
+        this.delta = delta;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StockReceiptDTO{" +
+            "productId=" + productId +
+            ", delta=" + delta +
+            "}";
+    }
+}
@@ -0,0 +1,88 @@
+package com.m2gi.ecom.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO representing a suggestion of the search box: a product, a brand or a category.
+ */
+public class SuggestionDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        PRODUCT,
+        BRAND,
+        CATEGORY,
+    }
+
+    private Type type;
+
+    private Long id;
+
+    private String text;
+
+    public SuggestionDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public SuggestionDTO(Type type, Long id, String text) {
+        this.type = type;
+        this.id = id;
+        this.text = text;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    /**
+     * The id of the product or of the category, {@code null} for a brand.
+     */
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SuggestionDTO)) {
+            return false;
+        }
+        SuggestionDTO that = (SuggestionDTO) o;
+        return type == that.type && Objects.equals(id, that.id) && Objects.equals(text, that.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, id, text);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "SuggestionDTO{" +
+            "type=" + type +
+            ", id=" + id +
+            ", text='" + text + "'" +
+            "}";
+    }
+}
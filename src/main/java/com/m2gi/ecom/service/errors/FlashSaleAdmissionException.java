@@ -0,0 +1,8 @@
+package com.m2gi.ecom.service.errors;
+
+public class FlashSaleAdmissionException extends RuntimeException {
+
+    public FlashSaleAdmissionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.m2gi.ecom.service.errors;
+
+public class InvalidCartOperationException extends RuntimeException {
+
+    public InvalidCartOperationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.m2gi.ecom.service.errors;
+
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.m2gi.ecom.service.errors;
+
+public class InvalidStockReceiptException extends RuntimeException {
+
+    public InvalidStockReceiptException(String message) {
+        super(message);
+    }
+}
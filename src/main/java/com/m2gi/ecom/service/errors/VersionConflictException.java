@@ -5,4 +5,8 @@ public class VersionConflictException extends RuntimeException {
     public VersionConflictException() {
         super("The version has evolved compared to the beginning of the transaction.");
     }
+
+    public VersionConflictException(Throwable cause) {
+        super("The version has evolved compared to the beginning of the transaction.", cause);
+    }
 }
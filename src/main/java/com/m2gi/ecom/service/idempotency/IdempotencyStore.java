@@ -0,0 +1,320 @@
+package com.m2gi.ecom.service.idempotency;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Store of the responses of the requests sent with an {@code Idempotency-Key} header.
+ * <p>
+ * A key is reserved while its request is executed, then completed with the response. The entries are kept in a bounded
+ * in-memory map, evicted after their time to live or, the oldest completed first, when the map is full. The keys in
+ * progress are never evicted, as their request would be executed again: new keys are refused while the map is full of
+ * them. When enabled, the entries are also persisted in the {@code idempotency_key} table, so that replays work across
+ * the instances and after a restart.
+ */
+@Service
+public class IdempotencyStore {
+
+    private final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    public enum Status {
+        /**
+         * The key is now reserved by the caller, which must complete or abort it.
+         */
+        STARTED,
+        /**
+         * The request of the key is still being executed.
+         */
+        IN_PROGRESS,
+        /**
+         * The request of the key was executed, its response is available.
+         */
+        COMPLETED,
+        /**
+         * The key was used for another request.
+         */
+        MISMATCH,
+        /**
+         * The key could not be reserved, every entry of the store being in progress.
+         */
+        UNAVAILABLE,
+    }
+
+    /**
+     * Result of the reservation of a key.
+     */
+    public static final class Reservation {
+
+        private final Status status;
+
+        private final StoredResponse response;
+
+        private Reservation(Status status, StoredResponse response) {
+            this.status = status;
+            this.response = response;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public StoredResponse getResponse() {
+            return response;
+        }
+    }
+
+    /**
+     * The parts of a response which are replayed.
+     */
+    public static final class StoredResponse implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        private final String contentType;
+
+        private final String location;
+
+        private final byte[] body;
+
+        public StoredResponse(int status, String contentType, String location, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.location = location;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    private static final class Entry {
+
+        private final String fingerprint;
+
+        private final Instant creationDatetime;
+
+        private StoredResponse response;
+
+        private Entry(String fingerprint, Instant creationDatetime, StoredResponse response) {
+            this.fingerprint = fingerprint;
+            this.creationDatetime = creationDatetime;
+            this.response = response;
+        }
+    }
+
+    private final ApplicationProperties.Idempotency properties;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // In insertion order, so the oldest entries are the first ones
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public IdempotencyStore(
+        ApplicationProperties applicationProperties,
+        JdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.properties = applicationProperties.getIdempotency();
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Reserve a key for a request.
+     *
+     * @param key the key, scoped to its user.
+     * @param fingerprint the fingerprint of the request.
+     * @return the reservation, with the stored response if the request was already executed.
+     */
+    public Reservation begin(String key, String fingerprint) {
+        final Instant now = Instant.now();
+        synchronized (this) {
+            purgeExpired(now);
+            final Entry entry = entries.get(key);
+            if (entry != null) {
+                return reservationOf(entry, fingerprint);
+            }
+            if (!properties.isJdbc()) {
+                if (!put(key, new Entry(fingerprint, now, null))) {
+                    return new Reservation(Status.UNAVAILABLE, null);
+                }
+                return new Reservation(Status.STARTED, null);
+            }
+        }
+        // The persisted keys are reserved by the table: the map only caches them, and may be unable to
+        final Entry persisted = findPersisted(key, now);
+        if (persisted != null) {
+            synchronized (this) {
+                put(key, persisted);
+            }
+            return reservationOf(persisted, fingerprint);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.update(
+                    "insert into idempotency_key (id, fingerprint, created_date) values (?, ?, ?)",
+                    key,
+                    fingerprint,
+                    Timestamp.from(now)
+                )
+            );
+        } catch (DuplicateKeyException e) {
+            return new Reservation(Status.IN_PROGRESS, null);
+        }
+        synchronized (this) {
+            put(key, new Entry(fingerprint, now, null));
+        }
+        return new Reservation(Status.STARTED, null);
+    }
+
+    /**
+     * Store the response of a reserved key.
+     */
+    public void complete(String key, StoredResponse response) {
+        synchronized (this) {
+            final Entry entry = entries.get(key);
+            if (entry != null) {
+                entry.response = response;
+            }
+        }
+        if (properties.isJdbc()) {
+            transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.update(
+                    "update idempotency_key set status = ?, content_type = ?, location = ?, body = ? where id = ?",
+                    response.getStatus(),
+                    response.getContentType(),
+                    response.getLocation(),
+                    new String(response.getBody(), StandardCharsets.UTF_8),
+                    key
+                )
+            );
+        }
+    }
+
+    /**
+     * Release a reserved key without response, so that the request can be sent again.
+     */
+    public void abort(String key) {
+        synchronized (this) {
+            entries.remove(key);
+        }
+        if (properties.isJdbc()) {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update("delete from idempotency_key where id = ?", key));
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Scheduled(fixedDelayString = "PT1H", initialDelayString = "PT1H")
+    public void purgePersisted() {
+        if (!properties.isJdbc()) {
+            return;
+        }
+        final Timestamp expiry = Timestamp.from(Instant.now().minus(properties.getTtl()));
+        final int purged = transactionTemplate.execute(status ->
+            jdbcTemplate.update("delete from idempotency_key where created_date < ?", expiry)
+        );
+        log.debug("Purged {} expired idempotency keys", purged);
+    }
+
+    private Reservation reservationOf(Entry entry, String fingerprint) {
+        if (!entry.fingerprint.equals(fingerprint)) {
+            return new Reservation(Status.MISMATCH, null);
+        }
+        if (entry.response == null) {
+            return new Reservation(Status.IN_PROGRESS, null);
+        }
+        return new Reservation(Status.COMPLETED, entry.response);
+    }
+
+    private Entry findPersisted(String key, Instant now) {
+        final List<Entry> persisted = transactionTemplate.execute(status ->
+            jdbcTemplate.query(
+                "select fingerprint, created_date, status, content_type, location, body from idempotency_key where id = ?",
+                (rs, rowNum) -> {
+                    final int responseStatus = rs.getInt("status");
+                    final StoredResponse response = rs.wasNull()
+                        ? null
+                        : new StoredResponse(
+                            responseStatus,
+                            rs.getString("content_type"),
+                            rs.getString("location"),
+                            rs.getString("body") == null ? new byte[0] : rs.getString("body").getBytes(StandardCharsets.UTF_8)
+                        );
+                    return new Entry(rs.getString("fingerprint"), rs.getTimestamp("created_date").toInstant(), response);
+                },
+                key
+            )
+        );
+        if (persisted.isEmpty()) {
+            return null;
+        }
+        if (persisted.get(0).creationDatetime.isBefore(now.minus(properties.getTtl()))) {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update("delete from idempotency_key where id = ?", key));
+            return null;
+        }
+        return persisted.get(0);
+    }
+
+    /**
+     * @return whether the entry was stored, which fails when the map is full of keys in progress.
+     */
+    private boolean put(String key, Entry entry) {
+        final Iterator<Entry> oldest = entries.values().iterator();
+        while (entries.size() >= properties.getMaxEntries() && oldest.hasNext()) {
+            if (oldest.next().response != null) {
+                oldest.remove();
+            }
+        }
+        if (entries.size() >= properties.getMaxEntries()) {
+            log.warn("Idempotency key refused, the {} stored keys are in progress", entries.size());
+            return false;
+        }
+        entries.put(key, entry);
+        return true;
+    }
+
+    private void purgeExpired(Instant now) {
+        final Instant expiry = now.minus(properties.getTtl());
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext() && iterator.next().getValue().creationDatetime.isBefore(expiry)) {
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.m2gi.ecom.service.impl;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Striped locks serializing the mutations of a same cart.
+ * <p>
+ * A mutation takes the lock of its cart before reading the cart lines, and keeps it until its transaction is completed, so
+ * the next mutation of the cart reads the committed lines. The carts are hashed into a fixed number of fair locks: the
+ * mutations of a cart are applied in arrival order, while the ones of carts in different stripes run in parallel. The locks
+ * only serialize the mutations handled by this instance.
+ */
+@Service
+public class CartLocks {
+
+    private final ReentrantLock[] stripes;
+
+    private final long timeoutNanos;
+
+    private final Timer waitTimer;
+
+    public CartLocks(MeterRegistry meterRegistry, ApplicationProperties applicationProperties) {
+        final ApplicationProperties.CartLock properties = applicationProperties.getCartLock();
+        this.stripes = new ReentrantLock[properties.getStripes()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock(true);
+        }
+        this.timeoutNanos = properties.getTimeout().toNanos();
+        this.waitTimer =
+            Timer.builder("cart.lock.wait").description("Time waited for the lock of a cart before mutating it").register(meterRegistry);
+    }
+
+    /**
+     * Take the lock of a cart until the current transaction is completed.
+     *
+     * @param cartId the id of the cart.
+     * @throws CannotAcquireLockException if the lock could not be taken within the timeout.
+     * @throws IllegalStateException if no transaction is active.
+     */
+    public void lockUntilCompletion(Long cartId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("The lock of a cart is held until the end of a transaction, which is not active");
+        }
+        final ReentrantLock lock = stripeOf(cartId);
+        final long start = System.nanoTime();
+        try {
+            if (!lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new CannotAcquireLockException("Timed out waiting for the lock of cart " + cartId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("Interrupted while waiting for the lock of cart " + cartId, e);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lock.unlock();
+                }
+            }
+        );
+    }
+
+    private ReentrantLock stripeOf(Long cartId) {
+        return stripes[Math.floorMod(Long.hashCode(cartId), stripes.length)];
+    }
+}
@@ -5,18 +5,40 @@ import com.m2gi.ecom.domain.Product;
 import com.m2gi.ecom.domain.ProductCart;
 import com.m2gi.ecom.repository.CartRepository;
 import com.m2gi.ecom.repository.ProductCartRepository;
+import com.m2gi.ecom.repository.ProductCartUpsertRepository;
 import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.security.SecurityUtils;
 import com.m2gi.ecom.service.CartService;
+import com.m2gi.ecom.service.dto.CartDTO;
+import com.m2gi.ecom.service.dto.CartLineOperationDTO;
 import com.m2gi.ecom.service.errors.InsufficientQuantityException;
-import com.m2gi.ecom.service.errors.VersionConflictException;
+import com.m2gi.ecom.service.errors.InvalidCartOperationException;
+import com.m2gi.ecom.service.inventory.FlashSaleQueue;
+import com.m2gi.ecom.service.inventory.InventoryEngine;
+import com.m2gi.ecom.service.inventory.InventoryMovementLedger;
+import com.m2gi.ecom.service.inventory.ReservationLedger;
+import com.m2gi.ecom.service.inventory.StockLevelPublisher;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Service Implementation for managing {@link Cart}.
@@ -29,111 +51,261 @@ public class CartServiceImpl implements CartService {
 
     private final CartRepository cartRepository;
 
-    private final ProductRepository productRepository;
     private final ProductCartRepository productCartRepository;
 
+    private final ProductCartUpsertRepository productCartUpsertRepository;
+
+    private final ProductRepository productRepository;
+
+    private final InventoryEngine inventoryEngine;
+
+    private final ReservationLedger reservationLedger;
+
+    private final CartViewCache cartViewCache;
+
+    private final StockLevelPublisher stockLevelPublisher;
+
+    private final FlashSaleQueue flashSaleQueue;
+
+    private final CartLocks cartLocks;
+
+    private final InventoryMovementLedger inventoryMovementLedger;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
     public CartServiceImpl(
         CartRepository cartRepository,
+        ProductCartRepository productCartRepository,
+        ProductCartUpsertRepository productCartUpsertRepository,
         ProductRepository productRepository,
-        ProductCartRepository productCartRepository
+        InventoryEngine inventoryEngine,
+        ReservationLedger reservationLedger,
+        CartViewCache cartViewCache,
+        StockLevelPublisher stockLevelPublisher,
+        FlashSaleQueue flashSaleQueue,
+        CartLocks cartLocks,
+        InventoryMovementLedger inventoryMovementLedger,
+        PlatformTransactionManager transactionManager
     ) {
         this.cartRepository = cartRepository;
-        this.productRepository = productRepository;
         this.productCartRepository = productCartRepository;
+        this.productCartUpsertRepository = productCartUpsertRepository;
+        this.productRepository = productRepository;
+        this.inventoryEngine = inventoryEngine;
+        this.reservationLedger = reservationLedger;
+        this.cartViewCache = cartViewCache;
+        this.stockLevelPublisher = stockLevelPublisher;
+        this.flashSaleQueue = flashSaleQueue;
+        this.cartLocks = cartLocks;
+        this.inventoryMovementLedger = inventoryMovementLedger;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
     }
 
     @Override
     public ProductCart addLine(ProductCart line) {
-        boolean applied = false;
-        while (!applied) {
-            try {
-                createLineAndUpdateProductQuantity(line);
-                applied = true;
-            } catch (VersionConflictException ignored) {}
-        }
-
-        return productCartRepository.save(line);
+        log.debug("Request to add ProductCart : {}", line);
+        cartLocks.lockUntilCompletion(line.getCart().getId());
+        flashSaleQueue.consume(line.getProduct().getId(), SecurityUtils.getCurrentUserLogin().orElse(null));
+        takeQuantity(line.getProduct().getId(), line.getQuantity());
+        final ProductCart result = productCartUpsertRepository.addQuantity(
+            line.getCart().getId(),
+            line.getProduct().getId(),
+            line.getQuantity(),
+            line.getCreationDatetime()
+        );
+        reservationLedger.hold(result);
+        cartViewCache.evictAfterCommit(line.getCart());
+        return result;
     }
 
     @Override
     public ProductCart updateLine(Long lineId, int newQuantity) {
-        final ProductCart line = productCartRepository.findById(lineId).orElseThrow();
+        log.debug("Request to update ProductCart quantity : {}, {}", lineId, newQuantity);
+        // Locked before the line is read, so that its quantity is the one left by the previous mutation of the cart
+        productCartRepository.findCartIdById(lineId).ifPresent(cartLocks::lockUntilCompletion);
+        final ProductCart line = lockLine(lineId);
         final int deltaQuantity = newQuantity - line.getQuantity();
-        line.setQuantity(newQuantity);
 
-        boolean applied = false;
-        while (!applied) {
-            try {
-                updateLineAndProductQuantity(line, deltaQuantity);
-                applied = true;
-            } catch (VersionConflictException ignored) {}
+        if (deltaQuantity > 0) {
+            flashSaleQueue.consume(line.getProduct().getId(), SecurityUtils.getCurrentUserLogin().orElse(null));
+            takeQuantity(line.getProduct().getId(), deltaQuantity);
+        } else if (deltaQuantity < 0) {
+            giveBackQuantity(line.getProduct().getId(), -deltaQuantity);
         }
 
+        line.setQuantity(newQuantity);
+        cartViewCache.evictAfterCommit(line.getCart());
         return productCartRepository.save(line);
     }
 
     @Override
     public void removeLine(Long lineId) {
-        final ProductCart line = productCartRepository.findById(lineId).orElseThrow();
-        boolean applied = false;
-        while (!applied) {
-            try {
-                deleteLineAndUpdateProductQuantity(line);
-                applied = true;
-            } catch (VersionConflictException ignored) {}
-        }
+        log.debug("Request to remove ProductCart : {}", lineId);
+        productCartRepository.findCartIdById(lineId).ifPresent(cartLocks::lockUntilCompletion);
+        final ProductCart line = lockLine(lineId);
+        giveBackQuantity(line.getProduct().getId(), line.getQuantity());
         productCartRepository.deleteWithId(line.getId());
+        reservationLedger.release(line.getId());
+        cartViewCache.evictAfterCommit(line.getCart());
     }
 
-    private void createLineAndUpdateProductQuantity(ProductCart line) {
-        final Product original = productRepository.findById(line.getProduct().getId()).orElseThrow();
-        final int newQuantity = original.getQuantity() - line.getQuantity();
+    @Override
+    public CartDTO applyLineOperations(String login, List<CartLineOperationDTO> operations) {
+        log.debug("Request to apply {} operations to the Cart of : {}", operations.size(), login);
+        cartRepository
+            .findIdByLogin(login)
+            .ifPresent(cartId -> {
+                cartLocks.lockUntilCompletion(cartId);
+                // Before the lines are read, so that the removed ones cannot be expired concurrently
+                productCartRepository.lockIdsByCartId(cartId);
+            });
+        final Cart cart = cartRepository
+            .findOneWithEagerRelationshipsByLogin(login)
+            .orElseThrow(() -> new InvalidCartOperationException("No cart for the user"));
+        final Map<Long, ProductCart> linesById = cart
+            .getLines()
+            .stream()
+            .collect(Collectors.toMap(ProductCart::getId, Function.identity()));
 
-        if (newQuantity < 0) {
-            throw new InsufficientQuantityException();
+        // Resolve the whole batch before touching anything, the stock changes are summed per product
+        final Map<Long, Integer> quantityByLine = new HashMap<>();
+        linesById.values().forEach(line -> quantityByLine.put(line.getId(), line.getQuantity()));
+        final Map<Long, ProductCart> linesByProduct = new HashMap<>();
+        for (ProductCart line : linesById.values()) {
+            if (line.getProduct() != null) {
+                linesByProduct.put(line.getProduct().getId(), line);
+            }
+        }
+        // Products added to the cart get a single line each: existing lines are increased and held again
+        final Set<Long> renewedLineIds = new HashSet<>();
+        final Map<Long, Integer> addedQuantityByProduct = new TreeMap<>();
+        // Sorted by product id, so that concurrent batches lock the product rows in the same order
+        final Map<Long, Integer> deltaByProduct = new TreeMap<>();
+        final Instant now = Instant.now();
+        for (CartLineOperationDTO operation : operations) {
+            if (operation.getAction() == null) {
+                throw new InvalidCartOperationException("Missing action");
+            }
+            switch (operation.getAction()) {
+                case ADD:
+                    final int addedQuantity = positiveQuantity(operation);
+                    final Product product = Optional
+                        .ofNullable(operation.getProductId())
+                        .flatMap(productRepository::findById)
+                        .orElseThrow(() -> new InvalidCartOperationException("Unknown product " + operation.getProductId()));
+                    final ProductCart existingLine = linesByProduct.get(product.getId());
+                    if (existingLine != null && quantityByLine.containsKey(existingLine.getId())) {
+                        quantityByLine.merge(existingLine.getId(), addedQuantity, Integer::sum);
+                        renewedLineIds.add(existingLine.getId());
+                    } else {
+                        addedQuantityByProduct.merge(product.getId(), addedQuantity, Integer::sum);
+                    }
+                    deltaByProduct.merge(product.getId(), addedQuantity, Integer::sum);
+                    break;
+                case UPDATE:
+                    final int newQuantity = positiveQuantity(operation);
+                    final ProductCart updatedLine = lineOf(linesById, quantityByLine, operation);
+                    final int deltaQuantity = newQuantity - quantityByLine.get(updatedLine.getId());
+                    deltaByProduct.merge(updatedLine.getProduct().getId(), deltaQuantity, Integer::sum);
+                    quantityByLine.put(updatedLine.getId(), newQuantity);
+                    break;
+                case REMOVE:
+                    final ProductCart removedLine = lineOf(linesById, quantityByLine, operation);
+                    deltaByProduct.merge(removedLine.getProduct().getId(), -quantityByLine.remove(removedLine.getId()), Integer::sum);
+                    break;
+            }
         }
 
-        original.setQuantity(newQuantity);
-        final Product updated = productRepository.save(original);
-        if (updated.getVersion().equals(original.getVersion() + 1)) {
-            throw new VersionConflictException();
+        deltaByProduct.forEach((productId, delta) -> {
+            if (delta > 0) {
+                flashSaleQueue.consume(productId, login);
+                takeQuantity(productId, delta);
+            } else if (delta < 0) {
+                giveBackQuantity(productId, -delta);
+            }
+        });
+
+        for (ProductCart line : linesById.values()) {
+            if (!quantityByLine.containsKey(line.getId())) {
+                cart.removeLines(line);
+                reservationLedger.release(line.getId());
+            } else {
+                line.setQuantity(quantityByLine.get(line.getId()));
+                if (renewedLineIds.contains(line.getId())) {
+                    line.setCreationDatetime(now);
+                    reservationLedger.hold(line);
+                }
+            }
         }
+        addedQuantityByProduct.forEach((productId, quantity) -> {
+            final ProductCart line = productCartUpsertRepository.addQuantity(cart.getId(), productId, quantity, now);
+            cart.addLines(line);
+            reservationLedger.hold(line);
+        });
+        cartViewCache.evictAfterCommit(login);
+        return toView(cart);
     }
 
-    private void updateLineAndProductQuantity(ProductCart line, int deltaQuantity) {
-        final Product original = productRepository.findById(line.getProduct().getId()).orElseThrow();
-        final int newQuantity = original.getQuantity() - deltaQuantity;
+    /**
+     * Lock a line before reading it, as the reservation ledger may expire it concurrently without taking the cart lock: its
+     * stock would then be given back twice.
+     *
+     * @throws java.util.NoSuchElementException if the line no longer exists.
+     */
+    private ProductCart lockLine(Long lineId) {
+        if (productCartRepository.lockIds(Collections.singleton(lineId)).isEmpty()) {
+            throw new NoSuchElementException("No cart line " + lineId);
+        }
+        return productCartRepository.findById(lineId).orElseThrow();
+    }
 
-        if (newQuantity < 0) {
-            throw new InsufficientQuantityException();
+    private static int positiveQuantity(CartLineOperationDTO operation) {
+        if (operation.getQuantity() == null || operation.getQuantity() <= 0) {
+            throw new InvalidCartOperationException("The quantity must be positive");
         }
+        return operation.getQuantity();
+    }
 
-        original.setQuantity(newQuantity);
-        final Product updated = productRepository.save(original);
-        if (updated.getVersion().equals(original.getVersion() + 1)) {
-            throw new VersionConflictException();
+    private static ProductCart lineOf(Map<Long, ProductCart> linesById, Map<Long, Integer> quantityByLine, CartLineOperationDTO operation) {
+        if (!quantityByLine.containsKey(operation.getLineId())) {
+            throw new InvalidCartOperationException("Unknown cart line " + operation.getLineId());
         }
+        return linesById.get(operation.getLineId());
     }
 
-    private void deleteLineAndUpdateProductQuantity(ProductCart line) {
-        final Product original = productRepository.findById(line.getProduct().getId()).orElseThrow();
-        final int newQuantity = original.getQuantity() + line.getQuantity();
-        original.setQuantity(newQuantity);
-        final Product updated = productRepository.save(original);
-        if (updated.getVersion().equals(original.getVersion() + 1)) {
-            throw new VersionConflictException();
+    /**
+     * Take units from the product stock, either in a single conditional update or through the inventory engine.
+     *
+     * @throws InsufficientQuantityException if the stock does not hold enough units.
+     */
+    private void takeQuantity(Long productId, int quantity) {
+        if (!inventoryEngine.take(productId, quantity)) {
+            throw new InsufficientQuantityException();
         }
+        inventoryMovementLedger.record(productId, -quantity, InventoryMovementLedger.Reason.CART);
+        stockLevelPublisher.changedAfterCommit(productId);
+    }
+
+    private void giveBackQuantity(Long productId, int quantity) {
+        inventoryEngine.giveBack(productId, quantity);
+        inventoryMovementLedger.record(productId, quantity, InventoryMovementLedger.Reason.CART);
+        stockLevelPublisher.changedAfterCommit(productId);
     }
 
     @Override
     public Cart save(Cart cart) {
         log.debug("Request to save Cart : {}", cart);
+        if (cart.getId() != null) {
+            cartLocks.lockUntilCompletion(cart.getId());
+        }
         return cartRepository.save(cart);
     }
 
     @Override
     public Optional<Cart> partialUpdate(Cart cart) {
         log.debug("Request to partially update Cart : {}", cart);
+        cartLocks.lockUntilCompletion(cart.getId());
 
         return cartRepository
             .findById(cart.getId())
@@ -171,6 +343,24 @@ public class CartServiceImpl implements CartService {
         return result;
     }
 
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<CartDTO> findViewByLogin(String login) {
+        log.debug("Request to get the Cart view of : {}", login);
+        return cartViewCache.get(login, () -> readOnlyTransactionTemplate.execute(status -> loadView(login)));
+    }
+
+    private Optional<CartDTO> loadView(String login) {
+        return cartRepository.findOneWithProductsByLogin(login).map(CartServiceImpl::toView);
+    }
+
+    private static CartDTO toView(Cart cart) {
+        return new CartDTO(
+            cart.getId(),
+            cart.getLines().stream().sorted(Comparator.comparing(ProductCart::getId)).collect(Collectors.toList())
+        );
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Optional<Cart> findOne(Long id) {
@@ -181,6 +371,7 @@ public class CartServiceImpl implements CartService {
     @Override
     public void delete(Long id) {
         log.debug("Request to delete Cart : {}", id);
+        cartLocks.lockUntilCompletion(id);
         cartRepository.deleteById(id);
     }
 }
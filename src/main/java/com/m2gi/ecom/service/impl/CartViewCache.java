@@ -0,0 +1,94 @@
+package com.m2gi.ecom.service.impl;
+
+import com.m2gi.ecom.domain.Cart;
+import com.m2gi.ecom.service.TransactionUtils;
+import com.m2gi.ecom.service.dto.CartDTO;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Cache of the cart views, by login of their user.
+ * <p>
+ * A view is evicted once the transaction changing its cart is committed. Every eviction bumps the generation of the login,
+ * so a view loaded concurrently from the previous state of the cart is not left in the cache.
+ */
+@Service
+public class CartViewCache {
+
+    public static final String CART_VIEWS_BY_LOGIN_CACHE = "cartViewsByLogin";
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final CacheManager cacheManager;
+
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public CartViewCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * Get the cart view of a user, loading it on a miss.
+     * <p>
+     * Views loaded within a running transaction are not cached, since they may hold changes which are not committed yet.
+     *
+     * @param login the login of the user.
+     * @param loader the loader of the view.
+     * @return the view.
+     */
+    public Optional<CartDTO> get(String login, Supplier<Optional<CartDTO>> loader) {
+        final CartDTO cached = cache().get(login, CartDTO.class);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        final boolean cacheable = !TransactionSynchronizationManager.isActualTransactionActive();
+        final long generation = generations.get(stripeOf(login));
+        final Optional<CartDTO> view = loader.get();
+        if (cacheable && view.isPresent()) {
+            cache().put(login, view.get());
+            // An eviction may have happened while loading, before the put
+            if (generations.get(stripeOf(login)) != generation) {
+                cache().evict(login);
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Evict the view of a cart once the current transaction is committed, or at once outside a transaction.
+     */
+    public void evictAfterCommit(Cart cart) {
+        if (cart != null && cart.getUser() != null && cart.getUser().getUser() != null) {
+            evictAfterCommit(cart.getUser().getUser().getLogin());
+        }
+    }
+
+    /**
+     * Evict the cart view of a user once the current transaction is committed, or at once outside a transaction.
+     */
+    public void evictAfterCommit(String login) {
+        if (login == null) {
+            return;
+        }
+        TransactionUtils.afterCommit(() -> evict(login));
+    }
+
+    public void evict(String login) {
+        generations.incrementAndGet(stripeOf(login));
+        cache().evict(login);
+    }
+
+    private Cache cache() {
+        return Objects.requireNonNull(cacheManager.getCache(CART_VIEWS_BY_LOGIN_CACHE));
+    }
+
+    private static int stripeOf(String login) {
+        return Math.floorMod(login.hashCode(), GENERATION_STRIPES);
+    }
+}
@@ -5,6 +5,10 @@ import com.m2gi.ecom.domain.Product;
 import com.m2gi.ecom.repository.CategoryRepository;
 import com.m2gi.ecom.repository.ProductRepository;
 import com.m2gi.ecom.service.CategoryService;
+import com.m2gi.ecom.service.search.ProductFacetIndex;
+import com.m2gi.ecom.service.search.ProductResultCache;
+import com.m2gi.ecom.service.search.ProductSearchIndex;
+import com.m2gi.ecom.service.search.ProductSuggester;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -27,14 +31,40 @@ public class CategoryServiceImpl implements CategoryService {
 
     private final ProductRepository productRepository;
 
-    public CategoryServiceImpl(CategoryRepository categoryRepository, ProductRepository productRepository) {
+    private final ProductSearchIndex productSearchIndex;
+
+    private final ProductFacetIndex productFacetIndex;
+
+    private final ProductSuggester productSuggester;
+
+    private final ProductResultCache productResultCache;
+
+    public CategoryServiceImpl(
+        CategoryRepository categoryRepository,
+        ProductRepository productRepository,
+        ProductSearchIndex productSearchIndex,
+        ProductFacetIndex productFacetIndex,
+        ProductSuggester productSuggester,
+        ProductResultCache productResultCache
+    ) {
         this.categoryRepository = categoryRepository;
         this.productRepository = productRepository;
+        this.productSearchIndex = productSearchIndex;
+        this.productFacetIndex = productFacetIndex;
+        this.productSuggester = productSuggester;
+        this.productResultCache = productResultCache;
     }
 
     @Override
     public Category save(Category category) {
         log.debug("Request to save Category : {}", category);
+        // The categories are indexed, counted and suggested with their products
+        productSearchIndex.rebuildAfterCommit();
+        productFacetIndex.rebuildAfterCommit();
+        productSuggester.rebuildAfterCommit();
+        // A move changes the categories of the products below, and the names are searched
+        productResultCache.evictCategoriesAfterCommit();
+        productResultCache.evictSearchesAfterCommit();
         Long oldParentId = null;
         Category newParent;
         if (category.getId() != null) {
@@ -68,6 +98,10 @@ public class CategoryServiceImpl implements CategoryService {
     @Override
     public Optional<Category> partialUpdate(Category category) {
         log.debug("Request to partially update Category : {}", category);
+        productSearchIndex.rebuildAfterCommit();
+        productFacetIndex.rebuildAfterCommit();
+        productSuggester.rebuildAfterCommit();
+        productResultCache.evictSearchesAfterCommit();
 
         return categoryRepository
             .findById(category.getId())
@@ -98,6 +132,11 @@ public class CategoryServiceImpl implements CategoryService {
     @Override
     public void delete(Long id) {
         log.debug("Request to delete Category : {}", id);
+        productSearchIndex.rebuildAfterCommit();
+        productFacetIndex.rebuildAfterCommit();
+        productSuggester.rebuildAfterCommit();
+        productResultCache.evictCategoriesAfterCommit();
+        productResultCache.evictSearchesAfterCommit();
         final List<Product> relatedProducts = productRepository.findAllFromCategory(categoryRepository.findById(id).orElseThrow(), null);
         final List<Product> toUpdate = relatedProducts
             .stream()
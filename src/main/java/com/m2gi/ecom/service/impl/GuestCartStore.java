@@ -0,0 +1,255 @@
+package com.m2gi.ecom.service.impl;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.service.CartService;
+import com.m2gi.ecom.service.dto.CartLineOperationDTO;
+import com.m2gi.ecom.service.dto.GuestCartLineDTO;
+import com.m2gi.ecom.service.errors.InsufficientQuantityException;
+import com.m2gi.ecom.service.errors.InvalidCartOperationException;
+import java.io.Serializable;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+/**
+ * Store of the carts of the anonymous visitors, keyed by the opaque token of their cookie.
+ * <p>
+ * The carts live in the off-heap tier of the {@link #GUEST_CARTS_CACHE} cache: they cost no garbage collection, are
+ * evicted once their time to live has elapsed, and the least recently used ones are dropped when the tier is full. A cart
+ * is stored as two primitive arrays, to keep its serialized form small. Nothing reaches the database nor the stock until
+ * the visitor logs in, when the lines are merged into the cart of the user in one batch.
+ */
+@Service
+public class GuestCartStore {
+
+    public static final String GUEST_CARTS_CACHE = "guestCarts";
+
+    private static final int TOKEN_BYTES = 16;
+
+    private static final int TOKEN_LENGTH = 22;
+
+    private static final int LOCK_STRIPES = 256;
+
+    private final Logger log = LoggerFactory.getLogger(GuestCartStore.class);
+
+    private final CacheManager cacheManager;
+
+    private final CartService cartService;
+
+    private final ProductRepository productRepository;
+
+    private final int maxLines;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public GuestCartStore(
+        CacheManager cacheManager,
+        CartService cartService,
+        ProductRepository productRepository,
+        ApplicationProperties applicationProperties
+    ) {
+        this.cacheManager = cacheManager;
+        this.cartService = cartService;
+        this.productRepository = productRepository;
+        this.maxLines = applicationProperties.getGuestCart().getMaxLines();
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * A new random token, not guessable from the other ones.
+     */
+    public String newToken() {
+        final byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Whether a token has the shape of the ones from {@link #newToken()}, so that no arbitrary cookie value is used as key.
+     */
+    public boolean isValidToken(String token) {
+        if (token == null || token.length() != TOKEN_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            final char c = token.charAt(i);
+            if (!(Character.isLetterOrDigit(c) && c < 128) && c != '-' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The lines of a guest cart, empty if it does not exist or was evicted.
+     */
+    public List<GuestCartLineDTO> getLines(String token) {
+        return toLines(find(token));
+    }
+
+    /**
+     * Set the quantity of a product in a guest cart.
+     *
+     * @param token the token of the cart.
+     * @param productId the id of the product.
+     * @param quantity the quantity, {@code 0} to remove the line.
+     * @return the lines of the cart.
+     * @throws InvalidCartOperationException if the token is malformed, the quantity negative, the product unknown or the
+     * cart full.
+     */
+    public List<GuestCartLineDTO> setQuantity(String token, Long productId, int quantity) {
+        if (!isValidToken(token)) {
+            throw new InvalidCartOperationException("Invalid guest cart token");
+        }
+        if (productId == null || quantity < 0) {
+            throw new InvalidCartOperationException("Invalid guest cart line");
+        }
+        if (quantity > 0 && !productRepository.existsById(productId)) {
+            throw new InvalidCartOperationException("Unknown product " + productId);
+        }
+        synchronized (lockOf(token)) {
+            final GuestCart current = find(token);
+            final GuestCart updated = (current != null ? current : GuestCart.EMPTY).withQuantity(productId, quantity);
+            if (updated.size() > maxLines) {
+                throw new InvalidCartOperationException("A guest cart holds at most " + maxLines + " lines");
+            }
+            if (updated.size() == 0) {
+                cache().evict(token);
+            } else {
+                cache().put(token, updated);
+            }
+            return toLines(updated);
+        }
+    }
+
+    public void clear(String token) {
+        cache().evict(token);
+    }
+
+    /**
+     * Merge a guest cart into the cart of a user, with one batch of line operations, then drop it.
+     * <p>
+     * The guest cart is kept when the batch is rejected, for instance when a product is out of stock, so the visitor can
+     * still see it and retry from the cart of their account.
+     *
+     * @param token the token of the guest cart.
+     * @param login the login of the user.
+     * @return whether lines were merged.
+     */
+    public boolean merge(String token, String login) {
+        synchronized (lockOf(token)) {
+            final GuestCart guestCart = find(token);
+            if (guestCart == null) {
+                return false;
+            }
+            final List<CartLineOperationDTO> operations = new ArrayList<>(guestCart.size());
+            for (int i = 0; i < guestCart.size(); i++) {
+                operations.add(CartLineOperationDTO.add(guestCart.productIds[i], guestCart.quantities[i]));
+            }
+            try {
+                cartService.applyLineOperations(login, operations);
+            } catch (InsufficientQuantityException | InvalidCartOperationException e) {
+                log.debug("Guest cart of {} not merged: {}", login, e.getMessage());
+                return false;
+            } catch (RuntimeException e) {
+                // Such as a flash sale not admitting the user or a lock conflict: the login must not fail with the merge
+                log.warn("Guest cart of {} not merged", login, e);
+                return false;
+            }
+            cache().evict(token);
+            log.debug("Merged {} guest cart lines into the cart of {}", operations.size(), login);
+            return true;
+        }
+    }
+
+    private GuestCart find(String token) {
+        return isValidToken(token) ? cache().get(token, GuestCart.class) : null;
+    }
+
+    private static List<GuestCartLineDTO> toLines(GuestCart guestCart) {
+        if (guestCart == null) {
+            return Collections.emptyList();
+        }
+        final List<GuestCartLineDTO> lines = new ArrayList<>(guestCart.size());
+        for (int i = 0; i < guestCart.size(); i++) {
+            lines.add(new GuestCartLineDTO(guestCart.productIds[i], guestCart.quantities[i]));
+        }
+        return lines;
+    }
+
+    private Object lockOf(String token) {
+        return locks[Math.floorMod(token.hashCode(), locks.length)];
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(GUEST_CARTS_CACHE);
+    }
+
+    /**
+     * The immutable lines of a guest cart, as stored off the heap.
+     */
+    static final class GuestCart implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        static final GuestCart EMPTY = new GuestCart(new long[0], new int[0]);
+
+        private final long[] productIds;
+
+        private final int[] quantities;
+
+        private GuestCart(long[] productIds, int[] quantities) {
+            this.productIds = productIds;
+            this.quantities = quantities;
+        }
+
+        int size() {
+            return productIds.length;
+        }
+
+        GuestCart withQuantity(long productId, int quantity) {
+            int index = -1;
+            for (int i = 0; i < productIds.length; i++) {
+                if (productIds[i] == productId) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                if (quantity == 0) {
+                    return this;
+                }
+                final long[] ids = Arrays.copyOf(productIds, productIds.length + 1);
+                final int[] counts = Arrays.copyOf(quantities, quantities.length + 1);
+                ids[productIds.length] = productId;
+                counts[quantities.length] = quantity;
+                return new GuestCart(ids, counts);
+            }
+            if (quantity == 0) {
+                final long[] ids = new long[productIds.length - 1];
+                final int[] counts = new int[quantities.length - 1];
+                System.arraycopy(productIds, 0, ids, 0, index);
+                System.arraycopy(productIds, index + 1, ids, index, ids.length - index);
+                System.arraycopy(quantities, 0, counts, 0, index);
+                System.arraycopy(quantities, index + 1, counts, index, counts.length - index);
+                return new GuestCart(ids, counts);
+            }
+            final int[] counts = quantities.clone();
+            counts[index] = quantity;
+            return new GuestCart(productIds, counts);
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.m2gi.ecom.service.impl;
 
 import com.m2gi.ecom.domain.User;
+import com.m2gi.ecom.service.dto.LowStockDTO;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
 import org.slf4j.Logger;
@@ -31,6 +35,8 @@ public class MailService {
 
     private static final String BASE_URL = "baseUrl";
 
+    private static final String PRODUCTS = "products";
+
     private final JHipsterProperties jHipsterProperties;
 
     private final JavaMailSender javaMailSender;
@@ -79,6 +85,11 @@ public class MailService {
 
     @Async
     public void sendEmailFromTemplate(User user, String templateName, String titleKey) {
+        sendEmailFromTemplate(user, templateName, titleKey, Collections.emptyMap());
+    }
+
+    @Async
+    public void sendEmailFromTemplate(User user, String templateName, String titleKey, Map<String, Object> variables) {
         if (user.getEmail() == null) {
             log.debug("Email doesn't exist for user '{}'", user.getLogin());
             return;
@@ -87,6 +98,7 @@ public class MailService {
         Context context = new Context(locale);
         context.setVariable(USER, user);
         context.setVariable(BASE_URL, jHipsterProperties.getMail().getBaseUrl());
+        context.setVariables(variables);
         String content = templateEngine.process(templateName, context);
         String subject = messageSource.getMessage(titleKey, null, locale);
         sendEmail(user.getEmail(), subject, content, false, true);
@@ -109,4 +121,10 @@ public class MailService {
         log.debug("Sending password reset email to '{}'", user.getEmail());
         sendEmailFromTemplate(user, "mail/passwordResetEmail", "email.reset.title");
     }
+
+    @Async
+    public void sendLowStockDigest(User user, List<LowStockDTO> products) {
+        log.debug("Sending low stock digest email to '{}'", user.getEmail());
+        sendEmailFromTemplate(user, "mail/lowStockDigestEmail", "email.lowstock.title", Map.of(PRODUCTS, products));
+    }
 }
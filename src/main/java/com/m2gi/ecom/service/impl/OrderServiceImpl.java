@@ -2,11 +2,17 @@ package com.m2gi.ecom.service.impl;
 
 import com.m2gi.ecom.domain.Cart;
 import com.m2gi.ecom.domain.Order;
+import com.m2gi.ecom.domain.ProductCart;
 import com.m2gi.ecom.repository.CartRepository;
 import com.m2gi.ecom.repository.OrderRepository;
+import com.m2gi.ecom.repository.ProductCartRepository;
 import com.m2gi.ecom.service.OrderService;
+import com.m2gi.ecom.service.errors.InvalidCartOperationException;
+import com.m2gi.ecom.service.inventory.ReservationLedger;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -23,10 +29,25 @@ public class OrderServiceImpl implements OrderService {
 
     private final OrderRepository orderRepository;
     private final CartRepository cartRepository;
+    private final ReservationLedger reservationLedger;
+    private final CartViewCache cartViewCache;
+    private final ProductCartRepository productCartRepository;
+    private final CartLocks cartLocks;
 
-    public OrderServiceImpl(OrderRepository orderRepository, CartRepository cartRepository) {
+    public OrderServiceImpl(
+        OrderRepository orderRepository,
+        CartRepository cartRepository,
+        ReservationLedger reservationLedger,
+        CartViewCache cartViewCache,
+        ProductCartRepository productCartRepository,
+        CartLocks cartLocks
+    ) {
         this.orderRepository = orderRepository;
         this.cartRepository = cartRepository;
+        this.reservationLedger = reservationLedger;
+        this.cartViewCache = cartViewCache;
+        this.productCartRepository = productCartRepository;
+        this.cartLocks = cartLocks;
     }
 
     @Override
@@ -39,7 +60,25 @@ public class OrderServiceImpl implements OrderService {
     @Transactional
     public Order createOrder(Order order, Cart cart) {
         log.debug("Request to create Order : {} corresponding to Cart : {}", order, cart);
+        cartLocks.lockUntilCompletion(cart.getId());
+        // The lines are locked before being compared, so that the reservation ledger cannot expire the ones being sold
+        productCartRepository.lockIdsByCartId(cart.getId());
+        // The cart was read before its lock was taken: a line changed meanwhile would be deleted without being sold
+        final Map<Long, Integer> quantityByLine = cart
+            .getLines()
+            .stream()
+            .collect(Collectors.toMap(ProductCart::getId, ProductCart::getQuantity));
+        final Map<Long, Integer> currentQuantityByLine = productCartRepository
+            .findHoldsByCartId(cart.getId())
+            .stream()
+            .collect(Collectors.toMap(ProductCartRepository.Hold::getId, ProductCartRepository.Hold::getQuantity));
+        if (!quantityByLine.equals(currentQuantityByLine)) {
+            throw new InvalidCartOperationException("Cart has been modified");
+        }
         this.cartRepository.empty(cart);
+        // The stock held by the cart is now sold
+        cart.getLines().forEach(line -> reservationLedger.release(line.getId()));
+        cartViewCache.evictAfterCommit(cart);
         return this.orderRepository.save(order);
     }
 
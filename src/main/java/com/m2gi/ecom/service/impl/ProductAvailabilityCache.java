@@ -0,0 +1,82 @@
+package com.m2gi.ecom.service.impl;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.domain.enumeration.Availability;
+import com.m2gi.ecom.service.dto.StockLevelDTO;
+import com.m2gi.ecom.service.inventory.InventoryEngine;
+import com.m2gi.ecom.service.inventory.StockLevelsChangedEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cache of the coarse {@link Availability} of the products, by product id.
+ * <p>
+ * The listed products carry their availability instead of their quantity and version, which change on every cart
+ * operation. The availability of a product is taken from the inventory engine while it holds the product, else from the
+ * stock levels published after every stock change, else from the quantity of the loaded product the first time it is
+ * listed. The listings themselves are not cached here: their ids are served by the
+ * {@link com.m2gi.ecom.service.search.ProductResultCache}, which the stock changes do not evict.
+ */
+@Service
+public class ProductAvailabilityCache {
+
+    private final InventoryEngine inventoryEngine;
+
+    private final int lowQuantity;
+
+    private final Map<Long, Availability> availabilities = new ConcurrentHashMap<>();
+
+    public ProductAvailabilityCache(InventoryEngine inventoryEngine, ApplicationProperties applicationProperties) {
+        this.inventoryEngine = inventoryEngine;
+        this.lowQuantity = applicationProperties.getInventory().getAvailability().getLowQuantity();
+    }
+
+    /**
+     * Copy products with their availability instead of their quantity and version.
+     *
+     * @param products the products.
+     * @return the listed copies.
+     */
+    public List<Product> toListing(List<Product> products) {
+        final List<Product> listing = new ArrayList<>(products.size());
+        for (Product product : products) {
+            listing.add(product.listingCopy(availability(product)));
+        }
+        return listing;
+    }
+
+    @EventListener
+    public void onStockLevelsChanged(StockLevelsChangedEvent event) {
+        for (StockLevelDTO level : event.getLevels()) {
+            if (level.getQuantity() != null) {
+                availabilities.put(level.getProductId(), Availability.of(level.getQuantity(), lowQuantity));
+            }
+        }
+    }
+
+    /**
+     * Forget the availability of a deleted product.
+     */
+    public void forget(Long productId) {
+        availabilities.remove(productId);
+    }
+
+    private Availability availability(Product product) {
+        final Integer engineQuantity = inventoryEngine.availableQuantity(product.getId());
+        if (engineQuantity != null) {
+            final Availability availability = Availability.of(engineQuantity, lowQuantity);
+            availabilities.put(product.getId(), availability);
+            return availability;
+        }
+        return availabilities.computeIfAbsent(
+            product.getId(),
+            id -> Availability.of(Objects.requireNonNullElse(product.getQuantity(), 0), lowQuantity)
+        );
+    }
+}
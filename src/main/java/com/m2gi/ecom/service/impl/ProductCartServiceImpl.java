@@ -1,20 +1,30 @@
 package com.m2gi.ecom.service.impl;
 
+import com.m2gi.ecom.config.ApplicationProperties;
 import com.m2gi.ecom.domain.ProductCart;
 import com.m2gi.ecom.repository.ProductCartRepository;
 import com.m2gi.ecom.service.ProductCartService;
+import com.m2gi.ecom.service.inventory.ReservationLedger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Service Implementation for managing {@link ProductCart}.
@@ -30,8 +40,38 @@ public class ProductCartServiceImpl implements ProductCartService {
     @PersistenceContext
     private EntityManager em;
 
-    public ProductCartServiceImpl(ProductCartRepository productCartRepository) {
+    private final ReservationLedger reservationLedger;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Counter expiredLinesCounter;
+
+    private final Counter expiryChunksCounter;
+
+    /**
+     * Number of lines expired by the running sweep, or by the last one.
+     */
+    private final AtomicLong expiryProgress = new AtomicLong();
+
+    public ProductCartServiceImpl(
+        ProductCartRepository productCartRepository,
+        ReservationLedger reservationLedger,
+        ApplicationProperties applicationProperties,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry
+    ) {
         this.productCartRepository = productCartRepository;
+        this.reservationLedger = reservationLedger;
+        this.applicationProperties = applicationProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.expiredLinesCounter = meterRegistry.counter("cart.expiry.lines");
+        this.expiryChunksCounter = meterRegistry.counter("cart.expiry.chunks");
+        meterRegistry.gauge("cart.expiry.progress", expiryProgress);
     }
 
     @Override
@@ -90,17 +130,54 @@ public class ProductCartServiceImpl implements ProductCartService {
     }
 
     /**
-     * Not bought products should be automatically deleted after 3 days.
+     * Not bought products should be automatically deleted after their time to live, and their stock given back.
      * <p>
-     * This is scheduled to get fired everyday, at 01:00 (am).
+     * The {@link ReservationLedger} expires the lines continuously, this is a safety net for the lines it did not know of,
+     * scheduled to get fired everyday, at 01:00 (am). The expired lines are walked in {@code (creationDatetime, id)} order
+     * by chunks, each chunk being expired in its own transaction with one grouped stock update and one bulk delete.
      */
     @Scheduled(cron = "0 0 1 * * ?")
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void removeNotBoughtProducts() {
-        productCartRepository
-            .findAllByCreationDatetimeBefore(Instant.now().minus(3, ChronoUnit.DAYS))
-            .forEach(productCart -> {
-                log.debug("Deleting ProductCart after 3 days: {}", productCart);
-                productCartRepository.deleteWithId(productCart.getId());
-            });
+        final Instant cutoff = Instant.now().minus(applicationProperties.getInventory().getReservation().getTtl());
+        final int chunkSize = applicationProperties.getInventory().getReservation().getExpiryBatchSize();
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        expiryProgress.set(0);
+        Instant afterDatetime = Instant.EPOCH;
+        Long afterId = 0L;
+        int chunks = 0;
+        List<ProductCartRepository.Hold> chunk;
+        do {
+            final Instant chunkAfterDatetime = afterDatetime;
+            final Long chunkAfterId = afterId;
+            chunk =
+                transactionTemplate.execute(status -> {
+                    final List<ProductCartRepository.Hold> holds = productCartRepository.findHoldsCreatedBefore(
+                        cutoff,
+                        chunkAfterDatetime,
+                        chunkAfterId,
+                        PageRequest.of(0, chunkSize)
+                    );
+                    final int expired = reservationLedger.expire(
+                        holds.stream().map(ProductCartRepository.Hold::getId).collect(Collectors.toList())
+                    );
+                    expiredLinesCounter.increment(expired);
+                    expiryProgress.addAndGet(expired);
+                    return holds;
+                });
+            if (!chunk.isEmpty()) {
+                chunks++;
+                expiryChunksCounter.increment();
+                afterDatetime = chunk.get(chunk.size() - 1).getCreationDatetime();
+                afterId = chunk.get(chunk.size() - 1).getId();
+            }
+        } while (chunk.size() == chunkSize);
+        final long duration = sample.stop(meterRegistry.timer("cart.expiry.duration"));
+        log.info(
+            "Expired {} ProductCarts after their time to live, in {} chunks and {} ms",
+            expiryProgress.get(),
+            chunks,
+            Duration.ofNanos(duration).toMillis()
+        );
     }
 }
@@ -1,17 +1,36 @@
 package com.m2gi.ecom.service.impl;
 
+import com.m2gi.ecom.config.ApplicationProperties;
 import com.m2gi.ecom.domain.Category;
 import com.m2gi.ecom.domain.Product;
 import com.m2gi.ecom.repository.CategoryRepository;
+import com.m2gi.ecom.repository.ProductKeysetRepository;
 import com.m2gi.ecom.repository.ProductRepository;
 import com.m2gi.ecom.service.ProductService;
+import com.m2gi.ecom.service.dto.ProductCursor;
+import com.m2gi.ecom.service.dto.ProductPageDTO;
+import com.m2gi.ecom.service.dto.StockReceiptDTO;
+import com.m2gi.ecom.service.errors.InvalidCursorException;
+import com.m2gi.ecom.service.errors.InvalidStockReceiptException;
+import com.m2gi.ecom.service.inventory.InventoryEngine;
+import com.m2gi.ecom.service.inventory.InventoryMovementLedger;
+import com.m2gi.ecom.service.inventory.LowStockWatcher;
+import com.m2gi.ecom.service.inventory.StockConflictRetryPolicy;
+import com.m2gi.ecom.service.inventory.StockLevelPublisher;
+import com.m2gi.ecom.service.search.ProductFacetIndex;
+import com.m2gi.ecom.service.search.ProductResultCache;
+import com.m2gi.ecom.service.search.ProductSearchIndex;
+import com.m2gi.ecom.service.search.ProductSuggester;
+import java.text.Collator;
 import java.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -23,20 +42,106 @@ public class ProductServiceImpl implements ProductService {
 
     private final Logger log = LoggerFactory.getLogger(ProductServiceImpl.class);
 
+    /**
+     * The sort of the searches without an explicit one, in the cursors.
+     */
+    private static final String RELEVANCE = "relevance";
+
+    private static final int IDS_CHUNK_SIZE = 1000;
+
     private final ProductRepository productRepository;
 
     private final CategoryRepository categoryRepository;
 
-    public ProductServiceImpl(ProductRepository productRepository, CategoryRepository categoryRepository) {
+    private final ProductKeysetRepository productKeysetRepository;
+
+    private final ProductSuggester productSuggester;
+
+    private final ProductResultCache productResultCache;
+
+    private final StockConflictRetryPolicy stockConflictRetryPolicy;
+
+    private final StockLevelPublisher stockLevelPublisher;
+
+    private final InventoryEngine inventoryEngine;
+
+    private final InventoryMovementLedger inventoryMovementLedger;
+
+    private final LowStockWatcher lowStockWatcher;
+
+    private final ProductAvailabilityCache productAvailabilityCache;
+
+    private final ProductSearchIndex productSearchIndex;
+
+    private final ProductFacetIndex productFacetIndex;
+
+    private final ApplicationProperties.Search.Strategy searchStrategy;
+
+    private final ApplicationProperties.Search.Fuzzy fuzzySearch;
+
+    public ProductServiceImpl(
+        ProductRepository productRepository,
+        CategoryRepository categoryRepository,
+        StockConflictRetryPolicy stockConflictRetryPolicy,
+        StockLevelPublisher stockLevelPublisher,
+        InventoryEngine inventoryEngine,
+        InventoryMovementLedger inventoryMovementLedger,
+        LowStockWatcher lowStockWatcher,
+        ProductAvailabilityCache productAvailabilityCache,
+        ProductSearchIndex productSearchIndex,
+        ProductFacetIndex productFacetIndex,
+        ApplicationProperties applicationProperties,
+        ProductKeysetRepository productKeysetRepository,
+        ProductSuggester productSuggester,
+        ProductResultCache productResultCache
+    ) {
         this.productRepository = productRepository;
         this.categoryRepository = categoryRepository;
+        this.stockConflictRetryPolicy = stockConflictRetryPolicy;
+        this.stockLevelPublisher = stockLevelPublisher;
+        this.inventoryEngine = inventoryEngine;
+        this.inventoryMovementLedger = inventoryMovementLedger;
+        this.lowStockWatcher = lowStockWatcher;
+        this.productAvailabilityCache = productAvailabilityCache;
+        this.productSearchIndex = productSearchIndex;
+        this.productFacetIndex = productFacetIndex;
+        this.searchStrategy = applicationProperties.getSearch().getStrategy();
+        this.fuzzySearch = applicationProperties.getSearch().getFuzzy();
+        this.productKeysetRepository = productKeysetRepository;
+        this.productSuggester = productSuggester;
+        this.productResultCache = productResultCache;
     }
 
     @Override
     public Product save(Product product) {
         log.debug("Request to save Product : {}", product);
         product.setRelatedCategories(buildRelatedCategories(product.getCategory()));
-        return productRepository.save(product);
+        final int previousQuantity = product.getId() == null ? 0 : findQuantity(product.getId());
+        final Product result = productRepository.save(product);
+        inventoryMovementLedger.record(
+            result.getId(),
+            Optional.ofNullable(result.getQuantity()).orElse(0) - previousQuantity,
+            InventoryMovementLedger.Reason.ADJUSTMENT
+        );
+        lowStockWatcher.thresholdChangedAfterCommit(result.getId(), result.getLowStockThreshold(), result.getQuantity());
+        stockLevelPublisher.changedAfterCommit(result.getId());
+        productSearchIndex.indexAfterCommit(result.getId());
+        productFacetIndex.indexAfterCommit(result.getId());
+        productSuggester.rebuildAfterCommit();
+        productResultCache.evictAfterCommit(result);
+        return result;
+    }
+
+    /**
+     * The stock of a product before it is overwritten, read from its row rather than from a possibly stale entity.
+     */
+    private int findQuantity(Long productId) {
+        return productRepository
+            .findStockLevels(Collections.singleton(productId))
+            .stream()
+            .findFirst()
+            .map(ProductRepository.StockLevel::getQuantity)
+            .orElse(0);
     }
 
     private Set<Category> buildRelatedCategories(final Category category) {
@@ -46,9 +151,14 @@ public class ProductServiceImpl implements ProductService {
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Optional<Product> partialUpdate(Product product) {
         log.debug("Request to partially update Product : {}", product);
+        // The stock updates of the carts bump the version, so the update is replayed on a fresh copy when it conflicts
+        return stockConflictRetryPolicy.execute(product.getId(), () -> applyPartialUpdate(product));
+    }
 
+    private Optional<Product> applyPartialUpdate(Product product) {
         return productRepository
             .findById(product.getId())
             .map(existingProduct -> {
@@ -59,7 +169,13 @@ public class ProductServiceImpl implements ProductService {
                     existingProduct.setDescription(product.getDescription());
                 }
                 if (product.getQuantity() != null) {
+                    inventoryMovementLedger.record(
+                        existingProduct.getId(),
+                        product.getQuantity() - Optional.ofNullable(existingProduct.getQuantity()).orElse(0),
+                        InventoryMovementLedger.Reason.ADJUSTMENT
+                    );
                     existingProduct.setQuantity(product.getQuantity());
+                    stockLevelPublisher.changedAfterCommit(existingProduct.getId());
                 }
                 if (product.getVersion() != null) {
                     existingProduct.setVersion(product.getVersion());
@@ -82,32 +198,349 @@ public class ProductServiceImpl implements ProductService {
                 if (product.getWeightUnit() != null) {
                     existingProduct.setWeightUnit(product.getWeightUnit());
                 }
+                if (product.getLowStockThreshold() != null) {
+                    existingProduct.setLowStockThreshold(product.getLowStockThreshold());
+                    lowStockWatcher.thresholdChangedAfterCommit(
+                        existingProduct.getId(),
+                        existingProduct.getLowStockThreshold(),
+                        existingProduct.getQuantity()
+                    );
+                }
 
+                productSearchIndex.indexAfterCommit(existingProduct.getId());
+                productFacetIndex.indexAfterCommit(existingProduct.getId());
+                productSuggester.rebuildAfterCommit();
+                productResultCache.evictAfterCommit(existingProduct);
                 return existingProduct;
             })
             .map(productRepository::save);
     }
 
+    @Override
+    public int receiveStock(List<StockReceiptDTO> receipts) {
+        log.debug("Request to receive the stock of {} Products", receipts.size());
+        final Map<Long, Integer> quantityByProduct = new HashMap<>();
+        for (StockReceiptDTO receipt : receipts) {
+            if (receipt.getProductId() == null || receipt.getDelta() == null || receipt.getDelta() <= 0) {
+                throw new InvalidStockReceiptException("Invalid stock receipt " + receipt);
+            }
+            quantityByProduct.merge(receipt.getProductId(), receipt.getDelta(), Integer::sum);
+        }
+        // Relative increments, so the units taken meanwhile by the carts are not overwritten
+        final int updated = inventoryEngine.giveBackAll(quantityByProduct);
+        if (updated < quantityByProduct.size()) {
+            throw new InvalidStockReceiptException((quantityByProduct.size() - updated) + " received products do not exist");
+        }
+        inventoryMovementLedger.recordAll(quantityByProduct, InventoryMovementLedger.Reason.RECEIPT);
+        stockLevelPublisher.changedAfterCommit(quantityByProduct.keySet());
+        return updated;
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<Product> findAll(Sort sort) {
         log.debug("Request to get all Products");
-        return productRepository.findAllWithEagerRelationships(sort);
+        return findListingIds(null, sort)
+            .map(ids -> findAllByIds(ids, Sort.unsorted()))
+            .orElseGet(() -> productRepository.findAllWithEagerRelationships(sort));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<Product> findResearch(String query, Sort sort) {
-        query = query.toLowerCase();
         log.debug("Request to get Products from query : (" + query + ")");
-        return productRepository.findAllFromResearch(query, sort);
+        // A blank query matches every product, as the like predicates do, which do not rank the products but let them be
+        // sorted by the database
+        if (query.isBlank() || !isSearchedByIds()) {
+            return productRepository.findAllFromResearch(query.toLowerCase(), sort.isSorted() ? sort : Sort.by("name"));
+        }
+        return findAllByIds(findResearchIds(query), sort);
+    }
+
+    private boolean isSearchedByIds() {
+        switch (searchStrategy) {
+            case POSTGRESQL:
+                return true;
+            case INDEX:
+                return productSearchIndex.isReady();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * The ids of the products found by a query, the best ranked first.
+     */
+    private List<Long> findResearchIds(String query) {
+        // Not cached while the index is built, as the results of the like predicates would outlive it
+        if (searchStrategy == ApplicationProperties.Search.Strategy.INDEX && !productSearchIndex.isReady()) {
+            return productRepository.findAllIdsFromResearch(query.toLowerCase());
+        }
+        return productResultCache.get(query, null, Sort.unsorted(), () -> searchIds(query));
+    }
+
+    private List<Long> searchIds(String query) {
+        if (!isSearchedByIds()) {
+            return productRepository.findAllIdsFromResearch(query.toLowerCase());
+        }
+        if (searchStrategy == ApplicationProperties.Search.Strategy.POSTGRESQL) {
+            List<ProductRepository.SearchHit> hits = productRepository.findAllFullText(query);
+            if (hits.isEmpty()) {
+                hits = productRepository.findAllSimilar(query.toLowerCase());
+            }
+            final List<Long> ids = new ArrayList<>(hits.size());
+            hits.forEach(hit -> ids.add(hit.getId()));
+            return ids;
+        }
+        final List<Long> ids = withFuzzyHits(query, ProductSearchIndex.Operator.AND);
+        return ids.isEmpty() ? withFuzzyHits(query, ProductSearchIndex.Operator.OR) : ids;
+    }
+
+    /**
+     * Search the index, adding the products found with typos after the products found exactly when too few were found.
+     */
+    private List<Long> withFuzzyHits(String query, ProductSearchIndex.Operator operator) {
+        final List<Long> ids = productSearchIndex.search(query, operator);
+        if (!fuzzySearch.isEnabled() || ids.size() >= fuzzySearch.getMinHits()) {
+            return ids;
+        }
+        final Set<Long> found = new LinkedHashSet<>(ids);
+        found.addAll(productSearchIndex.searchFuzzy(query, operator));
+        return found.size() == ids.size() ? ids : new ArrayList<>(found);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ProductPageDTO findPage(String query, Long categoryId, Sort sort, ProductCursor after, int size) {
+        log.debug("Request to get a page of {} Products after {}", size, after);
+        final Sort.Order order = sort.isSorted() ? sort.iterator().next() : null;
+        final String sortName = order != null ? order.getProperty() + "," + order.getDirection() : RELEVANCE;
+        if (after != null && !after.getSort().equals(sortName)) {
+            throw new InvalidCursorException("The cursor was given for another sort");
+        }
+        final boolean search = query != null && !query.isBlank();
+        if (!search && order == null) {
+            throw new InvalidCursorException("Only the searches can be paged by relevance");
+        }
+        final ProductKeysetRepository.SortKey key = order != null ? sortKey(order) : null;
+        final Comparable<?> afterValue = after != null && key != null ? parse(key, after.getValue()) : null;
+        final Long afterId = after != null ? after.getId() : null;
+
+        // One more id than the page, to know whether there is a next page
+        List<Long> ids;
+        List<Long> ranked = null;
+        if (!search) {
+            ids = productKeysetRepository.findIds(categoryId, key, order.getDirection(), afterValue, afterId, size + 1);
+        } else if (order == null) {
+            ranked = findResearchIds(query);
+            final int start = after == null ? 0 : relevanceStart(ranked, after);
+            ids = ranked.subList(start, Math.min(start + size + 1, ranked.size()));
+        } else {
+            ids = seek(findResearchIds(query), key, order.getDirection(), afterValue, afterId, size + 1);
+        }
+        final boolean hasNext = ids.size() > size;
+        if (hasNext) {
+            ids = ids.subList(0, size);
+        }
+        final List<Product> products = findAllByIds(ids, Sort.unsorted());
+        if (!hasNext || products.isEmpty()) {
+            return new ProductPageDTO(products, null);
+        }
+        final Product last = products.get(products.size() - 1);
+        final String lastValue = key != null ? key.format(key.valueOf(last)) : String.valueOf(ranked.indexOf(last.getId()));
+        return new ProductPageDTO(products, new ProductCursor(sortName, lastValue, last.getId()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Long> findIds(String query, Long categoryId) {
+        if (query != null && !query.isBlank()) {
+            return findResearchIds(query);
+        }
+        if (categoryId != null) {
+            return productResultCache.get(null, categoryId, Sort.unsorted(), () -> productRepository.findAllIdsFromCategory(categoryId));
+        }
+        return productResultCache.get(null, null, Sort.unsorted(), productRepository::findAllIds);
+    }
+
+    /**
+     * The ids of the products of a listing, cached, unless sorted by a property the keyset queries cannot sort by.
+     *
+     * @param categoryId the category of the listing, {@code null} for the whole catalog.
+     */
+    private Optional<List<Long>> findListingIds(Long categoryId, Sort sort) {
+        final Sort.Order order = sort.isSorted() ? sort.iterator().next() : null;
+        if (order == null || sort.stream().count() > 1) {
+            return Optional.empty();
+        }
+        return ProductKeysetRepository.SortKey
+            .ofProperty(order.getProperty())
+            .map(key ->
+                productResultCache.get(
+                    null,
+                    categoryId,
+                    sort,
+                    () -> productKeysetRepository.findIds(categoryId, key, order.getDirection(), null, null, Integer.MAX_VALUE)
+                )
+            );
+    }
+
+    private static ProductKeysetRepository.SortKey sortKey(Sort.Order order) {
+        return ProductKeysetRepository.SortKey
+            .ofProperty(order.getProperty())
+            .orElseThrow(() -> new InvalidCursorException("The products cannot be paged by " + order.getProperty()));
+    }
+
+    private static Comparable<?> parse(ProductKeysetRepository.SortKey key, String value) {
+        try {
+            return key.parse(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+
+    /**
+     * The position following the last product of the previous page, found again when the ranking moved meanwhile.
+     */
+    private static int relevanceStart(List<Long> ranked, ProductCursor after) {
+        final int position;
+        try {
+            position = Integer.parseInt(after.getValue());
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+        if (position >= 0 && position < ranked.size() && ranked.get(position).equals(after.getId())) {
+            return position + 1;
+        }
+        final int found = ranked.indexOf(after.getId());
+        return found >= 0 ? found + 1 : Math.min(Math.max(position + 1, 0), ranked.size());
+    }
+
+    /**
+     * Page through products found elsewhere, such as by a search, sorted by their sort keys then their ids.
+     */
+    private List<Long> seek(
+        List<Long> ids,
+        ProductKeysetRepository.SortKey key,
+        Sort.Direction direction,
+        Comparable<?> afterValue,
+        Long afterId,
+        int limit
+    ) {
+        final Map<Long, Comparable<?>> values = productKeysetRepository.findSortValues(ids, key);
+        final int sign = direction.isAscending() ? 1 : -1;
+        final List<Long> page = new ArrayList<>(limit);
+        values
+            .keySet()
+            .stream()
+            .filter(id -> afterId == null || sign * compareKeys(values.get(id), id, afterValue, afterId) > 0)
+            .sorted((first, second) -> sign * compareKeys(values.get(first), first, values.get(second), second))
+            .limit(limit)
+            .forEach(page::add);
+        return page;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareKeys(Comparable firstValue, Long firstId, Comparable secondValue, Long secondId) {
+        final int byValue = firstValue.compareTo(secondValue);
+        return byValue != 0 ? byValue : firstId.compareTo(secondId);
+    }
+
+    /**
+     * Load products, in the order of their ids unless sorted. The ids are loaded by chunks, as the listing of the whole
+     * catalog or a broad search may hold more ids than a query accepts. The products spanning several chunks keep the order
+     * of the sorted catalog listing when sorted by a sort key of the keyset queries, else the chunks sorted by the database
+     * are merged.
+     */
+    private List<Product> findAllByIds(List<Long> ids, Sort sort) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (sort.isSorted()) {
+            if (ids.size() <= IDS_CHUNK_SIZE) {
+                return productRepository.findAllWithEagerRelationshipsByIdIn(ids, sort);
+            }
+            final Optional<List<Long>> listingIds = findListingIds(null, sort);
+            return listingIds.isPresent() ? findAllByIds(sortedLike(ids, listingIds.get()), Sort.unsorted()) : mergeChunks(ids, sort);
+        }
+        final List<Product> products = new ArrayList<>(ids.size());
+        for (int start = 0; start < ids.size(); start += IDS_CHUNK_SIZE) {
+            final List<Long> chunk = ids.subList(start, Math.min(start + IDS_CHUNK_SIZE, ids.size()));
+            products.addAll(productRepository.findAllWithEagerRelationshipsByIdIn(chunk, sort));
+        }
+        final Map<Long, Integer> rankById = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            rankById.put(ids.get(i), i);
+        }
+        products.sort(Comparator.comparing(product -> rankById.get(product.getId())));
+        return products;
+    }
+
+    /**
+     * Ids in the order of the sorted ids they appear in, followed by the ids missing from them.
+     */
+    private static List<Long> sortedLike(List<Long> ids, List<Long> sortedIds) {
+        final Set<Long> remaining = new LinkedHashSet<>(ids);
+        final List<Long> sorted = new ArrayList<>(ids.size());
+        for (Long id : sortedIds) {
+            if (remaining.remove(id)) {
+                sorted.add(id);
+            }
+        }
+        sorted.addAll(remaining);
+        return sorted;
+    }
+
+    /**
+     * Merge the chunks of products sorted by the database, comparing their heads with the French collation of the catalog.
+     */
+    private List<Product> mergeChunks(List<Long> ids, Sort sort) {
+        final Comparator<Product> comparator = comparator(sort, Collator.getInstance(Locale.FRENCH));
+        final PriorityQueue<Map.Entry<Product, Iterator<Product>>> heads = new PriorityQueue<>(Map.Entry.comparingByKey(comparator));
+        for (int start = 0; start < ids.size(); start += IDS_CHUNK_SIZE) {
+            final List<Long> chunk = ids.subList(start, Math.min(start + IDS_CHUNK_SIZE, ids.size()));
+            final Iterator<Product> run = productRepository.findAllWithEagerRelationshipsByIdIn(chunk, sort).iterator();
+            if (run.hasNext()) {
+                heads.add(new AbstractMap.SimpleImmutableEntry<>(run.next(), run));
+            }
+        }
+        final List<Product> products = new ArrayList<>(ids.size());
+        while (!heads.isEmpty()) {
+            final Map.Entry<Product, Iterator<Product>> head = heads.poll();
+            products.add(head.getKey());
+            if (head.getValue().hasNext()) {
+                heads.add(new AbstractMap.SimpleImmutableEntry<>(head.getValue().next(), head.getValue()));
+            }
+        }
+        return products;
+    }
+
+    /**
+     * The order of a sort, comparing the texts with a collator.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Comparator<Product> comparator(Sort sort, Collator collator) {
+        final Comparator<Object> values = Comparator.nullsFirst((first, second) ->
+            first instanceof String ? collator.compare(first, second) : ((Comparable) first).compareTo(second)
+        );
+        Comparator<Product> comparator = (first, second) -> 0;
+        for (Sort.Order order : sort) {
+            final Comparator<Product> byProperty = Comparator.comparing(
+                product -> new BeanWrapperImpl(product).getPropertyValue(order.getProperty()),
+                values
+            );
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<Product> findCategory(Category cat, Sort sort) {
         log.debug("Request to get Products from a catgeory : (" + cat + ")");
-        return productRepository.findAllFromCategory(cat, sort);
+        return findListingIds(cat.getId(), sort)
+            .map(ids -> findAllByIds(ids, Sort.unsorted()))
+            .orElseGet(() -> productRepository.findAllFromCategory(cat, sort));
     }
 
     public Page<Product> findAllWithEagerRelationships(Pageable pageable) {
@@ -125,6 +558,12 @@ public class ProductServiceImpl implements ProductService {
     public void delete(Long id) {
         log.debug("Request to delete Product : {}", id);
         productRepository.deleteById(id);
+        lowStockWatcher.forget(id);
+        productAvailabilityCache.forget(id);
+        productSearchIndex.removeAfterCommit(id);
+        productFacetIndex.removeAfterCommit(id);
+        productSuggester.rebuildAfterCommit();
+        productResultCache.evictRemovedAfterCommit(id);
     }
 
     @Override
@@ -3,6 +3,9 @@ package com.m2gi.ecom.service.impl;
 import com.m2gi.ecom.domain.Tag;
 import com.m2gi.ecom.repository.TagRepository;
 import com.m2gi.ecom.service.TagService;
+import com.m2gi.ecom.service.search.ProductFacetIndex;
+import com.m2gi.ecom.service.search.ProductResultCache;
+import com.m2gi.ecom.service.search.ProductSearchIndex;
 import java.util.List;
 import java.util.Optional;
 import org.slf4j.Logger;
@@ -21,13 +24,31 @@ public class TagServiceImpl implements TagService {
 
     private final TagRepository tagRepository;
 
-    public TagServiceImpl(TagRepository tagRepository) {
+    private final ProductSearchIndex productSearchIndex;
+
+    private final ProductFacetIndex productFacetIndex;
+
+    private final ProductResultCache productResultCache;
+
+    public TagServiceImpl(
+        TagRepository tagRepository,
+        ProductSearchIndex productSearchIndex,
+        ProductFacetIndex productFacetIndex,
+        ProductResultCache productResultCache
+    ) {
         this.tagRepository = tagRepository;
+        this.productSearchIndex = productSearchIndex;
+        this.productFacetIndex = productFacetIndex;
+        this.productResultCache = productResultCache;
     }
 
     @Override
     public Tag save(Tag tag) {
         log.debug("Request to save Tag : {}", tag);
+        // The tags are indexed and counted with their products
+        productSearchIndex.rebuildAfterCommit();
+        productFacetIndex.rebuildAfterCommit();
+        productResultCache.evictSearchesAfterCommit();
         return tagRepository.save(tag);
     }
 
@@ -40,6 +61,9 @@ public class TagServiceImpl implements TagService {
             .map(existingTag -> {
                 if (tag.getName() != null) {
                     existingTag.setName(tag.getName());
+                    productSearchIndex.rebuildAfterCommit();
+                    productFacetIndex.rebuildAfterCommit();
+                    productResultCache.evictSearchesAfterCommit();
                 }
                 if (tag.getColor() != null) {
                     existingTag.setColor(tag.getColor());
@@ -68,5 +92,8 @@ public class TagServiceImpl implements TagService {
     public void delete(Long id) {
         log.debug("Request to delete Tag : {}", id);
         tagRepository.deleteById(id);
+        productSearchIndex.rebuildAfterCommit();
+        productFacetIndex.rebuildAfterCommit();
+        productResultCache.evictSearchesAfterCommit();
     }
 }
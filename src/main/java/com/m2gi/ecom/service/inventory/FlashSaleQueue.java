@@ -0,0 +1,283 @@
+package com.m2gi.ecom.service.inventory;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.service.TransactionUtils;
+import com.m2gi.ecom.service.dto.FlashSaleTicketDTO;
+import com.m2gi.ecom.service.dto.StockLevelDTO;
+import com.m2gi.ecom.service.errors.FlashSaleAdmissionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Waiting rooms of the products on flash sale.
+ * <p>
+ * Shoppers of a product on flash sale get a ticket in a FIFO queue held in memory, and poll its status. Every admission
+ * interval, the waiting shoppers are admitted in order while the admitted ones are fewer than both the configured maximum
+ * and the stock of the product. An admitted shopper holds a token allowing one cart write on the product, until the token
+ * expires. The number of transactions writing the product row is thus bounded by the maximum, whatever the number of
+ * waiting shoppers.
+ */
+@Service
+public class FlashSaleQueue {
+
+    private final Logger log = LoggerFactory.getLogger(FlashSaleQueue.class);
+
+    private static final class Ticket {
+
+        private final String id;
+        private final String login;
+        private final Long productId;
+        private final long sequence;
+
+        private volatile FlashSaleTicketDTO.Status status = FlashSaleTicketDTO.Status.WAITING;
+        private volatile long lastSeenMillis;
+        private volatile long admittedMillis;
+        private volatile long finishedMillis;
+
+        private Ticket(String id, String login, Long productId, long sequence) {
+            this.id = id;
+            this.login = login;
+            this.productId = productId;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * The queue of a product, only accessed while holding its lock.
+     */
+    private static final class Room {
+
+        private final Deque<Ticket> waiting = new ArrayDeque<>();
+
+        // The tokens given out, in admission order: admitted tickets, and used ones whose cart write is not completed
+        private final Set<Ticket> admitted = new LinkedHashSet<>();
+
+        // The waiting and admitted tickets
+        private final Map<String, Ticket> ticketByLogin = new HashMap<>();
+
+        private long nextSequence;
+
+        // Sequence of the last ticket which left the queue
+        private long headSequence;
+    }
+
+    private final StockLevelPublisher stockLevelPublisher;
+
+    private final ApplicationProperties.Inventory.FlashSale properties;
+
+    private final Map<Long, Room> rooms = new ConcurrentHashMap<>();
+
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+
+    public FlashSaleQueue(StockLevelPublisher stockLevelPublisher, ApplicationProperties applicationProperties) {
+        this.stockLevelPublisher = stockLevelPublisher;
+        this.properties = applicationProperties.getInventory().getFlashSale();
+        properties.getProducts().forEach(this::open);
+    }
+
+    /**
+     * Put a product on flash sale.
+     */
+    public void open(Long productId) {
+        if (rooms.putIfAbsent(productId, new Room()) == null) {
+            log.info("Flash sale opened for product {}", productId);
+        }
+    }
+
+    /**
+     * End the flash sale of a product, its tickets are dropped.
+     */
+    public void close(Long productId) {
+        final Room room = rooms.remove(productId);
+        if (room == null) {
+            return;
+        }
+        synchronized (room) {
+            room.ticketByLogin.values().forEach(ticket -> tickets.remove(ticket.id));
+        }
+        log.info("Flash sale closed for product {}", productId);
+    }
+
+    public boolean isOpen(Long productId) {
+        return rooms.containsKey(productId);
+    }
+
+    public Set<Long> getOpenProducts() {
+        return Collections.unmodifiableSet(rooms.keySet());
+    }
+
+    /**
+     * Enter the waiting room of a product, or get back the current ticket of the shopper.
+     *
+     * @param productId the id of the product.
+     * @param login the login of the shopper.
+     * @return the ticket, or empty if the product is not on flash sale.
+     * @throws FlashSaleAdmissionException if the waiting room is full.
+     */
+    public Optional<FlashSaleTicketDTO> join(Long productId, String login) {
+        final Room room = rooms.get(productId);
+        if (room == null) {
+            return Optional.empty();
+        }
+        synchronized (room) {
+            Ticket ticket = room.ticketByLogin.get(login);
+            if (ticket == null) {
+                if (room.waiting.size() >= properties.getMaxWaiting()) {
+                    throw new FlashSaleAdmissionException("The waiting room of product " + productId + " is full");
+                }
+                ticket = new Ticket(UUID.randomUUID().toString(), login, productId, ++room.nextSequence);
+                room.waiting.addLast(ticket);
+                room.ticketByLogin.put(login, ticket);
+                tickets.put(ticket.id, ticket);
+            }
+            ticket.lastSeenMillis = System.currentTimeMillis();
+            return Optional.of(toDTO(room, ticket));
+        }
+    }
+
+    /**
+     * Get the status of a ticket, which also keeps a waiting shopper in the queue.
+     *
+     * @param ticketId the id of the ticket.
+     * @param login the login of the shopper.
+     * @return the ticket, or empty if it is unknown or belongs to another shopper.
+     */
+    public Optional<FlashSaleTicketDTO> status(String ticketId, String login) {
+        final Ticket ticket = tickets.get(ticketId);
+        if (ticket == null || !ticket.login.equals(login)) {
+            return Optional.empty();
+        }
+        final Room room = rooms.get(ticket.productId);
+        if (room == null) {
+            return Optional.empty();
+        }
+        synchronized (room) {
+            ticket.lastSeenMillis = System.currentTimeMillis();
+            return Optional.of(toDTO(room, ticket));
+        }
+    }
+
+    /**
+     * Use the token of a shopper before a cart write on a product. Nothing is required for the products which are not on
+     * flash sale. The token is given back if the surrounding transaction rolls back.
+     *
+     * @param productId the id of the product.
+     * @param login the login of the shopper.
+     * @throws FlashSaleAdmissionException if the product is on flash sale and the shopper was not admitted.
+     */
+    public void consume(Long productId, String login) {
+        final Room room = rooms.get(productId);
+        if (room == null) {
+            return;
+        }
+        final Ticket ticket;
+        synchronized (room) {
+            ticket = login != null ? room.ticketByLogin.get(login) : null;
+            if (ticket == null || ticket.status != FlashSaleTicketDTO.Status.ADMITTED) {
+                throw new FlashSaleAdmissionException(
+                    "Product " + productId + " is on flash sale, a ticket admitted from its waiting room is required"
+                );
+            }
+            finish(room, ticket, FlashSaleTicketDTO.Status.USED);
+        }
+        TransactionUtils.afterCompletion(committed -> release(room, ticket, committed));
+    }
+
+    /**
+     * Expire the tokens which were not used in time and drop the tickets of the shoppers who stopped polling, then admit
+     * the next shoppers of each product.
+     */
+    @Scheduled(
+        fixedDelayString = "${application.inventory.flash-sale.admission-interval:PT0.5S}",
+        initialDelayString = "${application.inventory.flash-sale.admission-interval:PT0.5S}"
+    )
+    public void admit() {
+        final long now = System.currentTimeMillis();
+        if (!rooms.isEmpty()) {
+            final Map<Long, Integer> stockByProduct = new HashMap<>();
+            for (StockLevelDTO level : stockLevelPublisher.findLevels(new ArrayList<>(rooms.keySet()))) {
+                stockByProduct.put(level.getProductId(), level.getQuantity());
+            }
+            rooms.forEach((productId, room) -> admit(room, stockByProduct.getOrDefault(productId, 0), now));
+        }
+        // The finished tickets are kept for a while, so that their shoppers can see their status
+        tickets.values().removeIf(ticket -> ticket.finishedMillis > 0 && now - ticket.finishedMillis > properties.getTokenTtl().toMillis());
+    }
+
+    private void admit(Room room, int stock, long now) {
+        final long tokenTtlMillis = properties.getTokenTtl().toMillis();
+        synchronized (room) {
+            final Iterator<Ticket> admitted = room.admitted.iterator();
+            while (admitted.hasNext()) {
+                final Ticket ticket = admitted.next();
+                if (ticket.status == FlashSaleTicketDTO.Status.ADMITTED && now - ticket.admittedMillis > tokenTtlMillis) {
+                    finish(room, ticket, FlashSaleTicketDTO.Status.EXPIRED);
+                    admitted.remove();
+                }
+            }
+            // Whatever the free slots, so that the abandoned tickets do not fill the waiting room while the stock is out
+            final Iterator<Ticket> waiting = room.waiting.iterator();
+            boolean head = true;
+            while (waiting.hasNext()) {
+                final Ticket ticket = waiting.next();
+                if (now - ticket.lastSeenMillis <= properties.getAbandonTimeout().toMillis()) {
+                    head = false;
+                    continue;
+                }
+                waiting.remove();
+                finish(room, ticket, FlashSaleTicketDTO.Status.EXPIRED);
+                tickets.remove(ticket.id);
+                if (head) {
+                    room.headSequence = ticket.sequence;
+                }
+            }
+            int slots = Math.min(properties.getMaxAdmitted(), stock) - room.admitted.size();
+            while (slots > 0 && !room.waiting.isEmpty()) {
+                final Ticket ticket = room.waiting.pollFirst();
+                room.headSequence = ticket.sequence;
+                ticket.status = FlashSaleTicketDTO.Status.ADMITTED;
+                ticket.admittedMillis = now;
+                room.admitted.add(ticket);
+                slots--;
+            }
+        }
+    }
+
+    private void release(Room room, Ticket ticket, boolean committed) {
+        synchronized (room) {
+            if (!committed && !room.ticketByLogin.containsKey(ticket.login)) {
+                // The cart write failed, the shopper keeps the token until it expires
+                ticket.status = FlashSaleTicketDTO.Status.ADMITTED;
+                ticket.finishedMillis = 0;
+                room.ticketByLogin.put(ticket.login, ticket);
+            } else {
+                room.admitted.remove(ticket);
+            }
+        }
+    }
+
+    private void finish(Room room, Ticket ticket, FlashSaleTicketDTO.Status status) {
+        ticket.status = status;
+        ticket.finishedMillis = System.currentTimeMillis();
+        room.ticketByLogin.remove(ticket.login, ticket);
+    }
+
+    private static FlashSaleTicketDTO toDTO(Room room, Ticket ticket) {
+        final Long position = ticket.status == FlashSaleTicketDTO.Status.WAITING ? ticket.sequence - room.headSequence : null;
+        return new FlashSaleTicketDTO(ticket.id, ticket.productId, ticket.status, position);
+    }
+}
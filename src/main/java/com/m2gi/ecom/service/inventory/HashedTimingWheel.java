@@ -0,0 +1,99 @@
+package com.m2gi.ecom.service.inventory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashed timing wheel keeping a deadline per key.
+ * <p>
+ * Deadlines are rounded up to a tick and hashed into a fixed number of buckets, so scheduling and cancelling are O(1) and
+ * advancing the wheel only visits the buckets of the elapsed ticks. Deadlines further than one revolution stay in their
+ * bucket until their own tick is reached.
+ *
+ * @param <K> the type of the scheduled keys.
+ */
+public class HashedTimingWheel<K> {
+
+    private final long tickMillis;
+
+    private final List<Map<K, Long>> buckets;
+
+    private final Map<K, Map<K, Long>> bucketByKey = new HashMap<>();
+
+    private long currentTick;
+
+    public HashedTimingWheel(Duration tickDuration, int wheelSize, Instant start) {
+        if (tickDuration.toMillis() <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("The tick duration and the wheel size must be positive");
+        }
+        this.tickMillis = tickDuration.toMillis();
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new HashMap<>());
+        }
+        this.currentTick = toTick(start);
+    }
+
+    /**
+     * Schedule a key, replacing its previous deadline if any. A deadline in the past expires at the next tick.
+     */
+    public synchronized void schedule(K key, Instant deadline) {
+        cancel(key);
+        final long tick = Math.max(ceilTick(deadline), currentTick + 1);
+        final Map<K, Long> bucket = buckets.get((int) (tick % buckets.size()));
+        bucket.put(key, tick);
+        bucketByKey.put(key, bucket);
+    }
+
+    /**
+     * Cancel the deadline of a key.
+     *
+     * @return {@code true} if the key was scheduled.
+     */
+    public synchronized boolean cancel(K key) {
+        final Map<K, Long> bucket = bucketByKey.remove(key);
+        return bucket != null && bucket.remove(key) != null;
+    }
+
+    /**
+     * Move the wheel forward.
+     *
+     * @param now the current instant.
+     * @return the keys whose deadline is reached, which are no longer scheduled.
+     */
+    public synchronized List<K> advance(Instant now) {
+        final long targetTick = toTick(now);
+        final List<K> expired = new ArrayList<>();
+        final long steps = Math.min(targetTick - currentTick, buckets.size());
+        for (long tick = currentTick + 1; tick <= currentTick + steps; tick++) {
+            final Iterator<Map.Entry<K, Long>> entries = buckets.get((int) (tick % buckets.size())).entrySet().iterator();
+            while (entries.hasNext()) {
+                final Map.Entry<K, Long> entry = entries.next();
+                if (entry.getValue() <= targetTick) {
+                    expired.add(entry.getKey());
+                    bucketByKey.remove(entry.getKey());
+                    entries.remove();
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick);
+        return expired;
+    }
+
+    public synchronized int size() {
+        return bucketByKey.size();
+    }
+
+    private long toTick(Instant instant) {
+        return Math.floorDiv(instant.toEpochMilli(), tickMillis);
+    }
+
+    private long ceilTick(Instant instant) {
+        return -Math.floorDiv(-instant.toEpochMilli(), tickMillis);
+    }
+}
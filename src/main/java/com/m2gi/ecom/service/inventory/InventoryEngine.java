@@ -0,0 +1,425 @@
+package com.m2gi.ecom.service.inventory;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.repository.ProductStockBatchRepository;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Entry point of every stock mutation of a {@link Product}.
+ * <p>
+ * Most products are updated directly with the conditional updates of {@link ProductRepository}. When enabled, the stock of
+ * hot products (configured, or detected from their mutation rate) is instead held in memory and mutated by a single writer
+ * thread consuming a bounded ring buffer, so concurrent shoppers never fight for the product row lock. The writer persists
+ * the accumulated deltas to {@code product.quantity} in one transaction every flush interval, and reloads the quantities of
+ * the engaged products at the same time: the table stays the source of truth, which is also how the engine recovers after
+ * a restart. A crash loses at most the deltas of the last flush interval.
+ */
+@Service
+public class InventoryEngine {
+
+    private final Logger log = LoggerFactory.getLogger(InventoryEngine.class);
+
+    private enum CommandType {
+        TAKE,
+        GIVE_BACK,
+        ENGAGE,
+        DISENGAGE,
+    }
+
+    private static final class Command {
+
+        private final CommandType type;
+        private final Long productId;
+        private final int quantity;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private Command(CommandType type, Long productId, int quantity) {
+            this.type = type;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+    }
+
+    private final ProductRepository productRepository;
+
+    private final ProductStockBatchRepository productStockBatchRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Inventory.Engine properties;
+
+    private final BlockingQueue<Command> ringBuffer;
+
+    /**
+     * Products currently held by the writer, readable from any thread.
+     */
+    private final Set<Long> engaged = ConcurrentHashMap.newKeySet();
+
+    private final Map<Long, LongAdder> mutationCounts = new ConcurrentHashMap<>();
+
+    // Only written by the writer thread, the available quantities are also read by availableQuantity.
+    private final Map<Long, Integer> available = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> pendingDeltas = new HashMap<>();
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    public InventoryEngine(
+        ProductRepository productRepository,
+        ProductStockBatchRepository productStockBatchRepository,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.productRepository = productRepository;
+        this.productStockBatchRepository = productStockBatchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getInventory().getEngine();
+        this.ringBuffer = new ArrayBlockingQueue<>(properties.getRingBufferSize());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!properties.isEnabled() || running) {
+            return;
+        }
+        log.info("Starting the inventory engine for hot products {}", properties.getHotProducts());
+        running = true;
+        writer = new Thread(this::runWriter, "inventory-engine-writer");
+        writer.setDaemon(true);
+        writer.start();
+        properties.getHotProducts().forEach(this::engage);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        log.info("Stopping the inventory engine");
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(properties.getSubmitTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Take units from the stock of a product.
+     *
+     * @param productId the id of the product.
+     * @param quantity the number of units to take.
+     * @return {@code true} if the units were taken, {@code false} if the stock is insufficient.
+     */
+    public boolean take(Long productId, int quantity) {
+        recordMutation(productId);
+        if (!engaged.contains(productId)) {
+            return productRepository.decrementQuantity(productId, quantity) > 0;
+        }
+        final boolean taken = submit(new Command(CommandType.TAKE, productId, quantity));
+        if (taken) {
+            compensateOnRollback(new Command(CommandType.GIVE_BACK, productId, quantity));
+        }
+        return taken;
+    }
+
+    /**
+     * Give units back to the stock of a product.
+     *
+     * @param productId the id of the product.
+     * @param quantity the number of units to give back.
+     */
+    public void giveBack(Long productId, int quantity) {
+        recordMutation(productId);
+        if (!engaged.contains(productId)) {
+            productRepository.incrementQuantity(productId, quantity);
+            return;
+        }
+        submit(new Command(CommandType.GIVE_BACK, productId, quantity));
+        compensateOnRollback(new Command(CommandType.TAKE, productId, quantity));
+    }
+
+    /**
+     * Give units back to the stock of many products, the ones not held by the engine in one grouped update.
+     *
+     * @param quantityByProduct the number of units to give back, by product id.
+     * @return the number of products given units back, less than the requested ones when some products do not exist.
+     */
+    public int giveBackAll(Map<Long, Integer> quantityByProduct) {
+        final Map<Long, Integer> direct = new HashMap<>();
+        quantityByProduct.forEach((productId, quantity) -> {
+            if (engaged.contains(productId)) {
+                giveBack(productId, quantity);
+            } else {
+                recordMutation(productId);
+                direct.put(productId, quantity);
+            }
+        });
+        return quantityByProduct.size() - direct.size() + productStockBatchRepository.incrementQuantities(direct);
+    }
+
+    /**
+     * Whether the stock of a product is currently held by the engine.
+     */
+    public boolean isEngaged(Long productId) {
+        return engaged.contains(productId);
+    }
+
+    /**
+     * The stock of a product held by the engine, ahead of {@code product.quantity} by the deltas not flushed yet.
+     *
+     * @return the available quantity, or {@code null} if the product is not held by the engine.
+     */
+    public Integer availableQuantity(Long productId) {
+        return engaged.contains(productId) ? available.get(productId) : null;
+    }
+
+    /**
+     * Hand the stock of a product over to the engine.
+     */
+    public void engage(Long productId) {
+        if (running && !engaged.contains(productId)) {
+            ringBuffer.offer(new Command(CommandType.ENGAGE, productId, 0));
+        }
+    }
+
+    /**
+     * Persist the pending deltas of a product and hand its stock back to the database.
+     */
+    public void disengage(Long productId) {
+        if (running && engaged.contains(productId)) {
+            ringBuffer.offer(new Command(CommandType.DISENGAGE, productId, 0));
+        }
+    }
+
+    /**
+     * Engage the products mutated more than the configured threshold during the last interval, and disengage the ones
+     * which cooled down below half of it.
+     */
+    @Scheduled(
+        fixedDelayString = "${application.inventory.engine.detection-interval:PT10S}",
+        initialDelayString = "${application.inventory.engine.detection-interval:PT10S}"
+    )
+    public void detectHotProducts() {
+        final int threshold = properties.getAutoDetectionThreshold();
+        if (!running || threshold <= 0) {
+            return;
+        }
+        final Map<Long, Long> counts = new HashMap<>();
+        mutationCounts.forEach((productId, count) -> counts.put(productId, count.sumThenReset()));
+        mutationCounts.entrySet().removeIf(entry -> counts.getOrDefault(entry.getKey(), 0L) == 0L);
+
+        for (Long productId : engaged) {
+            if (!properties.getHotProducts().contains(productId) && counts.getOrDefault(productId, 0L) < threshold / 2) {
+                log.debug("Product {} cooled down, disengaging it from the inventory engine", productId);
+                disengage(productId);
+            }
+        }
+        counts.forEach((productId, count) -> {
+            if (count >= threshold && !engaged.contains(productId)) {
+                log.debug("Product {} is hot ({} mutations), engaging it in the inventory engine", productId, count);
+                engage(productId);
+            }
+        });
+    }
+
+    private void recordMutation(Long productId) {
+        if (running && properties.getAutoDetectionThreshold() > 0) {
+            mutationCounts.computeIfAbsent(productId, id -> new LongAdder()).increment();
+        }
+    }
+
+    private boolean submit(Command command) {
+        try {
+            final long timeout = properties.getSubmitTimeout().toMillis();
+            if (!ringBuffer.offer(command, timeout, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("The inventory engine is saturated");
+            }
+            return command.result.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the inventory engine", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("The inventory engine could not apply " + command.type + " on " + command.productId, e);
+        }
+    }
+
+    /**
+     * The engine is not transactional: undo an applied mutation if the surrounding transaction rolls back.
+     */
+    private void compensateOnRollback(Command compensation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK && !ringBuffer.offer(compensation)) {
+                        log.error(
+                            "Could not undo {} of {} units on product {}",
+                            compensation.type,
+                            compensation.quantity,
+                            compensation.productId
+                        );
+                    }
+                }
+            }
+        );
+    }
+
+    private void runWriter() {
+        final long flushIntervalNanos = properties.getFlushInterval().toNanos();
+        final List<Command> batch = new ArrayList<>();
+        long nextFlush = System.nanoTime() + flushIntervalNanos;
+        while (running || !ringBuffer.isEmpty()) {
+            try {
+                final Command command = ringBuffer.poll(Math.max(0, nextFlush - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (command != null) {
+                    batch.add(command);
+                    ringBuffer.drainTo(batch);
+                    batch.forEach(this::apply);
+                    batch.clear();
+                }
+                if (System.nanoTime() >= nextFlush) {
+                    flush();
+                    nextFlush = System.nanoTime() + flushIntervalNanos;
+                }
+            } catch (InterruptedException e) {
+                // Woken up by stop(), the remaining commands are applied below
+                break;
+            } catch (RuntimeException e) {
+                log.error("Inventory engine writer error", e);
+            }
+        }
+        ringBuffer.drainTo(batch);
+        batch.forEach(this::apply);
+        flush();
+    }
+
+    private void apply(Command command) {
+        try {
+            command.result.complete(execute(command));
+        } catch (RuntimeException e) {
+            command.result.completeExceptionally(e);
+        }
+    }
+
+    private boolean execute(Command command) {
+        final Long productId = command.productId;
+        final Integer current = available.get(productId);
+        switch (command.type) {
+            case TAKE:
+                if (current == null) {
+                    // Disengaged in the meantime, the database holds the stock again
+                    return inTransaction(() -> productRepository.decrementQuantity(productId, command.quantity) > 0);
+                }
+                if (current < command.quantity) {
+                    return false;
+                }
+                available.put(productId, current - command.quantity);
+                pendingDeltas.merge(productId, -command.quantity, Integer::sum);
+                return true;
+            case GIVE_BACK:
+                if (current == null) {
+                    return inTransaction(() -> productRepository.incrementQuantity(productId, command.quantity) > 0);
+                }
+                available.put(productId, current + command.quantity);
+                pendingDeltas.merge(productId, command.quantity, Integer::sum);
+                return true;
+            case ENGAGE:
+                if (current == null) {
+                    inTransaction(() -> productRepository.findStockLevels(Collections.singleton(productId)))
+                        .forEach(level -> available.put(level.getId(), level.getQuantity()));
+                    if (available.containsKey(productId)) {
+                        engaged.add(productId);
+                    }
+                }
+                return engaged.contains(productId);
+            case DISENGAGE:
+                // Kept engaged until its deltas are persisted, else the row would be mutated ahead of them
+                if (current != null && flush()) {
+                    available.remove(productId);
+                    engaged.remove(productId);
+                }
+                return !engaged.contains(productId);
+            default:
+                throw new IllegalArgumentException("Unknown command " + command.type);
+        }
+    }
+
+    /**
+     * Persist the pending deltas in one transaction, then reload the engaged quantities to pick up the changes made outside
+     * the engine.
+     *
+     * @return whether the deltas were persisted.
+     */
+    private boolean flush() {
+        if (available.isEmpty() && pendingDeltas.isEmpty()) {
+            return true;
+        }
+        try {
+            final Map<Long, Integer> reloaded = inTransaction(() -> {
+                pendingDeltas.forEach((productId, delta) -> {
+                    if (delta != 0) {
+                        productRepository.incrementQuantity(productId, delta);
+                    }
+                });
+                final Map<Long, Integer> quantities = new HashMap<>();
+                if (available.isEmpty()) {
+                    return quantities;
+                }
+                productRepository.findStockLevels(new HashSet<>(available.keySet())).forEach(level ->
+                    quantities.put(level.getId(), level.getQuantity())
+                );
+                return quantities;
+            });
+            pendingDeltas.clear();
+            available.keySet().retainAll(reloaded.keySet());
+            engaged.retainAll(reloaded.keySet());
+            available.putAll(reloaded);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Could not persist the inventory engine deltas {}, retrying at next flush", pendingDeltas, e);
+            return false;
+        }
+    }
+
+    private <T> T inTransaction(Supplier<T> action) {
+        return transactionTemplate.execute(status -> action.get());
+    }
+}
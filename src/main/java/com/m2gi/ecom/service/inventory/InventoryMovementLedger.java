@@ -0,0 +1,173 @@
+package com.m2gi.ecom.service.inventory;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.repository.InventoryMovementRepository;
+import com.m2gi.ecom.service.dto.StockDiscrepancyDTO;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Append-only ledger of every stock movement of the products, kept next to {@code product.quantity} to audit and rebuild
+ * the stock.
+ * <p>
+ * The movements recorded during a transaction are appended in one JDBC batch just before it commits, so they are kept if
+ * and only if the stock changes they describe are. Appends never contend on a row. Every compaction interval, the oldest
+ * movements are folded into per-product snapshots: the stock of a product according to the ledger is its snapshot plus
+ * the tail of its movements not compacted yet. The compacted movements are kept for the retention period.
+ */
+@Service
+public class InventoryMovementLedger {
+
+    private final Logger log = LoggerFactory.getLogger(InventoryMovementLedger.class);
+
+    public enum Reason {
+        /**
+         * Units taken or given back by a cart.
+         */
+        CART,
+        /**
+         * Units of an expired cart line given back.
+         */
+        EXPIRY,
+        /**
+         * Units received from a supplier.
+         */
+        RECEIPT,
+        /**
+         * Stock set by an administrator.
+         */
+        ADJUSTMENT,
+    }
+
+    private final InventoryMovementRepository inventoryMovementRepository;
+
+    private final InventoryEngine inventoryEngine;
+
+    private final ApplicationProperties.Inventory.Ledger properties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public InventoryMovementLedger(
+        InventoryMovementRepository inventoryMovementRepository,
+        InventoryEngine inventoryEngine,
+        ApplicationProperties applicationProperties,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.inventoryMovementRepository = inventoryMovementRepository;
+        this.inventoryEngine = inventoryEngine;
+        this.properties = applicationProperties.getInventory().getLedger();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Record a stock movement, appended when the current transaction commits.
+     *
+     * @param productId the id of the product.
+     * @param delta the units added to the stock, negative when taken from it.
+     * @param reason the reason of the movement.
+     */
+    public void record(Long productId, int delta, Reason reason) {
+        if (delta == 0) {
+            return;
+        }
+        final InventoryMovementRepository.Movement movement = new InventoryMovementRepository.Movement(productId, delta, reason.name());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            inventoryMovementRepository.appendAll(Collections.singletonList(movement), Instant.now());
+            return;
+        }
+        pendingMovements().add(movement);
+    }
+
+    /**
+     * Record the stock movements of many products, appended when the current transaction commits.
+     *
+     * @param deltaByProduct the units added to the stock, by product id.
+     * @param reason the reason of the movements.
+     */
+    public void recordAll(Map<Long, Integer> deltaByProduct, Reason reason) {
+        deltaByProduct.forEach((productId, delta) -> record(productId, delta, reason));
+    }
+
+    /**
+     * The stock of a product according to the ledger.
+     */
+    public int findQuantity(Long productId) {
+        return inventoryMovementRepository.findQuantity(productId);
+    }
+
+    /**
+     * The products whose stock differs from the one computed from the ledger. The stock of the products held by the
+     * {@link InventoryEngine} includes its deltas not flushed yet.
+     */
+    public List<StockDiscrepancyDTO> findDiscrepancies() {
+        final List<StockDiscrepancyDTO> discrepancies = new ArrayList<>();
+        for (InventoryMovementRepository.Discrepancy discrepancy : inventoryMovementRepository.findDiscrepancies()) {
+            final Integer engineQuantity = inventoryEngine.availableQuantity(discrepancy.getProductId());
+            final int quantity = engineQuantity != null ? engineQuantity : discrepancy.getQuantity();
+            if (quantity != discrepancy.getLedgerQuantity()) {
+                discrepancies.add(new StockDiscrepancyDTO(discrepancy.getProductId(), quantity, discrepancy.getLedgerQuantity()));
+            }
+        }
+        return discrepancies;
+    }
+
+    @Scheduled(
+        fixedDelayString = "${application.inventory.ledger.compaction-interval:PT1M}",
+        initialDelayString = "${application.inventory.ledger.compaction-interval:PT1M}"
+    )
+    public void compact() {
+        final int chunkSize = properties.getCompactionChunkSize();
+        int folded = 0;
+        int chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> inventoryMovementRepository.compact(chunkSize));
+            folded += chunk;
+        } while (chunk == chunkSize);
+        final int deleted = transactionTemplate.execute(status ->
+            inventoryMovementRepository.deleteCompactedBefore(Instant.now().minus(properties.getRetention()))
+        );
+        if (folded > 0 || deleted > 0) {
+            log.debug("Folded {} stock movements into the snapshots, deleted {} past the retention", folded, deleted);
+        }
+    }
+
+    /**
+     * The movements recorded during the current transaction, appended just before it commits.
+     */
+    @SuppressWarnings("unchecked")
+    private List<InventoryMovementRepository.Movement> pendingMovements() {
+        final List<InventoryMovementRepository.Movement> bound = (List<InventoryMovementRepository.Movement>) TransactionSynchronizationManager.getResource(
+            this
+        );
+        if (bound != null) {
+            return bound;
+        }
+        final List<InventoryMovementRepository.Movement> pending = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, pending);
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    inventoryMovementRepository.appendAll(pending, Instant.now());
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(InventoryMovementLedger.this);
+                }
+            }
+        );
+        return pending;
+    }
+}
@@ -0,0 +1,190 @@
+package com.m2gi.ecom.service.inventory;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.domain.User;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.repository.UserRepository;
+import com.m2gi.ecom.security.AuthoritiesConstants;
+import com.m2gi.ecom.service.TransactionUtils;
+import com.m2gi.ecom.service.dto.LowStockDTO;
+import com.m2gi.ecom.service.dto.StockLevelDTO;
+import com.m2gi.ecom.service.impl.MailService;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Watcher of the products whose stock is at or below their low stock threshold.
+ * <p>
+ * The at-risk products are rebuilt once at startup, then kept up to date from the {@link StockLevelsChangedEvent}s: each
+ * changed level only moves its own product in or out of the at-risk set, sorted by ascending stock. The products newly at
+ * risk are mailed to the administrators in a digest every interval, so a product going back and forth around its
+ * threshold is reported at most once per digest.
+ */
+@Service
+public class LowStockWatcher {
+
+    private final Logger log = LoggerFactory.getLogger(LowStockWatcher.class);
+
+    private static final Comparator<LowStockDTO> BY_QUANTITY = Comparator
+        .comparing(LowStockDTO::getQuantity)
+        .thenComparing(LowStockDTO::getProductId);
+
+    private final ProductRepository productRepository;
+
+    private final UserRepository userRepository;
+
+    private final MailService mailService;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final ApplicationProperties.Inventory.LowStock properties;
+
+    private final Map<Long, Integer> thresholds = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final Map<Long, LowStockDTO> atRiskByProduct = new HashMap<>();
+    private final NavigableSet<LowStockDTO> atRisk = new TreeSet<>(BY_QUANTITY);
+    private final Set<Long> newlyAtRisk = new LinkedHashSet<>();
+
+    public LowStockWatcher(
+        ProductRepository productRepository,
+        UserRepository userRepository,
+        MailService mailService,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.mailService = mailService;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.properties = applicationProperties.getInventory().getLowStock();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            productRepository
+                .findLowStockThresholds()
+                .forEach(threshold -> thresholds.put(threshold.getId(), threshold.getLowStockThreshold()));
+            final List<ProductRepository.StockLevel> levels = productRepository.findAllAtRisk(properties.getDefaultThreshold());
+            synchronized (this) {
+                levels.forEach(level -> update(level.getId(), level.getQuantity()));
+                // Known before the startup, not news for the digest
+                newlyAtRisk.clear();
+            }
+            log.info("Low stock watcher rebuilt with {} products at risk", levels.size());
+        });
+    }
+
+    @EventListener
+    public synchronized void onStockLevelsChanged(StockLevelsChangedEvent event) {
+        for (StockLevelDTO level : event.getLevels()) {
+            update(level.getProductId(), level.getQuantity());
+        }
+    }
+
+    /**
+     * Record the threshold of a product once the current transaction commits, and check its stock against it.
+     *
+     * @param productId the id of the product.
+     * @param threshold the threshold, {@code null} for the default one.
+     * @param quantity the current stock of the product.
+     */
+    public void thresholdChangedAfterCommit(Long productId, Integer threshold, Integer quantity) {
+        TransactionUtils.afterCommit(() -> changeThreshold(productId, threshold, quantity));
+    }
+
+    /**
+     * Forget a deleted product.
+     */
+    public synchronized void forget(Long productId) {
+        thresholds.remove(productId);
+        final LowStockDTO previous = atRiskByProduct.remove(productId);
+        if (previous != null) {
+            atRisk.remove(previous);
+        }
+        newlyAtRisk.remove(productId);
+    }
+
+    /**
+     * The products at risk, the lowest stock first.
+     */
+    public synchronized List<LowStockDTO> getAtRisk() {
+        return new ArrayList<>(atRisk);
+    }
+
+    public int getThreshold(Long productId) {
+        return thresholds.getOrDefault(productId, properties.getDefaultThreshold());
+    }
+
+    @Scheduled(
+        fixedDelayString = "${application.inventory.low-stock.digest-interval:PT15M}",
+        initialDelayString = "${application.inventory.low-stock.digest-interval:PT15M}"
+    )
+    public void sendDigest() {
+        final List<LowStockDTO> products = new ArrayList<>();
+        synchronized (this) {
+            // Only the products still at risk
+            newlyAtRisk.stream().map(atRiskByProduct::get).filter(Objects::nonNull).forEach(products::add);
+            newlyAtRisk.clear();
+        }
+        if (products.isEmpty()) {
+            return;
+        }
+        products.sort(BY_QUANTITY);
+        final List<User> admins = readOnlyTransactionTemplate.execute(status ->
+            userRepository.findAllByActivatedIsTrueAndAuthoritiesName(AuthoritiesConstants.ADMIN)
+        );
+        log.debug("Sending the low stock digest of {} products to {} administrators", products.size(), admins.size());
+        admins.forEach(admin -> mailService.sendLowStockDigest(admin, products));
+    }
+
+    private synchronized void changeThreshold(Long productId, Integer threshold, Integer quantity) {
+        if (threshold != null) {
+            thresholds.put(productId, threshold);
+        } else {
+            thresholds.remove(productId);
+        }
+        if (quantity != null) {
+            update(productId, quantity);
+        }
+    }
+
+    private void update(Long productId, Integer quantity) {
+        if (quantity == null) {
+            return;
+        }
+        final int threshold = getThreshold(productId);
+        final LowStockDTO previous = atRiskByProduct.remove(productId);
+        if (previous != null) {
+            atRisk.remove(previous);
+        }
+        if (quantity > threshold) {
+            return;
+        }
+        final LowStockDTO current = new LowStockDTO(productId, quantity, threshold);
+        atRiskByProduct.put(productId, current);
+        atRisk.add(current);
+        if (previous == null) {
+            newlyAtRisk.add(productId);
+        }
+    }
+}
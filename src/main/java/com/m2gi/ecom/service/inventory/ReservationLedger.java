@@ -0,0 +1,167 @@
+package com.m2gi.ecom.service.inventory;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.domain.ProductCart;
+import com.m2gi.ecom.repository.ProductCartRepository;
+import com.m2gi.ecom.service.impl.CartViewCache;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Ledger of the stock held by the cart lines.
+ * <p>
+ * Every {@link ProductCart} holds its quantity until it expires, {@code ttl} after its creation. The expiry instants are
+ * kept in a {@link HashedTimingWheel} advanced every tick, so expired lines are deleted and their stock given back within a
+ * tick instead of waiting for a nightly sweep. The ledger is rebuilt from {@code product_cart.creation_datetime} on startup.
+ */
+@Service
+public class ReservationLedger {
+
+    private final Logger log = LoggerFactory.getLogger(ReservationLedger.class);
+
+    private final ProductCartRepository productCartRepository;
+
+    private final InventoryEngine inventoryEngine;
+
+    private final CartViewCache cartViewCache;
+
+    private final StockLevelPublisher stockLevelPublisher;
+
+    private final InventoryMovementLedger inventoryMovementLedger;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Inventory.Reservation properties;
+
+    private final HashedTimingWheel<Long> wheel;
+
+    public ReservationLedger(
+        ProductCartRepository productCartRepository,
+        InventoryEngine inventoryEngine,
+        CartViewCache cartViewCache,
+        StockLevelPublisher stockLevelPublisher,
+        InventoryMovementLedger inventoryMovementLedger,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.productCartRepository = productCartRepository;
+        this.inventoryEngine = inventoryEngine;
+        this.cartViewCache = cartViewCache;
+        this.stockLevelPublisher = stockLevelPublisher;
+        this.inventoryMovementLedger = inventoryMovementLedger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getInventory().getReservation();
+        this.wheel = new HashedTimingWheel<>(properties.getTickDuration(), properties.getWheelSize(), Instant.now());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        final List<ProductCartRepository.Hold> holds = transactionTemplate.execute(status -> productCartRepository.findAllHolds());
+        holds.forEach(hold -> wheel.schedule(hold.getId(), expiryOf(hold.getCreationDatetime())));
+        log.info("Reservation ledger rebuilt with {} cart lines", holds.size());
+    }
+
+    /**
+     * Record the stock held by a new cart line.
+     */
+    public void hold(ProductCart line) {
+        wheel.schedule(line.getId(), expiryOf(line.getCreationDatetime()));
+    }
+
+    /**
+     * Forget a cart line whose stock was given back by other means.
+     */
+    public void release(Long lineId) {
+        wheel.cancel(lineId);
+    }
+
+    public int size() {
+        return wheel.size();
+    }
+
+    public Instant expiryOf(Instant creationDatetime) {
+        return creationDatetime.plus(properties.getTtl());
+    }
+
+    @Scheduled(
+        fixedDelayString = "${application.inventory.reservation.tick-duration:PT10S}",
+        initialDelayString = "${application.inventory.reservation.tick-duration:PT10S}"
+    )
+    public void expireHolds() {
+        final List<Long> expired = wheel.advance(Instant.now());
+        if (expired.isEmpty()) {
+            return;
+        }
+        log.debug("Expiring {} cart lines", expired.size());
+        for (int from = 0; from < expired.size(); from += properties.getExpiryBatchSize()) {
+            final List<Long> batch = expired.subList(from, Math.min(from + properties.getExpiryBatchSize(), expired.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> expire(batch));
+            } catch (RuntimeException e) {
+                log.error("Could not expire cart lines {}, retrying at next tick", batch, e);
+                batch.forEach(lineId -> wheel.schedule(lineId, Instant.now()));
+            }
+        }
+    }
+
+    /**
+     * Delete the expired lines among the given ones and give their stock back, in one grouped update.
+     * Lines which no longer exist are ignored, lines which are not expired yet are scheduled again.
+     *
+     * @param lineIds the ids of the cart lines.
+     * @return the number of expired lines.
+     */
+    public int expire(Collection<Long> lineIds) {
+        if (lineIds.isEmpty()) {
+            return 0;
+        }
+        final Instant now = Instant.now();
+        final List<Long> expiredIds = new ArrayList<>();
+        // Sorted by product id, so that concurrent expiries lock the product rows in the same order
+        final Map<Long, Integer> quantityByProduct = new TreeMap<>();
+        final Set<String> logins = new HashSet<>();
+        // Locked first, so that lines expired concurrently are not given back twice
+        final List<Long> lockedIds = productCartRepository.lockIds(lineIds);
+        if (lockedIds.isEmpty()) {
+            return 0;
+        }
+        for (ProductCartRepository.Hold hold : productCartRepository.findHolds(lockedIds)) {
+            final Instant expiry = expiryOf(hold.getCreationDatetime());
+            if (expiry.isAfter(now)) {
+                wheel.schedule(hold.getId(), expiry);
+                continue;
+            }
+            expiredIds.add(hold.getId());
+            if (hold.getProductId() != null) {
+                quantityByProduct.merge(hold.getProductId(), hold.getQuantity(), Integer::sum);
+            }
+            if (hold.getLogin() != null) {
+                logins.add(hold.getLogin());
+            }
+        }
+        if (expiredIds.isEmpty()) {
+            return 0;
+        }
+        productCartRepository.deleteAllWithIds(expiredIds);
+        expiredIds.forEach(wheel::cancel);
+        inventoryEngine.giveBackAll(quantityByProduct);
+        inventoryMovementLedger.recordAll(quantityByProduct, InventoryMovementLedger.Reason.EXPIRY);
+        stockLevelPublisher.changedAfterCommit(quantityByProduct.keySet());
+        logins.forEach(cartViewCache::evictAfterCommit);
+        return expiredIds.size();
+    }
+}
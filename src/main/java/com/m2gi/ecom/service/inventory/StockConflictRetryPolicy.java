@@ -0,0 +1,101 @@
+package com.m2gi.ecom.service.inventory;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.service.errors.VersionConflictException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Retry policy for the transactions failing on an optimistic-lock conflict on {@code Product.version}.
+ * <p>
+ * Each attempt runs in its own transaction; a conflicting attempt is retried after an exponential backoff with full
+ * jitter, so that the contenders of a hot product spread out instead of colliding again. Once the attempts are exhausted,
+ * or at once in fail-fast mode, a {@link VersionConflictException} is thrown and answered with a 409. When called within
+ * a running transaction, the action is run once since the transaction can't be replayed from here.
+ * <p>
+ * The attempts, conflicts and give-ups are counted per bucket of product ids, to locate the contention without one time
+ * series per product.
+ */
+@Service
+public class StockConflictRetryPolicy {
+
+    private final Logger log = LoggerFactory.getLogger(StockConflictRetryPolicy.class);
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ApplicationProperties.Inventory.Retry properties;
+
+    public StockConflictRetryPolicy(
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry,
+        ApplicationProperties applicationProperties
+    ) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.properties = applicationProperties.getInventory().getRetry();
+    }
+
+    /**
+     * Run an action modifying a product, retrying it on version conflicts.
+     *
+     * @param productId the id of the modified product.
+     * @param action the action, run in a transaction.
+     * @param <T> the type of the result.
+     * @return the result of the action.
+     * @throws VersionConflictException if the action still conflicts after the last attempt.
+     */
+    public <T> T execute(Long productId, Supplier<T> action) {
+        final Tags tags = Tags.of("bucket", bucketOf(productId));
+        final boolean replayable = !properties.isFailFast() && !TransactionSynchronizationManager.isActualTransactionActive();
+        final int maxAttempts = replayable ? Math.max(1, properties.getMaxAttempts()) : 1;
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            long backoff = properties.getInitialBackoff().toMillis();
+            for (int attempt = 1;; attempt++) {
+                meterRegistry.counter("stock.conflict.attempts", tags).increment();
+                try {
+                    return transactionTemplate.execute(status -> action.get());
+                } catch (OptimisticLockingFailureException e) {
+                    meterRegistry.counter("stock.conflict.conflicts", tags).increment();
+                    if (attempt >= maxAttempts) {
+                        meterRegistry.counter("stock.conflict.give-ups", tags).increment();
+                        log.debug("Giving up on product {} after {} conflicting attempts", productId, attempt);
+                        throw new VersionConflictException(e);
+                    }
+                    pause(ThreadLocalRandom.current().nextLong(backoff + 1), e);
+                    backoff = Math.min((long) (backoff * properties.getMultiplier()), properties.getMaxBackoff().toMillis());
+                }
+            }
+        } finally {
+            sample.stop(meterRegistry.timer("stock.conflict.duration", tags));
+        }
+    }
+
+    private String bucketOf(Long productId) {
+        if (productId == null) {
+            return "none";
+        }
+        return String.valueOf(Math.floorMod(productId, Math.max(1, properties.getMetricBuckets())));
+    }
+
+    private void pause(long millis, RuntimeException conflict) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VersionConflictException(conflict);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.m2gi.ecom.service.inventory;
+
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.service.TransactionUtils;
+import com.m2gi.ecom.service.dto.StockLevelDTO;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Publisher of the stock changes of the products, as {@link StockLevelsChangedEvent}s.
+ * <p>
+ * The changed products are collected once their transaction commits, and their stock levels are read and published every
+ * interval, so the changes of a product are coalesced into at most one level per interval. Levels equal to the last
+ * published ones are not published again.
+ */
+@Service
+public class StockLevelPublisher {
+
+    private final Logger log = LoggerFactory.getLogger(StockLevelPublisher.class);
+
+    private final ProductRepository productRepository;
+
+    private final InventoryEngine inventoryEngine;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+
+    private final Map<Long, Integer> lastPublished = new ConcurrentHashMap<>();
+
+    public StockLevelPublisher(
+        ProductRepository productRepository,
+        InventoryEngine inventoryEngine,
+        ApplicationEventPublisher eventPublisher,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.productRepository = productRepository;
+        this.inventoryEngine = inventoryEngine;
+        this.eventPublisher = eventPublisher;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Record that the stock of products changed, once the current transaction commits.
+     */
+    public void changedAfterCommit(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        final List<Long> pending = new ArrayList<>(productIds);
+        TransactionUtils.afterCommit(() -> changed.addAll(pending));
+    }
+
+    public void changedAfterCommit(Long productId) {
+        changedAfterCommit(Collections.singleton(productId));
+    }
+
+    @Scheduled(
+        fixedDelayString = "${application.inventory.stream.interval:PT1S}",
+        initialDelayString = "${application.inventory.stream.interval:PT1S}"
+    )
+    public void publish() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        // Removed one by one, so that a product changed again meanwhile is kept for the next interval
+        final List<Long> productIds = new ArrayList<>();
+        final Iterator<Long> iterator = changed.iterator();
+        while (iterator.hasNext()) {
+            productIds.add(iterator.next());
+            iterator.remove();
+        }
+        final List<StockLevelDTO> levels = new ArrayList<>();
+        for (StockLevelDTO level : findLevels(productIds)) {
+            if (!Objects.equals(lastPublished.put(level.getProductId(), level.getQuantity()), level.getQuantity())) {
+                levels.add(level);
+            }
+        }
+        if (!levels.isEmpty()) {
+            log.debug("Publishing the stock levels of {} products", levels.size());
+            eventPublisher.publishEvent(new StockLevelsChangedEvent(levels));
+        }
+    }
+
+    /**
+     * The current stock levels of products, including the changes held by the {@link InventoryEngine}.
+     */
+    public List<StockLevelDTO> findLevels(Collection<Long> productIds) {
+        final List<StockLevelDTO> levels = new ArrayList<>();
+        readOnlyTransactionTemplate
+            .execute(status -> productRepository.findStockLevels(productIds))
+            .forEach(level -> {
+                final Integer engineQuantity = inventoryEngine.availableQuantity(level.getId());
+                levels.add(new StockLevelDTO(level.getId(), engineQuantity != null ? engineQuantity : level.getQuantity()));
+            });
+        return levels;
+    }
+}
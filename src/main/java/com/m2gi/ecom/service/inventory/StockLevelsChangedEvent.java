@@ -0,0 +1,20 @@
+package com.m2gi.ecom.service.inventory;
+
+import com.m2gi.ecom.service.dto.StockLevelDTO;
+import java.util.List;
+
+/**
+ * Stock levels of the products which changed during the last interval, one per product.
+ */
+public class StockLevelsChangedEvent {
+
+    private final List<StockLevelDTO> levels;
+
+    public StockLevelsChangedEvent(List<StockLevelDTO> levels) {
+        this.levels = levels;
+    }
+
+    public List<StockLevelDTO> getLevels() {
+        return levels;
+    }
+}
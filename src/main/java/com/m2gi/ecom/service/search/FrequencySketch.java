@@ -0,0 +1,71 @@
+package com.m2gi.ecom.service.search;
+
+/**
+ * Count-min sketch of the recent frequency of keys, the TinyLFU admission filter of {@link ProductResultCache}.
+ * <p>
+ * Each key increments one counter in each of four rows, and its frequency is the smallest of them, so that the
+ * collisions only overestimate it. The counters saturate at 15 and are all halved once ten times as many increments as
+ * cached entries were made, so that the frequencies follow the recent traffic. Not thread-safe.
+ */
+final class FrequencySketch {
+
+    private static final int[] SEEDS = { 0x97cb3127, 0xb3a6a1b5, 0x7c9e6d29, 0xd1b54a35 };
+
+    private static final int MAX_COUNT = 15;
+
+    private final byte[][] table = new byte[SEEDS.length][];
+
+    private final int mask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    FrequencySketch(int maxEntries) {
+        final int width = Integer.highestOneBit(Math.max(maxEntries, 8) * 2 - 1);
+        for (int row = 0; row < table.length; row++) {
+            table[row] = new byte[width];
+        }
+        this.mask = width - 1;
+        this.sampleSize = Math.max(maxEntries, 1) * 10;
+    }
+
+    void increment(Object key) {
+        final int hash = key.hashCode();
+        boolean added = false;
+        for (int row = 0; row < table.length; row++) {
+            final int index = index(hash, row);
+            if (table[row][index] < MAX_COUNT) {
+                table[row][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(Object key) {
+        final int hash = key.hashCode();
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < table.length; row++) {
+            frequency = Math.min(frequency, table[row][index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        for (byte[] counters : table) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] >>= 1;
+            }
+        }
+        additions /= 2;
+    }
+
+    private int index(int hash, int row) {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        return h & mask;
+    }
+}
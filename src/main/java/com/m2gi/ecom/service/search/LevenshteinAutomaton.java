@@ -0,0 +1,88 @@
+package com.m2gi.ecom.service.search;
+
+/**
+ * Automaton accepting the words within a maximum edit distance of a term, insertions, deletions, substitutions and
+ * transpositions of adjacent characters counting one edit each, so that "chocolta" is one edit from "chocolat".
+ * <p>
+ * A state is the last row of the edit distances between the term and the characters read so far, capped at the maximum
+ * distance plus one, with the row and the character before it for the transpositions. A state whose row is over the
+ * maximum distance everywhere cannot accept any longer word, so the walk of a sorted dictionary skips every term starting
+ * with the characters read so far.
+ */
+public final class LevenshteinAutomaton {
+
+    private final String term;
+
+    private final int maxDistance;
+
+    public LevenshteinAutomaton(String term, int maxDistance) {
+        this.term = term;
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * A state of the automaton, immutable.
+     */
+    public static final class State {
+
+        private final int[] row;
+
+        private final int[] previousRow;
+
+        private final char previousChar;
+
+        private State(int[] row, int[] previousRow, char previousChar) {
+            this.row = row;
+            this.previousRow = previousRow;
+            this.previousChar = previousChar;
+        }
+    }
+
+    public State start() {
+        final int[] row = new int[term.length() + 1];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = Math.min(i, maxDistance + 1);
+        }
+        return new State(row, null, '\0');
+    }
+
+    public State step(State state, char c) {
+        final int[] row = new int[term.length() + 1];
+        row[0] = Math.min(state.row[0] + 1, maxDistance + 1);
+        for (int i = 1; i < row.length; i++) {
+            final char expected = term.charAt(i - 1);
+            int distance = Math.min(Math.min(row[i - 1], state.row[i]) + 1, state.row[i - 1] + (expected == c ? 0 : 1));
+            if (state.previousRow != null && i > 1 && expected == state.previousChar && term.charAt(i - 2) == c) {
+                distance = Math.min(distance, state.previousRow[i - 2] + 1);
+            }
+            row[i] = Math.min(distance, maxDistance + 1);
+        }
+        return new State(row, state.row, c);
+    }
+
+    /**
+     * Whether the characters read so far are within the maximum distance of the term.
+     */
+    public boolean isMatch(State state) {
+        return state.row[term.length()] <= maxDistance;
+    }
+
+    /**
+     * Whether some word starting with the characters read so far may still be accepted.
+     */
+    public boolean canMatch(State state) {
+        for (int distance : state.row) {
+            if (distance <= maxDistance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The edit distance between the term and the characters read so far, when they match.
+     */
+    public int distance(State state) {
+        return state.row[term.length()];
+    }
+}
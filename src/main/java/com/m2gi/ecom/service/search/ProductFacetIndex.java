@@ -0,0 +1,343 @@
+package com.m2gi.ecom.service.search;
+
+import com.m2gi.ecom.domain.Category;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.domain.Tag;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.service.TransactionUtils;
+import com.m2gi.ecom.service.dto.FacetCountDTO;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Counts of the facets of the products found by a search: brand, origin, tag, weight unit and category.
+ * <p>
+ * Each product gets a dense ordinal, and each value of a facet the bitset of the ordinals of its products. The products
+ * found are turned into a bitset as well, and the count of a value is the population count of the intersection of both,
+ * a few thousand words at most even for a large catalog, instead of a {@code group by} query per facet. The bitsets are
+ * built once the application is ready, then kept up to date product by product once the transactions changing them are
+ * committed. The changes shared by many products, such as the name of a tag, mark them stale, and they are rebuilt in the
+ * background as the {@link ProductSearchIndex} is, replaying the products changed while the catalog is loaded.
+ */
+@Service
+public class ProductFacetIndex {
+
+    private final Logger log = LoggerFactory.getLogger(ProductFacetIndex.class);
+
+    public static final String BRAND = "brand";
+
+    public static final String ORIGIN = "origin";
+
+    public static final String TAG = "tag";
+
+    public static final String WEIGHT_UNIT = "weightUnit";
+
+    /**
+     * The categories of the products and their ancestors, by id.
+     */
+    public static final String CATEGORY = "category";
+
+    private static final List<String> FACETS = List.of(BRAND, ORIGIN, TAG, WEIGHT_UNIT, CATEGORY);
+
+    private static final Comparator<FacetCountDTO> BY_COUNT = Comparator
+        .comparing(FacetCountDTO::getCount, Comparator.reverseOrder())
+        .thenComparing(FacetCountDTO::getLabel, String.CASE_INSENSITIVE_ORDER);
+
+    private final ProductRepository productRepository;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final AtomicBoolean stale = new AtomicBoolean();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final Map<String, Map<String, FacetValue>> valuesByFacet = new HashMap<>();
+    private final Map<Long, Integer> ordinalById = new HashMap<>();
+    private final List<List<FacetValue>> valuesByOrdinal = new ArrayList<>();
+    private final List<Integer> freeOrdinals = new ArrayList<>();
+    // The products indexed, or removed when null, during a rebuild, by id; null outside a rebuild
+    private Map<Long, Product> changedDuringRebuild;
+
+    public ProductFacetIndex(ProductRepository productRepository, PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.readOnlyTransactionTemplate = TransactionUtils.newReadOnlyTransactionTemplate(transactionManager);
+        FACETS.forEach(facet -> valuesByFacet.put(facet, new HashMap<>()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                final List<Product> products = productRepository.findAllWithEagerRelationships(Sort.unsorted());
+                lock.writeLock().lock();
+                try {
+                    valuesByFacet.values().forEach(Map::clear);
+                    ordinalById.clear();
+                    valuesByOrdinal.clear();
+                    freeOrdinals.clear();
+                    for (Product product : products) {
+                        if (!changedDuringRebuild.containsKey(product.getId())) {
+                            add(product);
+                        }
+                    }
+                    changedDuringRebuild.values().stream().filter(Objects::nonNull).forEach(this::add);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                log.info("Product facets built with {} products", products.size());
+            });
+        } finally {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Scheduled(
+        fixedDelayString = "${application.search.rebuild-delay:PT10S}",
+        initialDelayString = "${application.search.rebuild-delay:PT10S}"
+    )
+    public void rebuildIfStale() {
+        // The changes committed during the rebuild mark it stale again
+        if (stale.getAndSet(false)) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Index a created or changed product once the current transaction is committed.
+     */
+    public void indexAfterCommit(Long productId) {
+        TransactionUtils.afterCommit(() ->
+            readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                final List<Product> products = productRepository.findAllWithEagerRelationshipsByIdIn(
+                    Collections.singleton(productId),
+                    Sort.unsorted()
+                );
+                lock.writeLock().lock();
+                try {
+                    remove(productId);
+                    products.forEach(this::add);
+                    changed(productId, products.isEmpty() ? null : products.get(0));
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            })
+        );
+    }
+
+    /**
+     * Remove a deleted product once the current transaction is committed.
+     */
+    public void removeAfterCommit(Long productId) {
+        TransactionUtils.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                remove(productId);
+                changed(productId, null);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Mark the index stale once the current transaction is committed, after a change shared by many products such as the
+     * name of a tag, to rebuild it in the background.
+     */
+    public void rebuildAfterCommit() {
+        TransactionUtils.afterCommit(() -> stale.set(true));
+    }
+
+    /**
+     * Count the facets of products.
+     *
+     * @param productIds the ids of the products found.
+     * @return the counts of each facet, by facet name, the most frequent value first, without the values of no product.
+     */
+    public Map<String, List<FacetCountDTO>> count(Collection<Long> productIds) {
+        final Map<String, List<FacetCountDTO>> counts = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            final long[] found = new long[wordCount(valuesByOrdinal.size())];
+            int firstWord = found.length;
+            int lastWord = -1;
+            for (Long productId : productIds) {
+                final Integer ordinal = ordinalById.get(productId);
+                if (ordinal == null) {
+                    continue;
+                }
+                final int word = ordinal >>> 6;
+                found[word] |= 1L << ordinal;
+                firstWord = Math.min(firstWord, word);
+                lastWord = Math.max(lastWord, word);
+            }
+            for (String facet : FACETS) {
+                final List<FacetCountDTO> facetCounts = new ArrayList<>();
+                for (Map.Entry<String, FacetValue> entry : valuesByFacet.get(facet).entrySet()) {
+                    final FacetValue value = entry.getValue();
+                    // Only the words holding products found
+                    final int end = Math.min(lastWord, value.words.length - 1);
+                    int count = 0;
+                    for (int word = firstWord; word <= end; word++) {
+                        count += Long.bitCount(found[word] & value.words[word]);
+                    }
+                    if (count > 0) {
+                        facetCounts.add(new FacetCountDTO(entry.getKey(), value.label, count));
+                    }
+                }
+                facetCounts.sort(BY_COUNT);
+                counts.put(facet, facetCounts);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return counts;
+    }
+
+    /**
+     * Record a product indexed or removed, to replay it over the products loaded by a rebuild in progress, under the write
+     * lock.
+     */
+    private void changed(Long productId, Product product) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.put(productId, product);
+        }
+    }
+
+    private void add(Product product) {
+        final int ordinal;
+        if (freeOrdinals.isEmpty()) {
+            ordinal = valuesByOrdinal.size();
+            valuesByOrdinal.add(null);
+        } else {
+            ordinal = freeOrdinals.remove(freeOrdinals.size() - 1);
+        }
+        final List<FacetValue> values = new ArrayList<>();
+        addValue(values, ordinal, BRAND, product.getBrand(), product.getBrand());
+        addValue(values, ordinal, ORIGIN, product.getOrigin(), product.getOrigin());
+        if (product.getWeightUnit() != null) {
+            addValue(values, ordinal, WEIGHT_UNIT, product.getWeightUnit().name(), product.getWeightUnit().name());
+        }
+        for (Tag tag : product.getTags()) {
+            addValue(values, ordinal, TAG, tag.getName(), tag.getName());
+        }
+        for (Category category : product.getRelatedCategories()) {
+            if (category.getId() != null) {
+                addValue(values, ordinal, CATEGORY, category.getId().toString(), category.getName());
+            }
+        }
+        valuesByOrdinal.set(ordinal, values);
+        ordinalById.put(product.getId(), ordinal);
+    }
+
+    private void addValue(List<FacetValue> values, int ordinal, String facet, String key, String label) {
+        if (key == null || key.isBlank()) {
+            return;
+        }
+        final FacetValue value = valuesByFacet
+            .get(facet)
+            .computeIfAbsent(key, k -> new FacetValue(facet, key, label != null ? label : key));
+        if (value.set(ordinal)) {
+            values.add(value);
+        }
+    }
+
+    private void remove(Long productId) {
+        final Integer ordinal = ordinalById.remove(productId);
+        if (ordinal == null) {
+            return;
+        }
+        for (FacetValue value : valuesByOrdinal.get(ordinal)) {
+            if (value.clear(ordinal) == 0) {
+                valuesByFacet.get(value.facet).remove(value.key);
+            }
+        }
+        valuesByOrdinal.set(ordinal, Collections.emptyList());
+        freeOrdinals.add(ordinal);
+    }
+
+    private static int wordCount(int ordinals) {
+        return (ordinals + 63) >>> 6;
+    }
+
+    /**
+     * A value of a facet, with the bitset of the ordinals of its products.
+     */
+    private static final class FacetValue {
+
+        private final String facet;
+
+        private final String key;
+
+        private final String label;
+
+        private long[] words = new long[1];
+
+        private int cardinality;
+
+        private FacetValue(String facet, String key, String label) {
+            this.facet = facet;
+            this.key = key;
+            this.label = label;
+        }
+
+        /**
+         * @return whether the ordinal was not set yet.
+         */
+        private boolean set(int ordinal) {
+            final int word = ordinal >>> 6;
+            if (word >= words.length) {
+                words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+            }
+            if ((words[word] & (1L << ordinal)) != 0) {
+                return false;
+            }
+            words[word] |= 1L << ordinal;
+            cardinality++;
+            return true;
+        }
+
+        /**
+         * @return the number of ordinals left.
+         */
+        private int clear(int ordinal) {
+            final int word = ordinal >>> 6;
+            if ((words[word] & (1L << ordinal)) != 0) {
+                words[word] &= ~(1L << ordinal);
+                cardinality--;
+            }
+            return cardinality;
+        }
+    }
+}
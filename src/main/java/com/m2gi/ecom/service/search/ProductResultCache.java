@@ -0,0 +1,276 @@
+package com.m2gi.ecom.service.search;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.domain.Category;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.domain.Tag;
+import com.m2gi.ecom.service.TransactionUtils;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Cache of the ids of the products found by a search, listed in a category or in the whole catalog, by normalized query,
+ * category and sort.
+ * <p>
+ * Only the ids are kept, so the entries stay small and the stock changes, which do not move the products between the
+ * results, keep them cached. The least recently used entry makes room for a new one only if the new key was asked more
+ * often recently, as counted by a {@link FrequencySketch}, so that a burst of one-off queries does not flush the popular
+ * ones.
+ * <p>
+ * The catalog changes evict only the entries they may change: those holding the changed product, the listings of its
+ * categories, the catalog listings, and the searches whose words are in its texts or within two edits of them. The
+ * entries with fewer results than the fuzzy search threshold are evicted by every product change, as the typos and the
+ * fallbacks of the search strategies may then find it. Every eviction bumps the generation, so a result loaded
+ * concurrently from the previous state is not left in the cache.
+ */
+@Service
+public class ProductResultCache {
+
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
+    private static final int MAX_EDITS = 2;
+
+    private final boolean enabled;
+
+    private final int maxEntries;
+
+    private final int sparseResults;
+
+    // Guarded by entries
+    private final LinkedHashMap<Key, List<Long>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long generation;
+
+    public ProductResultCache(ApplicationProperties applicationProperties) {
+        final ApplicationProperties.Search search = applicationProperties.getSearch();
+        this.enabled = search.getResultCache().isEnabled();
+        this.maxEntries = search.getResultCache().getMaxEntries();
+        this.sparseResults = search.getFuzzy().isEnabled() ? Math.max(search.getFuzzy().getMinHits(), 1) : 1;
+        this.sketch = new FrequencySketch(maxEntries);
+    }
+
+    /**
+     * Get the ids of a result, loading them on a miss.
+     * <p>
+     * Results loaded within a read-write transaction are neither read from nor put in the cache, since they may hold
+     * changes which are not committed yet.
+     *
+     * @param query the query of a search, {@code null} for a listing.
+     * @param categoryId the category of a listing, {@code null} for the whole catalog.
+     * @param sort the sort of the ids.
+     * @param loader the loader of the ids.
+     * @return the ids, unmodifiable.
+     */
+    public List<Long> get(String query, Long categoryId, Sort sort, Supplier<List<Long>> loader) {
+        if (!enabled || !isCacheable()) {
+            return loader.get();
+        }
+        final Key key = new Key(query != null ? normalize(query) : null, categoryId, sort.toString());
+        final long loadedGeneration;
+        synchronized (entries) {
+            sketch.increment(key);
+            final List<Long> cached = entries.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            loadedGeneration = generation;
+        }
+        final List<Long> ids = List.copyOf(loader.get());
+        synchronized (entries) {
+            // An eviction may have happened while loading
+            if (generation == loadedGeneration) {
+                admit(key, ids);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Evict the results a created or changed product may enter, leave or move within, once the current transaction is
+     * committed.
+     * <p>
+     * To be called after the search index is told about the change, so that the results are not loaded again before it is
+     * up to date.
+     */
+    public void evictAfterCommit(Product product) {
+        final Long productId = product.getId();
+        final Set<Long> categoryIds = new HashSet<>();
+        final StringBuilder text = new StringBuilder(" ");
+        appendText(text, product.getName());
+        appendText(text, product.getBrand());
+        appendText(text, product.getOrigin());
+        appendText(text, product.getDescription());
+        for (Tag tag : product.getTags()) {
+            appendText(text, tag.getName());
+        }
+        for (Category category : product.getRelatedCategories()) {
+            appendText(text, category.getName());
+            categoryIds.add(category.getId());
+        }
+        final String productText = text.toString();
+        final Set<String> productWords = new HashSet<>(Arrays.asList(productText.trim().split(" ")));
+        evictAfterCommit((key, ids) -> {
+            if (ids.contains(productId)) {
+                return true;
+            }
+            if (key.query != null) {
+                return ids.size() < sparseResults || mayMatch(key.query, productText, productWords);
+            }
+            return key.categoryId == null || categoryIds.contains(key.categoryId);
+        });
+    }
+
+    /**
+     * Evict the results holding a deleted product once the current transaction is committed.
+     */
+    public void evictRemovedAfterCommit(Long productId) {
+        evictAfterCommit((key, ids) -> ids.contains(productId));
+    }
+
+    /**
+     * Evict the listings of the categories once the current transaction is committed, after a change of the categories of
+     * many products such as the move of a category.
+     */
+    public void evictCategoriesAfterCommit() {
+        evictAfterCommit((key, ids) -> key.categoryId != null);
+    }
+
+    /**
+     * Evict the searches once the current transaction is committed, after a change of a text shared by many products such
+     * as the name of a tag or of a category.
+     */
+    public void evictSearchesAfterCommit() {
+        evictAfterCommit((key, ids) -> key.query != null);
+    }
+
+    /**
+     * Lower case the query and collapse its spaces, which changes the results of none of the search strategies.
+     */
+    static String normalize(String query) {
+        return WHITESPACES.matcher(query.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Whether a product may be found by a search: some word of the query is in its texts, as the {@code like} predicates
+     * and the index find it, or is within two edits of one of its words, as the typos, the stemming and the trigrams may.
+     */
+    private static boolean mayMatch(String query, String productText, Set<String> productWords) {
+        for (String word : SuggestionTrie.normalize(query).split(" ")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (productText.contains(word)) {
+                return true;
+            }
+            final LevenshteinAutomaton automaton = new LevenshteinAutomaton(word, MAX_EDITS);
+            for (String productWord : productWords) {
+                if (Math.abs(productWord.length() - word.length()) <= MAX_EDITS && accepts(automaton, productWord)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean accepts(LevenshteinAutomaton automaton, String word) {
+        LevenshteinAutomaton.State state = automaton.start();
+        for (int i = 0; i < word.length(); i++) {
+            state = automaton.step(state, word.charAt(i));
+            if (!automaton.canMatch(state)) {
+                return false;
+            }
+        }
+        return automaton.isMatch(state);
+    }
+
+    private static void appendText(StringBuilder text, String field) {
+        if (field != null) {
+            final String normalized = SuggestionTrie.normalize(field);
+            if (!normalized.isEmpty()) {
+                text.append(normalized).append(' ');
+            }
+        }
+    }
+
+    private void admit(Key key, List<Long> ids) {
+        if (entries.size() >= maxEntries) {
+            final Iterator<Map.Entry<Key, List<Long>>> eldest = entries.entrySet().iterator();
+            if (!eldest.hasNext()) {
+                return;
+            }
+            // The candidate is kept only if it is more popular than the entry it would evict
+            if (sketch.frequency(key) <= sketch.frequency(eldest.next().getKey())) {
+                return;
+            }
+            eldest.remove();
+        }
+        entries.put(key, ids);
+    }
+
+    private void evictAfterCommit(BiPredicate<Key, List<Long>> predicate) {
+        if (!enabled) {
+            return;
+        }
+        TransactionUtils.afterCommit(() -> {
+            synchronized (entries) {
+                generation++;
+                entries.entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue()));
+            }
+        });
+    }
+
+    private static boolean isCacheable() {
+        return (
+            !TransactionSynchronizationManager.isActualTransactionActive() ||
+            TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+        );
+    }
+
+    /**
+     * The normalized query, category and sort of a result.
+     */
+    private static final class Key {
+
+        private final String query;
+
+        private final Long categoryId;
+
+        private final String sort;
+
+        private Key(String query, Long categoryId, String sort) {
+            this.query = query;
+            this.categoryId = categoryId;
+            this.sort = sort;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return Objects.equals(query, other.query) && Objects.equals(categoryId, other.categoryId) && sort.equals(other.sort);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, categoryId, sort);
+        }
+    }
+}
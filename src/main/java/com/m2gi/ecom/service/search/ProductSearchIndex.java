@@ -0,0 +1,486 @@
+package com.m2gi.ecom.service.search;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.domain.Category;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.domain.Tag;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.service.TransactionUtils;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * In-memory inverted index of the products, searched instead of scanning the {@code product} table.
+ * <p>
+ * The name, brand, origin, description, tags and categories of every product are analyzed by {@link TextAnalyzer} into
+ * terms, weighted by field, and the products are ranked with BM25. The index is built once the application is ready,
+ * then kept up to date product by product once the transactions changing them are committed. Each product gets a dense
+ * ordinal, kept until the product is deleted. The changes shared by many products, such as the name of a category, mark
+ * the index stale, and it is rebuilt in the background at most once per delay. The products changed while a rebuild loads
+ * the catalog are replayed over it, as it may have loaded them before their change.
+ * <p>
+ * The terms are also kept sorted, so that {@link #searchFuzzy(String, Operator)} walks them with a
+ * {@link LevenshteinAutomaton} per term of the query, skipping every term whose prefix is already too far from it, and
+ * that the last term of a query, which may still be typed, also matches the terms it starts, as the {@code like}
+ * predicates did.
+ * <p>
+ * The index is only built with the {@code index} search strategy, so that the other strategies do not hold the catalog
+ * in memory.
+ */
+@Service
+public class ProductSearchIndex {
+
+    private final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    public enum Operator {
+        /**
+         * Products matching every term of the query.
+         */
+        AND,
+        /**
+         * Products matching at least one term of the query.
+         */
+        OR,
+    }
+
+    private static final float K1 = 1.2f;
+
+    private static final float B = 0.75f;
+
+    private static final float NAME_WEIGHT = 3f;
+
+    private static final float BRAND_WEIGHT = 2f;
+
+    private static final float TAG_WEIGHT = 2f;
+
+    private static final float CATEGORY_WEIGHT = 1.5f;
+
+    private static final float ORIGIN_WEIGHT = 1f;
+
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    /**
+     * Terms shorter than this are only matched exactly, as most short words are a couple of edits away from each other.
+     */
+    private static final int FUZZY_MIN_LENGTH = 4;
+
+    /**
+     * Terms this long or longer are matched within two edits, shorter ones within one.
+     */
+    private static final int FUZZY_TWO_EDITS_LENGTH = 7;
+
+    /**
+     * Last terms shorter than this are only matched exactly, as they start too many terms.
+     */
+    private static final int PREFIX_MIN_LENGTH = 3;
+
+    /**
+     * Weight of the scores of the terms started by the last term of the query, so that they rank below the exact matches.
+     */
+    private static final float PREFIX_WEIGHT = 0.5f;
+
+    private final ProductRepository productRepository;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final boolean enabled;
+
+    private final AtomicBoolean stale = new AtomicBoolean();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final Map<String, Map<Integer, Float>> postings = new HashMap<>();
+    private final NavigableSet<String> dictionary = new TreeSet<>();
+    private final Map<Long, Integer> ordinalById = new HashMap<>();
+    private final List<Long> idByOrdinal = new ArrayList<>();
+    private final List<Map<String, Float>> termsByOrdinal = new ArrayList<>();
+    private final List<Float> lengthByOrdinal = new ArrayList<>();
+    private final List<Integer> freeOrdinals = new ArrayList<>();
+    private float totalLength;
+    private boolean ready;
+    // The products indexed, or removed when null, during a rebuild, by id; null outside a rebuild
+    private Map<Long, Product> changedDuringRebuild;
+
+    public ProductSearchIndex(
+        ProductRepository productRepository,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.productRepository = productRepository;
+        this.enabled = applicationProperties.getSearch().getStrategy() == ApplicationProperties.Search.Strategy.INDEX;
+        this.readOnlyTransactionTemplate = TransactionUtils.newReadOnlyTransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                final List<Product> products = productRepository.findAllWithEagerRelationships(Sort.unsorted());
+                lock.writeLock().lock();
+                try {
+                    postings.clear();
+                    dictionary.clear();
+                    ordinalById.clear();
+                    idByOrdinal.clear();
+                    termsByOrdinal.clear();
+                    lengthByOrdinal.clear();
+                    freeOrdinals.clear();
+                    totalLength = 0;
+                    for (Product product : products) {
+                        if (!changedDuringRebuild.containsKey(product.getId())) {
+                            add(product);
+                        }
+                    }
+                    changedDuringRebuild.values().stream().filter(Objects::nonNull).forEach(this::add);
+                    ready = true;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                log.info("Product search index built with {} products and {} terms", products.size(), postings.size());
+            });
+        } finally {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Scheduled(
+        fixedDelayString = "${application.search.rebuild-delay:PT10S}",
+        initialDelayString = "${application.search.rebuild-delay:PT10S}"
+    )
+    public void rebuildIfStale() {
+        // The changes committed during the rebuild mark it stale again
+        if (stale.getAndSet(false)) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Whether the index was built, before which the searches cannot use it.
+     */
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return ready;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Index a created or changed product once the current transaction is committed.
+     */
+    public void indexAfterCommit(Long productId) {
+        TransactionUtils.afterCommit(() -> index(Collections.singleton(productId)));
+    }
+
+    /**
+     * Remove a deleted product once the current transaction is committed.
+     */
+    public void removeAfterCommit(Long productId) {
+        TransactionUtils.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                remove(productId);
+                changed(productId, null);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Mark the index stale once the current transaction is committed, after a change shared by many products such as the
+     * name of a category, to rebuild it in the background.
+     */
+    public void rebuildAfterCommit() {
+        TransactionUtils.afterCommit(() -> stale.set(true));
+    }
+
+    /**
+     * Search the products, the last term of the query also matching the indexed terms it starts, such as "chocolat" for
+     * "choco".
+     *
+     * @param query the query, analyzed as the indexed texts.
+     * @param operator whether the products must match every term or at least one.
+     * @return the ids of the matching products, the best ranked first.
+     */
+    public List<Long> search(String query, Operator operator) {
+        final List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.terms(query)));
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            final List<Map<String, Float>> expansions = new ArrayList<>(terms.size());
+            for (int i = 0; i < terms.size(); i++) {
+                expansions.add(expand(terms.get(i), i == terms.size() - 1));
+            }
+            return rank(expansions, operator);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search the products, each term of the query also matching the indexed terms within one or two edits of it, such as
+     * "chocolat" for "chocolta", and the last one the indexed terms it starts. The products matching with edits are ranked
+     * lower the more edits they need.
+     *
+     * @param query the query, analyzed as the indexed texts.
+     * @param operator whether the products must match every term or at least one.
+     * @return the ids of the matching products, the best ranked first.
+     */
+    public List<Long> searchFuzzy(String query, Operator operator) {
+        final List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.terms(query)));
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            final List<Map<String, Float>> expansions = new ArrayList<>(terms.size());
+            for (int i = 0; i < terms.size(); i++) {
+                final Map<String, Float> expansion = expand(terms.get(i), i == terms.size() - 1);
+                fuzzyTerms(terms.get(i)).forEach((fuzzyTerm, distance) -> expansion.merge(fuzzyTerm, 1f / (1 + distance), Math::max));
+                expansions.add(expansion);
+            }
+            return rank(expansions, operator);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rank the products with BM25, under the read lock.
+     *
+     * @param expansions for each term of the query, the indexed terms it matches with the weights of their scores.
+     * @param operator whether the products must match every term of the query or at least one.
+     */
+    private List<Long> rank(List<Map<String, Float>> expansions, Operator operator) {
+        final int documentCount = ordinalById.size();
+        final float averageLength = documentCount == 0 ? 1f : Math.max(totalLength / documentCount, 1f);
+        final Map<Integer, Float> scores = new HashMap<>();
+        final Map<Integer, Integer> matchedTerms = new HashMap<>();
+        for (Map<String, Float> expansion : expansions) {
+            final Set<Integer> matched = new HashSet<>();
+            expansion.forEach((term, weight) -> {
+                final Map<Integer, Float> termPostings = postings.get(term);
+                if (termPostings == null) {
+                    return;
+                }
+                final double idf = Math.log(1 + (documentCount - termPostings.size() + 0.5) / (termPostings.size() + 0.5));
+                termPostings.forEach((ordinal, frequency) -> {
+                    final float length = lengthByOrdinal.get(ordinal);
+                    final double score = idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+                    scores.merge(ordinal, weight * (float) score, Float::sum);
+                    matched.add(ordinal);
+                });
+            });
+            if (matched.isEmpty() && operator == Operator.AND) {
+                return Collections.emptyList();
+            }
+            matched.forEach(ordinal -> matchedTerms.merge(ordinal, 1, Integer::sum));
+        }
+        final List<Integer> ordinals = new ArrayList<>(scores.keySet());
+        if (operator == Operator.AND) {
+            ordinals.removeIf(ordinal -> matchedTerms.get(ordinal) < expansions.size());
+        }
+        ordinals.sort((first, second) -> {
+            final int byScore = Float.compare(scores.get(second), scores.get(first));
+            return byScore != 0 ? byScore : Long.compare(idByOrdinal.get(first), idByOrdinal.get(second));
+        });
+        final List<Long> ids = new ArrayList<>(ordinals.size());
+        ordinals.forEach(ordinal -> ids.add(idByOrdinal.get(ordinal)));
+        return ids;
+    }
+
+    /**
+     * A term of the query with its weight, and if it is the last one the indexed terms it starts, under the read lock.
+     */
+    private Map<String, Float> expand(String term, boolean last) {
+        final Map<String, Float> expansion = new HashMap<>();
+        expansion.put(term, 1f);
+        if (last && term.length() >= PREFIX_MIN_LENGTH) {
+            // Every term starting with it sorts between it and it followed by the greatest character
+            dictionary.subSet(term, false, term + Character.MAX_VALUE, false).forEach(prefixed -> expansion.put(prefixed, PREFIX_WEIGHT));
+        }
+        return expansion;
+    }
+
+    /**
+     * The indexed terms within one or two edits of a term, itself excluded, under the read lock.
+     *
+     * @return the edit distance, by term.
+     */
+    private Map<String, Integer> fuzzyTerms(String term) {
+        final Map<String, Integer> found = new HashMap<>();
+        if (term.length() < FUZZY_MIN_LENGTH || dictionary.isEmpty()) {
+            return found;
+        }
+        final LevenshteinAutomaton automaton = new LevenshteinAutomaton(term, term.length() >= FUZZY_TWO_EDITS_LENGTH ? 2 : 1);
+        // The states after each character of the last candidate, shared with the next one up to their common prefix
+        final List<LevenshteinAutomaton.State> states = new ArrayList<>();
+        states.add(automaton.start());
+        String previous = "";
+        String candidate = dictionary.first();
+        while (candidate != null) {
+            int depth = 0;
+            final int shared = Math.min(Math.min(previous.length(), candidate.length()), states.size() - 1);
+            while (depth < shared && previous.charAt(depth) == candidate.charAt(depth)) {
+                depth++;
+            }
+            states.subList(depth + 1, states.size()).clear();
+            boolean dead = false;
+            while (depth < candidate.length()) {
+                final LevenshteinAutomaton.State next = automaton.step(states.get(depth), candidate.charAt(depth));
+                if (!automaton.canMatch(next)) {
+                    dead = true;
+                    break;
+                }
+                states.add(next);
+                depth++;
+            }
+            if (dead) {
+                // No term starting with these characters can match: skip them all
+                final String deadPrefix = candidate.substring(0, depth + 1);
+                previous = candidate.substring(0, depth);
+                candidate = dictionary.higher(deadPrefix + Character.MAX_VALUE);
+                continue;
+            }
+            final LevenshteinAutomaton.State last = states.get(depth);
+            if (automaton.isMatch(last) && !candidate.equals(term)) {
+                found.put(candidate, automaton.distance(last));
+            }
+            previous = candidate;
+            candidate = dictionary.higher(candidate);
+        }
+        return found;
+    }
+
+    private void index(Collection<Long> productIds) {
+        if (!enabled) {
+            return;
+        }
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            final List<Product> products = productRepository.findAllWithEagerRelationshipsByIdIn(productIds, Sort.unsorted());
+            lock.writeLock().lock();
+            try {
+                productIds.forEach(this::remove);
+                products.forEach(this::add);
+                productIds.forEach(productId -> changed(productId, null));
+                products.forEach(product -> changed(product.getId(), product));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Record a product indexed or removed, to replay it over the products loaded by a rebuild in progress, under the write
+     * lock.
+     */
+    private void changed(Long productId, Product product) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.put(productId, product);
+        }
+    }
+
+    private void add(Product product) {
+        final Map<String, Float> frequencies = new HashMap<>();
+        addField(frequencies, product.getName(), NAME_WEIGHT);
+        addField(frequencies, product.getBrand(), BRAND_WEIGHT);
+        addField(frequencies, product.getOrigin(), ORIGIN_WEIGHT);
+        addField(frequencies, product.getDescription(), DESCRIPTION_WEIGHT);
+        for (Tag tag : product.getTags()) {
+            addField(frequencies, tag.getName(), TAG_WEIGHT);
+        }
+        // The related categories are the category of the product and its ancestors
+        for (Category category : product.getRelatedCategories()) {
+            addField(frequencies, category.getName(), CATEGORY_WEIGHT);
+        }
+        float length = 0;
+        for (float frequency : frequencies.values()) {
+            length += frequency;
+        }
+        final int ordinal;
+        if (freeOrdinals.isEmpty()) {
+            ordinal = idByOrdinal.size();
+            idByOrdinal.add(product.getId());
+            termsByOrdinal.add(frequencies);
+            lengthByOrdinal.add(length);
+        } else {
+            ordinal = freeOrdinals.remove(freeOrdinals.size() - 1);
+            idByOrdinal.set(ordinal, product.getId());
+            termsByOrdinal.set(ordinal, frequencies);
+            lengthByOrdinal.set(ordinal, length);
+        }
+        ordinalById.put(product.getId(), ordinal);
+        totalLength += length;
+        frequencies.forEach((term, frequency) -> {
+            postings.computeIfAbsent(term, key -> new HashMap<>()).put(ordinal, frequency);
+            dictionary.add(term);
+        });
+    }
+
+    private void remove(Long productId) {
+        final Integer ordinal = ordinalById.remove(productId);
+        if (ordinal == null) {
+            return;
+        }
+        termsByOrdinal
+            .get(ordinal)
+            .forEach((term, frequency) -> {
+                final Map<Integer, Float> termPostings = postings.get(term);
+                termPostings.remove(ordinal);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                    dictionary.remove(term);
+                }
+            });
+        totalLength -= lengthByOrdinal.get(ordinal);
+        idByOrdinal.set(ordinal, null);
+        termsByOrdinal.set(ordinal, Collections.emptyMap());
+        lengthByOrdinal.set(ordinal, 0f);
+        freeOrdinals.add(ordinal);
+    }
+
+    private static void addField(Map<String, Float> frequencies, String text, float weight) {
+        TextAnalyzer.terms(text).forEach(term -> frequencies.merge(term, weight, Float::sum));
+    }
+}
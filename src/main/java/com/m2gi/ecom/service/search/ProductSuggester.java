@@ -0,0 +1,136 @@
+package com.m2gi.ecom.service.search;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.domain.Category;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.repository.CategoryRepository;
+import com.m2gi.ecom.repository.ProductOrderRepository;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.service.TransactionUtils;
+import com.m2gi.ecom.service.dto.SuggestionDTO;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Suggestions of the search box, served from a {@link SuggestionTrie} without any database access.
+ * <p>
+ * The suggestions are the names of the products, the brands and the categories, the most popular first: a product weighs
+ * one plus its units sold, a brand or a category the sum of its products. The trie is built once the application is
+ * ready. The catalog changes mark it stale, and it is rebuilt in the background at most once per delay then swapped as a
+ * whole, so the lookups never wait for a rebuild.
+ */
+@Service
+public class ProductSuggester {
+
+    private final Logger log = LoggerFactory.getLogger(ProductSuggester.class);
+
+    private final ProductRepository productRepository;
+
+    private final CategoryRepository categoryRepository;
+
+    private final ProductOrderRepository productOrderRepository;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final int maxResults;
+
+    private final AtomicBoolean stale = new AtomicBoolean();
+
+    private volatile SuggestionTrie trie = SuggestionTrie.EMPTY;
+
+    public ProductSuggester(
+        ProductRepository productRepository,
+        CategoryRepository categoryRepository,
+        ProductOrderRepository productOrderRepository,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.productOrderRepository = productOrderRepository;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.maxResults = applicationProperties.getSearch().getSuggest().getMaxResults();
+    }
+
+    /**
+     * The suggestions for a prefix.
+     *
+     * @param prefix the prefix typed in the search box.
+     * @return the suggestions, the most popular first.
+     */
+    public List<SuggestionDTO> suggest(String prefix) {
+        return trie.suggest(prefix, maxResults);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        final SuggestionTrie.Builder builder = new SuggestionTrie.Builder(maxResults);
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            final Map<Long, Long> unitsByProduct = new HashMap<>();
+            productOrderRepository
+                .findAllProductSales()
+                .forEach(sales -> unitsByProduct.put(sales.getProductId(), sales.getUnits() != null ? sales.getUnits() : 0L));
+
+            final Map<String, String> brands = new LinkedHashMap<>();
+            final Map<String, Long> weightByBrand = new HashMap<>();
+            final Map<Long, Long> weightByCategory = new HashMap<>();
+            for (Product product : productRepository.findAllWithEagerRelationships(Sort.unsorted())) {
+                final long weight = 1 + unitsByProduct.getOrDefault(product.getId(), 0L);
+                builder.add(new SuggestionDTO(SuggestionDTO.Type.PRODUCT, product.getId(), product.getName()), weight);
+                if (product.getBrand() != null && !product.getBrand().isBlank()) {
+                    // The same brand written differently is suggested once, as first written
+                    final String brandKey = SuggestionTrie.normalize(product.getBrand());
+                    brands.putIfAbsent(brandKey, product.getBrand());
+                    weightByBrand.merge(brandKey, weight, Long::sum);
+                }
+                for (Category category : product.getRelatedCategories()) {
+                    weightByCategory.merge(category.getId(), weight, Long::sum);
+                }
+            }
+            brands.forEach((key, brand) ->
+                builder.add(new SuggestionDTO(SuggestionDTO.Type.BRAND, null, brand), weightByBrand.get(key))
+            );
+            for (Category category : categoryRepository.findAll()) {
+                builder.add(
+                    new SuggestionDTO(SuggestionDTO.Type.CATEGORY, category.getId(), category.getName()),
+                    weightByCategory.getOrDefault(category.getId(), 0L)
+                );
+            }
+        });
+        final long start = System.nanoTime();
+        final SuggestionTrie rebuilt = builder.build();
+        trie = rebuilt;
+        log.info("Search suggestions rebuilt with {} entries in {} ms", rebuilt.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Mark the suggestions stale once the current transaction is committed, to rebuild them in the background.
+     */
+    public void rebuildAfterCommit() {
+        TransactionUtils.afterCommit(() -> stale.set(true));
+    }
+
+    @Scheduled(
+        fixedDelayString = "${application.search.suggest.rebuild-delay:PT10S}",
+        initialDelayString = "${application.search.suggest.rebuild-delay:PT10S}"
+    )
+    public void rebuildIfStale() {
+        // The changes committed during the rebuild mark it stale again
+        if (stale.getAndSet(false)) {
+            rebuild();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.m2gi.ecom.service.search;
+
+import com.m2gi.ecom.service.dto.SuggestionDTO;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable prefix trie of the suggestions, each node holding its most popular suggestions, so that a lookup only walks
+ * the characters of the prefix.
+ * <p>
+ * A suggestion is reachable from the start of each of its words, folded as by {@link TextAnalyzer#fold(String)}: "Chocolat
+ * noir" is suggested for "choc" and for "noi". The nodes are laid out breadth first in flat arrays, the children of a node
+ * being contiguous and sorted by character, and the best suggestions of every node are precomputed once when the trie is
+ * built.
+ */
+public final class SuggestionTrie {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    public static final SuggestionTrie EMPTY = new Builder(1).build();
+
+    private final List<SuggestionDTO> suggestions;
+
+    // By node, the root being 0
+    private final char[] labels;
+    private final int[] firstChild;
+    private final int[] childCount;
+
+    // The best suggestions of node n are the suggestions at best[bestOffsets[n]] to best[bestOffsets[n + 1] - 1]
+    private final int[] bestOffsets;
+    private final int[] best;
+
+    private SuggestionTrie(
+        List<SuggestionDTO> suggestions,
+        char[] labels,
+        int[] firstChild,
+        int[] childCount,
+        int[] bestOffsets,
+        int[] best
+    ) {
+        this.suggestions = suggestions;
+        this.labels = labels;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.bestOffsets = bestOffsets;
+        this.best = best;
+    }
+
+    /**
+     * The suggestions for a prefix.
+     *
+     * @param prefix the prefix typed in the search box.
+     * @param limit the maximum number of suggestions, at most the number kept by node.
+     * @return the suggestions, the most popular first.
+     */
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        final String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int node = 0;
+        for (int i = 0; i < key.length() && node >= 0; i++) {
+            node = child(node, key.charAt(i));
+        }
+        if (node < 0) {
+            return Collections.emptyList();
+        }
+        final int end = Math.min(bestOffsets[node + 1], bestOffsets[node] + limit);
+        final List<SuggestionDTO> found = new ArrayList<>(end - bestOffsets[node]);
+        for (int i = bestOffsets[node]; i < end; i++) {
+            found.add(suggestions.get(best[i]));
+        }
+        return found;
+    }
+
+    public int size() {
+        return suggestions.size();
+    }
+
+    private int child(int node, char label) {
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            if (labels[middle] < label) {
+                low = middle + 1;
+            } else if (labels[middle] > label) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The words of a text, folded and separated by a single space.
+     */
+    static String normalize(String text) {
+        final StringBuilder normalized = new StringBuilder();
+        for (String word : SEPARATORS.split(TextAnalyzer.fold(text))) {
+            if (!word.isEmpty()) {
+                if (normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(word);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Builder of a trie, from suggestions weighted by popularity.
+     */
+    public static final class Builder {
+
+        private final int maxResults;
+
+        private final List<SuggestionDTO> suggestions = new ArrayList<>();
+
+        private final List<Long> weights = new ArrayList<>();
+
+        public Builder(int maxResults) {
+            this.maxResults = maxResults;
+        }
+
+        public Builder add(SuggestionDTO suggestion, long weight) {
+            if (suggestion.getText() != null && !normalize(suggestion.getText()).isEmpty()) {
+                suggestions.add(suggestion);
+                weights.add(weight);
+            }
+            return this;
+        }
+
+        public SuggestionTrie build() {
+            // Inserted the most popular first, so the first suggestions reaching a node are its best ones
+            final List<Integer> byWeight = new ArrayList<>(suggestions.size());
+            for (int i = 0; i < suggestions.size(); i++) {
+                byWeight.add(i);
+            }
+            byWeight.sort(
+                Comparator
+                    .comparing((Integer i) -> weights.get(i), Comparator.reverseOrder())
+                    .thenComparing(i -> suggestions.get(i).getText(), String.CASE_INSENSITIVE_ORDER)
+            );
+            final List<SuggestionDTO> sorted = new ArrayList<>(suggestions.size());
+            final Node root = new Node('\0');
+            for (int index : byWeight) {
+                final int suggestion = sorted.size();
+                sorted.add(suggestions.get(index));
+                final String key = normalize(suggestions.get(index).getText());
+                for (int start = 0; start < key.length(); start++) {
+                    if (start == 0 || key.charAt(start - 1) == ' ') {
+                        insert(root, key, start, suggestion);
+                    }
+                }
+            }
+
+            final List<Node> nodes = new ArrayList<>();
+            nodes.add(root);
+            for (int i = 0; i < nodes.size(); i++) {
+                final Node node = nodes.get(i);
+                node.firstChild = nodes.size();
+                nodes.addAll(node.children.values());
+            }
+            final char[] labels = new char[nodes.size()];
+            final int[] firstChild = new int[nodes.size()];
+            final int[] childCount = new int[nodes.size()];
+            final int[] bestOffsets = new int[nodes.size() + 1];
+            int bestCount = 0;
+            for (int i = 0; i < nodes.size(); i++) {
+                bestCount += nodes.get(i).best.size();
+            }
+            final int[] best = new int[bestCount];
+            int offset = 0;
+            for (int i = 0; i < nodes.size(); i++) {
+                final Node node = nodes.get(i);
+                labels[i] = node.label;
+                firstChild[i] = node.firstChild;
+                childCount[i] = node.children.size();
+                bestOffsets[i] = offset;
+                for (int suggestion : node.best) {
+                    best[offset++] = suggestion;
+                }
+            }
+            bestOffsets[nodes.size()] = offset;
+            return new SuggestionTrie(Collections.unmodifiableList(sorted), labels, firstChild, childCount, bestOffsets, best);
+        }
+
+        private void insert(Node root, String key, int start, int suggestion) {
+            Node node = root;
+            for (int i = start; i < key.length(); i++) {
+                final char label = key.charAt(i);
+                node = node.children.computeIfAbsent(label, Node::new);
+                // The same suggestion reaches a node once per word starting with its prefix
+                if (node.best.size() < maxResults && !node.best.contains(suggestion)) {
+                    node.best.add(suggestion);
+                }
+            }
+        }
+    }
+
+    /**
+     * A node while building the trie.
+     */
+    private static final class Node {
+
+        private final char label;
+
+        private final Map<Character, Node> children = new TreeMap<>();
+
+        private final List<Integer> best = new ArrayList<>(1);
+
+        private int firstChild;
+
+        private Node(char label) {
+            this.label = label;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.m2gi.ecom.service.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Analyzer of the product texts and of the search queries: lower case, accents folded and split into terms, so that
+ * "Crème brûlée" and "creme brulee" give the same terms.
+ */
+public final class TextAnalyzer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * French articles and prepositions, which would match nearly every product.
+     */
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a",
+        "au",
+        "aux",
+        "d",
+        "de",
+        "des",
+        "du",
+        "en",
+        "et",
+        "l",
+        "la",
+        "le",
+        "les",
+        "ou",
+        "un",
+        "une"
+    );
+
+    private TextAnalyzer() {}
+
+    /**
+     * Lower case and fold the accents of a text, ligatures included.
+     */
+    public static String fold(String text) {
+        final String lowerCase = text.toLowerCase(Locale.FRENCH).replace("œ", "oe").replace("æ", "ae");
+        return COMBINING_MARKS.matcher(Normalizer.normalize(lowerCase, Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    /**
+     * The terms of a text, in order and with repetitions, without the stop words.
+     */
+    public static List<String> terms(String text) {
+        final List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        for (String term : SEPARATORS.split(fold(text))) {
+            if (!term.isEmpty() && !STOP_WORDS.contains(term)) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+}
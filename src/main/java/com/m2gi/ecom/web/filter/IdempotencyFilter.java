@@ -0,0 +1,214 @@
+package com.m2gi.ecom.web.filter;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.security.SecurityUtils;
+import com.m2gi.ecom.service.idempotency.IdempotencyStore;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+/**
+ * Replay the stored response of a {@code POST} request sent again with the same {@code Idempotency-Key} header, instead of
+ * executing it again.
+ * <p>
+ * Keys are scoped to the authenticated user and bound to the request they were first used for: reusing a key for another
+ * request is rejected with a {@code 422}, and sending it while the first request is still executed with a {@code 409}. A
+ * new key is rejected with a {@code 503} while the store is full of requests in progress.
+ * Only the final responses are stored: server errors, conflicts ({@code 409}) and rejections by a flash sale queue
+ * ({@code 429}) are transient, so the request can be retried with the same key.
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final IdempotencyStore idempotencyStore;
+
+    private final ApplicationProperties.Idempotency properties;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public IdempotencyFilter(IdempotencyStore idempotencyStore, ApplicationProperties applicationProperties) {
+        this.idempotencyStore = idempotencyStore;
+        this.properties = applicationProperties.getIdempotency();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!properties.isEnabled() || !HttpMethod.POST.matches(request.getMethod()) || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null) {
+            return true;
+        }
+        final String path = pathOf(request);
+        return properties.getPaths().stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        final String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid " + IDEMPOTENCY_KEY_HEADER + " header");
+            return;
+        }
+        final byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+        final String key = SecurityUtils.getCurrentUserLogin().orElse("") + ":" + idempotencyKey;
+        final IdempotencyStore.Reservation reservation = idempotencyStore.begin(key, fingerprintOf(request, body));
+        switch (reservation.getStatus()) {
+            case COMPLETED:
+                replay(reservation.getResponse(), response);
+                return;
+            case IN_PROGRESS:
+                response.sendError(HttpServletResponse.SC_CONFLICT, "A request with this " + IDEMPOTENCY_KEY_HEADER + " is in progress");
+                return;
+            case MISMATCH:
+                response.sendError(422, "The " + IDEMPOTENCY_KEY_HEADER + " was already used for another request");
+                return;
+            case UNAVAILABLE:
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many requests in progress");
+                return;
+            default:
+                break;
+        }
+
+        final ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        try {
+            filterChain.doFilter(new CachedBodyRequest(request, body), responseWrapper);
+            if (isFinal(responseWrapper.getStatus())) {
+                idempotencyStore.complete(
+                    key,
+                    new IdempotencyStore.StoredResponse(
+                        responseWrapper.getStatus(),
+                        responseWrapper.getContentType(),
+                        responseWrapper.getHeader(HttpHeaders.LOCATION),
+                        responseWrapper.getContentAsByteArray()
+                    )
+                );
+                completed = true;
+            }
+        } finally {
+            if (!completed) {
+                idempotencyStore.abort(key);
+            }
+            responseWrapper.copyBodyToResponse();
+        }
+    }
+
+    private static boolean isFinal(int status) {
+        return (
+            status < HttpServletResponse.SC_INTERNAL_SERVER_ERROR &&
+            status != HttpServletResponse.SC_CONFLICT &&
+            status != HttpStatus.TOO_MANY_REQUESTS.value()
+        );
+    }
+
+    private static void replay(IdempotencyStore.StoredResponse stored, HttpServletResponse response) throws IOException {
+        response.setStatus(stored.getStatus());
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        if (stored.getLocation() != null) {
+            response.setHeader(HttpHeaders.LOCATION, stored.getLocation());
+        }
+        response.setHeader(IDEMPOTENT_REPLAYED_HEADER, "true");
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static String fingerprintOf(HttpServletRequest request, byte[] body) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(pathOf(request).getBytes(StandardCharsets.UTF_8));
+            if (request.getQueryString() != null) {
+                digest.update(request.getQueryString().getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update(body);
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Request whose body was already read, to compute its fingerprint.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            final ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    // The whole body is already in memory, so it is available at once
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
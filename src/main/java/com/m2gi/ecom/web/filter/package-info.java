@@ -0,0 +1,4 @@
+/**
+ * Servlet filters.
+ */
+package com.m2gi.ecom.web.filter;
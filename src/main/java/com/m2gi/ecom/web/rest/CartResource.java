@@ -9,6 +9,8 @@ import com.m2gi.ecom.repository.UserRepository;
 import com.m2gi.ecom.security.SecurityUtils;
 import com.m2gi.ecom.service.CartService;
 import com.m2gi.ecom.service.ProductService;
+import com.m2gi.ecom.service.dto.CartDTO;
+import com.m2gi.ecom.service.dto.CartLineOperationDTO;
 import com.m2gi.ecom.web.rest.errors.BadRequestAlertException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -199,9 +201,9 @@ public class CartResource {
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the cart.
      */
     @GetMapping("/cart")
-    public ResponseEntity<Cart> getCartForCurrentUser() {
+    public ResponseEntity<CartDTO> getCartForCurrentUser() {
         log.debug("REST request to get all ProductCarts");
-        Optional<Cart> cart = cartService.findOneWithEagerRelationshipsByLogin(SecurityUtils.getCurrentUserLogin().get());
+        Optional<CartDTO> cart = cartService.findViewByLogin(SecurityUtils.getCurrentUserLogin().get());
         return ResponseUtil.wrapOrNotFound(cart);
     }
 
@@ -283,4 +285,18 @@ public class CartResource {
         cartService.removeLine(id);
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * {@code POST  /cart/lines:batch} : Apply a batch of add/update/remove operations to the current user's cart, in one transaction.
+     *
+     * @param operations the operations, applied in order.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the resulting cart,
+     * or with status {@code 400 (Bad Request)} if an operation is invalid or a product stock is insufficient, in which case none is applied.
+     */
+    @PostMapping("/cart/lines:batch")
+    public ResponseEntity<CartDTO> applyCartLineOperations(@RequestBody List<CartLineOperationDTO> operations) {
+        log.debug("REST request to apply a batch of operations to the current user's Cart : {}", operations);
+        final CartDTO result = cartService.applyLineOperations(SecurityUtils.getCurrentUserLogin().orElseThrow(), operations);
+        return ResponseEntity.ok(result);
+    }
 }
@@ -0,0 +1,111 @@
+package com.m2gi.ecom.web.rest;
+
+import com.m2gi.ecom.security.AuthoritiesConstants;
+import com.m2gi.ecom.security.SecurityUtils;
+import com.m2gi.ecom.service.ProductService;
+import com.m2gi.ecom.service.dto.FlashSaleTicketDTO;
+import com.m2gi.ecom.service.inventory.FlashSaleQueue;
+import com.m2gi.ecom.web.rest.errors.BadRequestAlertException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import tech.jhipster.web.util.ResponseUtil;
+
+/**
+ * REST controller for the waiting rooms of the products on flash sale.
+ */
+@RestController
+@RequestMapping("/api")
+public class FlashSaleResource {
+
+    private final Logger log = LoggerFactory.getLogger(FlashSaleResource.class);
+
+    private static final String ENTITY_NAME = "flashSale";
+
+    private final FlashSaleQueue flashSaleQueue;
+
+    private final ProductService productService;
+
+    public FlashSaleResource(FlashSaleQueue flashSaleQueue, ProductService productService) {
+        this.flashSaleQueue = flashSaleQueue;
+        this.productService = productService;
+    }
+
+    /**
+     * {@code POST  /flash-sales/:productId/tickets} : enter the waiting room of a product on flash sale.
+     *
+     * @param productId the id of the product.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the ticket of the current user, or
+     * with status {@code 400 (Bad Request)} if the product is not on flash sale, or with status {@code 429 (Too Many Requests)}
+     * if the waiting room is full.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping("/flash-sales/{productId}/tickets")
+    public ResponseEntity<FlashSaleTicketDTO> joinFlashSale(@PathVariable Long productId) throws URISyntaxException {
+        log.debug("REST request to enter the waiting room of Product : {}", productId);
+        final FlashSaleTicketDTO ticket = flashSaleQueue
+            .join(productId, SecurityUtils.getCurrentUserLogin().orElseThrow())
+            .orElseThrow(() -> new BadRequestAlertException("The product is not on flash sale", ENTITY_NAME, "notonflashsale"));
+        return ResponseEntity.created(new URI("/api/flash-sales/tickets/" + ticket.getId())).body(ticket);
+    }
+
+    /**
+     * {@code GET  /flash-sales/tickets/:id} : get the status of a ticket of the current user.
+     *
+     * @param id the id of the ticket.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the ticket, or with status
+     * {@code 404 (Not Found)}.
+     */
+    @GetMapping("/flash-sales/tickets/{id}")
+    public ResponseEntity<FlashSaleTicketDTO> getFlashSaleTicket(@PathVariable String id) {
+        return ResponseUtil.wrapOrNotFound(flashSaleQueue.status(id, SecurityUtils.getCurrentUserLogin().orElseThrow()));
+    }
+
+    /**
+     * {@code GET  /admin/flash-sales} : get the ids of the products on flash sale.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the ids of the products in body.
+     */
+    @GetMapping("/admin/flash-sales")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public Set<Long> getFlashSales() {
+        log.debug("REST request to get the Products on flash sale");
+        return flashSaleQueue.getOpenProducts();
+    }
+
+    /**
+     * {@code PUT  /admin/flash-sales/:productId} : put a product on flash sale.
+     *
+     * @param productId the id of the product.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}, or with status {@code 404 (Not Found)}.
+     */
+    @PutMapping("/admin/flash-sales/{productId}")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Void> openFlashSale(@PathVariable Long productId) {
+        log.debug("REST request to put Product on flash sale : {}", productId);
+        if (productService.findOne(productId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        flashSaleQueue.open(productId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * {@code DELETE  /admin/flash-sales/:productId} : end the flash sale of a product.
+     *
+     * @param productId the id of the product.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     */
+    @DeleteMapping("/admin/flash-sales/{productId}")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Void> closeFlashSale(@PathVariable Long productId) {
+        log.debug("REST request to end the flash sale of Product : {}", productId);
+        flashSaleQueue.close(productId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,56 @@
+package com.m2gi.ecom.web.rest;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import java.time.Duration;
+import java.util.Optional;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+/**
+ * The cookie holding the opaque token of the cart of an anonymous visitor. Only the API reads it, never the scripts.
+ */
+@Component
+public class GuestCartCookies {
+
+    private static final String PATH = "/api";
+
+    private final ApplicationProperties.GuestCart properties;
+
+    public GuestCartCookies(ApplicationProperties applicationProperties) {
+        this.properties = applicationProperties.getGuestCart();
+    }
+
+    public Optional<String> read(HttpServletRequest request) {
+        final Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return Optional.empty();
+        }
+        for (Cookie cookie : cookies) {
+            if (properties.getCookieName().equals(cookie.getName())) {
+                return Optional.ofNullable(cookie.getValue());
+            }
+        }
+        return Optional.empty();
+    }
+
+    public ResponseCookie create(String token, HttpServletRequest request) {
+        return build(token, properties.getTtl(), request);
+    }
+
+    public ResponseCookie clear(HttpServletRequest request) {
+        return build("", Duration.ZERO, request);
+    }
+
+    private ResponseCookie build(String value, Duration maxAge, HttpServletRequest request) {
+        return ResponseCookie
+            .from(properties.getCookieName(), value)
+            .httpOnly(true)
+            .secure(request.isSecure())
+            .sameSite("Lax")
+            .path(PATH)
+            .maxAge(maxAge)
+            .build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.m2gi.ecom.web.rest;
+
+import com.m2gi.ecom.service.dto.GuestCartLineDTO;
+import com.m2gi.ecom.service.impl.GuestCartStore;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST controller for the cart of an anonymous visitor, merged into the cart of the user when they log in.
+ */
+@RestController
+@RequestMapping("/api")
+public class GuestCartResource {
+
+    private final Logger log = LoggerFactory.getLogger(GuestCartResource.class);
+
+    private final GuestCartStore guestCartStore;
+
+    private final GuestCartCookies guestCartCookies;
+
+    public GuestCartResource(GuestCartStore guestCartStore, GuestCartCookies guestCartCookies) {
+        this.guestCartStore = guestCartStore;
+        this.guestCartCookies = guestCartCookies;
+    }
+
+    /**
+     * {@code GET  /guest-cart} : get the lines of the guest cart of the visitor.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the lines in body, empty without a cart.
+     */
+    @GetMapping("/guest-cart")
+    public List<GuestCartLineDTO> getGuestCart(HttpServletRequest request) {
+        log.debug("REST request to get the guest cart");
+        return guestCartCookies.read(request).map(guestCartStore::getLines).orElse(List.of());
+    }
+
+    /**
+     * {@code PUT  /guest-cart/products/:productId} : set the quantity of a product in the guest cart of the visitor, creating
+     * the cart and its cookie if needed.
+     *
+     * @param productId the id of the product.
+     * @param quantity the quantity, {@code 0} to remove the product.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the lines in body, or with status
+     * {@code 400 (Bad Request)} if the quantity is negative, the product unknown or the cart full.
+     */
+    @PutMapping("/guest-cart/products/{productId}")
+    public ResponseEntity<List<GuestCartLineDTO>> setGuestCartQuantity(
+        @PathVariable Long productId,
+        @RequestParam int quantity,
+        HttpServletRequest request
+    ) {
+        log.debug("REST request to set the quantity of Product {} in the guest cart to {}", productId, quantity);
+        final String token = guestCartCookies.read(request).filter(guestCartStore::isValidToken).orElseGet(guestCartStore::newToken);
+        final List<GuestCartLineDTO> lines = guestCartStore.setQuantity(token, productId, quantity);
+        // Sent on every change, so that the cookie lives as long as the cart
+        return ResponseEntity
+            .ok()
+            .header(HttpHeaders.SET_COOKIE, guestCartCookies.create(token, request).toString())
+            .body(lines);
+    }
+
+    /**
+     * {@code DELETE  /guest-cart} : drop the guest cart of the visitor.
+     *
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     */
+    @DeleteMapping("/guest-cart")
+    public ResponseEntity<Void> deleteGuestCart(HttpServletRequest request) {
+        log.debug("REST request to delete the guest cart");
+        guestCartCookies.read(request).ifPresent(guestCartStore::clear);
+        return ResponseEntity.noContent().header(HttpHeaders.SET_COOKIE, guestCartCookies.clear(request).toString()).build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.m2gi.ecom.web.rest;
+
+import com.m2gi.ecom.security.AuthoritiesConstants;
+import com.m2gi.ecom.service.ProductService;
+import com.m2gi.ecom.service.dto.LowStockDTO;
+import com.m2gi.ecom.service.dto.StockDiscrepancyDTO;
+import com.m2gi.ecom.service.dto.StockReceiptDTO;
+import com.m2gi.ecom.service.inventory.InventoryMovementLedger;
+import com.m2gi.ecom.service.inventory.LowStockWatcher;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST controller for the stock movements of the products.
+ */
+@RestController
+@RequestMapping("/api")
+public class InventoryResource {
+
+    private final Logger log = LoggerFactory.getLogger(InventoryResource.class);
+
+    private final ProductService productService;
+
+    private final InventoryMovementLedger inventoryMovementLedger;
+
+    private final LowStockWatcher lowStockWatcher;
+
+    public InventoryResource(
+        ProductService productService,
+        InventoryMovementLedger inventoryMovementLedger,
+        LowStockWatcher lowStockWatcher
+    ) {
+        this.productService = productService;
+        this.inventoryMovementLedger = inventoryMovementLedger;
+        this.lowStockWatcher = lowStockWatcher;
+    }
+
+    /**
+     * {@code POST  /inventory/receipts} : Add the units of a supplier delivery to the stock of its products, in one transaction.
+     *
+     * @param receipts the units received, by product.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the number of restocked products in body, or with
+     * status {@code 400 (Bad Request)} if a receipt is not positive or targets an unknown product, in which case no stock is
+     * changed.
+     */
+    @PostMapping("/inventory/receipts")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Integer> receiveStock(@RequestBody List<StockReceiptDTO> receipts) {
+        log.debug("REST request to receive the stock of {} Products", receipts.size());
+        return ResponseEntity.ok(productService.receiveStock(receipts));
+    }
+
+    /**
+     * {@code GET  /inventory/discrepancies} : get the products whose stock differs from the one computed from the inventory
+     * ledger, to reconcile them after an incident.
+     *
+     * @return the list of discrepancies.
+     */
+    @GetMapping("/inventory/discrepancies")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public List<StockDiscrepancyDTO> getStockDiscrepancies() {
+        log.debug("REST request to get the stock discrepancies");
+        return inventoryMovementLedger.findDiscrepancies();
+    }
+
+    /**
+     * {@code GET  /inventory/at-risk} : get the products whose stock is at or below their low stock threshold.
+     *
+     * @return the list of products at risk, the lowest stock first.
+     */
+    @GetMapping("/inventory/at-risk")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public List<LowStockDTO> getAtRiskProducts() {
+        log.debug("REST request to get the Products at risk of stockout");
+        return lowStockWatcher.getAtRisk();
+    }
+}
@@ -1,14 +1,24 @@
 package com.m2gi.ecom.web.rest;
 
+import com.m2gi.ecom.config.ApplicationProperties;
 import com.m2gi.ecom.domain.Category;
 import com.m2gi.ecom.domain.Product;
 import com.m2gi.ecom.domain.UserDetails;
 import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.security.AuthoritiesConstants;
 import com.m2gi.ecom.security.SecurityUtils;
 import com.m2gi.ecom.service.CategoryService;
 import com.m2gi.ecom.service.ProductService;
 import com.m2gi.ecom.service.UserDetailsService;
+import com.m2gi.ecom.service.dto.ProductCursor;
+import com.m2gi.ecom.service.dto.ProductPageDTO;
+import com.m2gi.ecom.service.dto.ProductSearchResultDTO;
+import com.m2gi.ecom.service.dto.SuggestionDTO;
+import com.m2gi.ecom.service.impl.ProductAvailabilityCache;
+import com.m2gi.ecom.service.search.ProductFacetIndex;
+import com.m2gi.ecom.service.search.ProductSuggester;
 import com.m2gi.ecom.web.rest.errors.BadRequestAlertException;
+import com.m2gi.ecom.web.sse.StockLevelEmitters;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -21,8 +31,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.ResponseUtil;
 
@@ -37,6 +51,15 @@ public class ProductResource {
 
     private static final String ENTITY_NAME = "product";
 
+    /**
+     * The header of the cursor of the next page, also given as the {@code next} link.
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
@@ -46,16 +69,36 @@ public class ProductResource {
 
     private final ProductRepository productRepository;
 
+    private final StockLevelEmitters stockLevelEmitters;
+
+    private final ApplicationProperties.Inventory.Stream streamProperties;
+
+    private final ProductAvailabilityCache productAvailabilityCache;
+
+    private final ProductFacetIndex productFacetIndex;
+
+    private final ProductSuggester productSuggester;
+
     public ProductResource(
         ProductService productService,
         UserDetailsService userDetailsService,
         ProductRepository productRepository,
-        CategoryService categoryService
+        CategoryService categoryService,
+        StockLevelEmitters stockLevelEmitters,
+        ApplicationProperties applicationProperties,
+        ProductAvailabilityCache productAvailabilityCache,
+        ProductFacetIndex productFacetIndex,
+        ProductSuggester productSuggester
     ) {
         this.productService = productService;
         this.productRepository = productRepository;
         this.userDetailsService = userDetailsService;
         this.categoryService = categoryService;
+        this.stockLevelEmitters = stockLevelEmitters;
+        this.streamProperties = applicationProperties.getInventory().getStream();
+        this.productAvailabilityCache = productAvailabilityCache;
+        this.productFacetIndex = productFacetIndex;
+        this.productSuggester = productSuggester;
     }
 
     /**
@@ -149,38 +192,185 @@ public class ProductResource {
 
     /**
      * {@code GET  /products} : get products from research.
+     * <p>
+     * The products carry their availability instead of their quantity, which is only given by {@code GET /products/:id}
+     * and to the administrators.
+     * <p>
+     * Given a {@code size} or a {@code cursor}, the products are paged: the cursor of the next page is given in the
+     * {@value #NEXT_CURSOR_HEADER} header and the {@code next} link, and is absent on the last page. A cursor only applies to
+     * the query, category and sort it was given with.
      *
      * @param query the research query.
+     * @param cursor the cursor of the page, none for the first page.
+     * @param size the size of the page.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of products in body.
      */
     @GetMapping("/products")
-    public List<Product> getProducts(
+    public ResponseEntity<List<Product>> getProducts(
+        @RequestParam(name = "query", required = false) String query,
+        @RequestParam(name = "category", required = false) Long categoryId,
+        @RequestParam(name = "sortBy", required = false) String sortBy,
+        @RequestParam(name = "sortOrder", required = false) Sort.Direction sortOrder,
+        @RequestParam(name = "cursor", required = false) String cursor,
+        @RequestParam(name = "size", required = false) Integer size
+    ) {
+        query = research(query);
+        if (cursor == null && size == null) {
+            return ResponseEntity.ok(findProducts(query, categoryId, sortBy, sortOrder));
+        }
+        final ProductPageDTO page = findProductPage(query, categoryId, sortBy, sortOrder, cursor, size);
+        return ResponseEntity.ok().headers(nextPageHeaders(page)).body(page.getProducts());
+    }
+
+    /**
+     * {@code GET  /products?facets=true} : get products from research, with the counts of their facets.
+     *
+     * The products are paged as by {@code GET /products}, and the facets are counted over all the products found.
+     *
+     * @param query the research query.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the products with the counts of their brands,
+     * origins, tags, weight units and categories in body.
+     */
+    @GetMapping(value = "/products", params = "facets=true")
+    public ResponseEntity<ProductSearchResultDTO> getProductsWithFacets(
         @RequestParam(name = "query", required = false) String query,
         @RequestParam(name = "category", required = false) Long categoryId,
         @RequestParam(name = "sortBy", required = false) String sortBy,
-        @RequestParam(name = "sortOrder", required = false) Sort.Direction sortOrder
+        @RequestParam(name = "sortOrder", required = false) Sort.Direction sortOrder,
+        @RequestParam(name = "cursor", required = false) String cursor,
+        @RequestParam(name = "size", required = false) Integer size
     ) {
-        Sort sort;
+        query = research(query);
+        if (cursor == null && size == null) {
+            final List<Product> products = findProducts(query, categoryId, sortBy, sortOrder);
+            final List<Long> ids = new ArrayList<>(products.size());
+            products.forEach(product -> ids.add(product.getId()));
+            return ResponseEntity.ok(new ProductSearchResultDTO(products, productFacetIndex.count(ids)));
+        }
+        final ProductPageDTO page = findProductPage(query, categoryId, sortBy, sortOrder, cursor, size);
+        final List<Long> ids = productService.findIds(query, query == null ? categoryId : null);
+        return ResponseEntity
+            .ok()
+            .headers(nextPageHeaders(page))
+            .body(new ProductSearchResultDTO(page.getProducts(), productFacetIndex.count(ids)));
+    }
+
+    /**
+     * The research query, {@code null} when blank, as a blank query matches every product without ranking them.
+     */
+    private static String research(String query) {
+        return query == null || query.isBlank() ? null : query;
+    }
+
+    /**
+     * The sort of the products: the requested one, else the relevance for a research and the name otherwise.
+     */
+    private static Sort sort(String query, String sortBy, Sort.Direction sortOrder) {
         if (sortBy != null && sortOrder != null) {
-            sort = Sort.by(sortOrder, sortBy);
-        } else {
-            sort = Sort.by(Sort.Direction.ASC, "name");
+            return Sort.by(sortOrder, sortBy);
+        }
+        return query != null ? Sort.unsorted() : Sort.by(Sort.Direction.ASC, "name");
+    }
+
+    private ProductPageDTO findProductPage(
+        String query,
+        Long categoryId,
+        String sortBy,
+        Sort.Direction sortOrder,
+        String cursor,
+        Integer size
+    ) {
+        log.debug("REST request to get a page of Products for query : {}, category : {}, after : {}", query, categoryId, cursor);
+        if (query == null && categoryId != null && categoryService.findOne(categoryId).isEmpty()) {
+            throw new BadRequestAlertException("Category unknown", "category", "idnotfound");
         }
+        final int pageSize = Math.min(Math.max(size != null ? size : DEFAULT_PAGE_SIZE, 1), MAX_PAGE_SIZE);
+        final ProductCursor after = cursor != null ? ProductCursor.decode(cursor) : null;
+        final ProductPageDTO page = productService.findPage(
+            query,
+            query == null ? categoryId : null,
+            sort(query, sortBy, sortOrder),
+            after,
+            pageSize
+        );
+        page.setProducts(toListing(page.getProducts()));
+        return page;
+    }
+
+    private static HttpHeaders nextPageHeaders(ProductPageDTO page) {
+        final HttpHeaders headers = new HttpHeaders();
+        if (page.getNext() != null) {
+            final String cursor = page.getNext().encode();
+            headers.add(NEXT_CURSOR_HEADER, cursor);
+            headers.add(
+                HttpHeaders.LINK,
+                "<" + ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam("cursor", cursor).toUriString() + ">; rel=\"next\""
+            );
+        }
+        return headers;
+    }
+
+    private List<Product> findProducts(String query, Long categoryId, String sortBy, Sort.Direction sortOrder) {
+        final Sort sort = sort(query, sortBy, sortOrder);
         if (query != null) {
             log.debug("REST request to get Research Products for query : {}", query);
-            return productService.findResearch(query, sort);
+            return toListing(productService.findResearch(query, sort));
         } else if (categoryId != null) {
             log.debug("REST request to get Products for category : {}", categoryId);
             Optional<Category> cat = categoryService.findOne(categoryId);
             if (cat.isPresent()) {
-                return productService.findCategory(cat.get(), sort);
+                return toListing(productService.findCategory(cat.get(), sort));
             } else {
                 throw new BadRequestAlertException("Category unknown", "category", "idnotfound");
             }
         } else {
             log.debug("REST request to get all Products");
-            return productService.findAll(sort);
+            return toListing(productService.findAll(sort));
+        }
+    }
+
+    /**
+     * The listed products, with their availability instead of their quantity, except for the administrators who manage the
+     * stock.
+     */
+    private List<Product> toListing(List<Product> products) {
+        if (SecurityUtils.hasCurrentUserThisAuthority(AuthoritiesConstants.ADMIN)) {
+            return products;
+        }
+        return productAvailabilityCache.toListing(products);
+    }
+
+    /**
+     * {@code GET  /products/suggest} : get the suggestions of the search box.
+     *
+     * @param prefix the prefix typed in the search box.
+     * @return the list of product, brand and category suggestions, the most popular first.
+     */
+    @GetMapping("/products/suggest")
+    public List<SuggestionDTO> suggestProducts(@RequestParam("prefix") String prefix) {
+        log.debug("REST request to suggest Products for prefix : {}", prefix);
+        return productSuggester.suggest(prefix);
+    }
+
+    /**
+     * {@code GET  /products/stock-stream} : stream the stock levels of products. Open to every visitor, since the
+     * {@code EventSource} of the product pages cannot send the {@code Authorization} header.
+     *
+     * @param ids the ids of the products.
+     * @return the server-sent events stream, sending a {@code stock} event with the current level of each product, then one
+     * on each change of a level, at most once per interval and product.
+     */
+    @GetMapping(value = "/products/stock-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamProductStocks(@RequestParam("ids") List<Long> ids) {
+        log.debug("REST request to stream the stock of Products : {}", ids);
+        if (ids.isEmpty() || ids.size() > streamProperties.getMaxProducts()) {
+            throw new BadRequestAlertException(
+                "A stream follows between 1 and " + streamProperties.getMaxProducts() + " products",
+                ENTITY_NAME,
+                "invalidids"
+            );
         }
+        return stockLevelEmitters.subscribe(ids);
     }
 
     /**
@@ -220,7 +410,7 @@ public class ProductResource {
     @GetMapping("/products/favorite-products")
     public List<Product> getFavoriteProductsForCurrentUser() {
         log.debug("REST request to get all Favorite Products for user {}", SecurityUtils.getCurrentUserLogin().orElseThrow());
-        return productService.findAllFavorite(SecurityUtils.getCurrentUserLogin().orElseThrow());
+        return productAvailabilityCache.toListing(productService.findAllFavorite(SecurityUtils.getCurrentUserLogin().orElseThrow()));
     }
 
     /**
@@ -244,6 +434,6 @@ public class ProductResource {
         }
         //Sauvegarde
         user = userDetailsService.save(user);
-        return new ArrayList<>(user.getFavorites());
+        return productAvailabilityCache.toListing(new ArrayList<>(user.getFavorites()));
     }
 }
@@ -3,7 +3,9 @@ package com.m2gi.ecom.web.rest;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.m2gi.ecom.security.jwt.JWTFilter;
 import com.m2gi.ecom.security.jwt.TokenProvider;
+import com.m2gi.ecom.service.impl.GuestCartStore;
 import com.m2gi.ecom.web.rest.vm.LoginVM;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -25,13 +27,24 @@ public class UserJWTController {
 
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
 
-    public UserJWTController(TokenProvider tokenProvider, AuthenticationManagerBuilder authenticationManagerBuilder) {
+    private final GuestCartStore guestCartStore;
+
+    private final GuestCartCookies guestCartCookies;
+
+    public UserJWTController(
+        TokenProvider tokenProvider,
+        AuthenticationManagerBuilder authenticationManagerBuilder,
+        GuestCartStore guestCartStore,
+        GuestCartCookies guestCartCookies
+    ) {
         this.tokenProvider = tokenProvider;
         this.authenticationManagerBuilder = authenticationManagerBuilder;
+        this.guestCartStore = guestCartStore;
+        this.guestCartCookies = guestCartCookies;
     }
 
     @PostMapping("/authenticate")
-    public ResponseEntity<JWTToken> authorize(@Valid @RequestBody LoginVM loginVM) {
+    public ResponseEntity<JWTToken> authorize(@Valid @RequestBody LoginVM loginVM, HttpServletRequest request) {
         UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
             loginVM.getUsername(),
             loginVM.getPassword()
@@ -42,6 +55,11 @@ public class UserJWTController {
         String jwt = tokenProvider.createToken(authentication, loginVM.isRememberMe());
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.add(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
+        // A guest cart not merged is kept with its cookie, so the visitor does not lose it
+        guestCartCookies
+            .read(request)
+            .filter(token -> guestCartStore.merge(token, authentication.getName()))
+            .ifPresent(token -> httpHeaders.add(HttpHeaders.SET_COOKIE, guestCartCookies.clear(request).toString()));
         return new ResponseEntity<>(new JWTToken(jwt), httpHeaders, HttpStatus.OK);
     }
 
@@ -0,0 +1,129 @@
+package com.m2gi.ecom.web.sse;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.service.dto.StockLevelDTO;
+import com.m2gi.ecom.service.inventory.StockLevelPublisher;
+import com.m2gi.ecom.service.inventory.StockLevelsChangedEvent;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Server-sent events streams of the stock levels of products.
+ * <p>
+ * A stream first gets the current level of each of its products, then every level published by the
+ * {@link StockLevelPublisher}, as {@code stock} events.
+ */
+@Component
+public class StockLevelEmitters {
+
+    public static final String STOCK_EVENT = "stock";
+
+    private final Logger log = LoggerFactory.getLogger(StockLevelEmitters.class);
+
+    private final StockLevelPublisher stockLevelPublisher;
+
+    private final ApplicationProperties.Inventory.Stream properties;
+
+    private final Map<Long, Set<SseEmitter>> emittersByProduct = new ConcurrentHashMap<>();
+
+    private final Map<SseEmitter, Set<Long>> productsByEmitter = new ConcurrentHashMap<>();
+
+    public StockLevelEmitters(StockLevelPublisher stockLevelPublisher, ApplicationProperties applicationProperties) {
+        this.stockLevelPublisher = stockLevelPublisher;
+        this.properties = applicationProperties.getInventory().getStream();
+    }
+
+    /**
+     * Open a stream of the stock levels of products.
+     *
+     * @param productIds the ids of the products.
+     * @return the emitter of the stream.
+     */
+    public SseEmitter subscribe(Collection<Long> productIds) {
+        final Set<Long> ids = new HashSet<>(productIds);
+        final SseEmitter emitter = new SseEmitter(properties.getTimeout().toMillis());
+        emitter.onCompletion(() -> unsubscribe(emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> unsubscribe(emitter));
+        productsByEmitter.put(emitter, ids);
+        ids.forEach(productId ->
+            emittersByProduct.compute(
+                productId,
+                (key, emitters) -> {
+                    final Set<SseEmitter> result = emitters != null ? emitters : ConcurrentHashMap.newKeySet();
+                    result.add(emitter);
+                    return result;
+                }
+            )
+        );
+        for (StockLevelDTO level : stockLevelPublisher.findLevels(ids)) {
+            if (!send(emitter, level)) {
+                break;
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * The number of open streams.
+     */
+    public int size() {
+        return productsByEmitter.size();
+    }
+
+    @EventListener
+    public void onStockLevelsChanged(StockLevelsChangedEvent event) {
+        // Grouped per emitter, so that a broken stream is dropped at its first failure
+        final Map<SseEmitter, List<StockLevelDTO>> levelsByEmitter = new LinkedHashMap<>();
+        for (StockLevelDTO level : event.getLevels()) {
+            emittersByProduct
+                .getOrDefault(level.getProductId(), Set.of())
+                .forEach(emitter -> levelsByEmitter.computeIfAbsent(emitter, key -> new ArrayList<>()).add(level));
+        }
+        levelsByEmitter.forEach((emitter, levels) -> {
+            for (StockLevelDTO level : levels) {
+                if (!send(emitter, level)) {
+                    return;
+                }
+            }
+        });
+    }
+
+    private boolean send(SseEmitter emitter, StockLevelDTO level) {
+        try {
+            emitter.send(SseEmitter.event().name(STOCK_EVENT).data(level, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Could not send the stock level of product {}, closing the stream: {}", level.getProductId(), e.getMessage());
+            unsubscribe(emitter);
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private void unsubscribe(SseEmitter emitter) {
+        final Set<Long> productIds = productsByEmitter.remove(emitter);
+        if (productIds == null) {
+            return;
+        }
+        productIds.forEach(productId ->
+            emittersByProduct.computeIfPresent(productId, (key, emitters) -> {
+                emitters.remove(emitter);
+                return emitters.isEmpty() ? null : emitters;
+            })
+        );
+    }
+}
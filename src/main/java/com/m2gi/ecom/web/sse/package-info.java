@@ -0,0 +1,4 @@
+/**
+ * Server-sent events streams.
+ */
+package com.m2gi.ecom.web.sse;
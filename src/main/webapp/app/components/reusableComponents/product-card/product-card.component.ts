@@ -3,6 +3,7 @@ import { IProduct } from '../../../entities/product/product.model';
 import { AccountService } from '../../../core/auth/account.service';
 import { Router } from '@angular/router';
 import { WeightUnit } from '../../../entities/enumerations/weight-unit.model';
+import { Availability } from '../../../entities/enumerations/availability.model';
 import { getPriceWeightStr } from '../../products/products.module';
 import { ProductService } from '../../services/product.service';
 import { CartService } from '../../services/cart.service';
@@ -23,6 +24,11 @@ export class ProductCardComponent {
     public promotionService: PromotionService
   ) {}
 
+  isSoldOut(): boolean {
+    // The listings only give the availability, the product page gives the quantity
+    return this.product?.availability === Availability.OUT || this.product?.quantity === 0;
+  }
+
   isFavorites(product: IProduct): boolean {
     return this.productService.isFavorites(product);
   }
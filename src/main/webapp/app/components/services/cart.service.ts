@@ -66,10 +66,18 @@ export class CartService {
     this.queryAddToCart(product.id!).subscribe((res: HttpResponse<IProductCart>) => {
       // Update the cart
       const productCartToUpdate: IProductCart | null = res.body ?? null;
-      if (productCartToUpdate != null) {
-        this.cart!.lines?.push(productCartToUpdate);
+      if (productCartToUpdate != null && this.cart!.lines != null) {
+        // A product already in the cart comes back as its merged line, which replaces the previous one
+        const indexProductCart = this.cart!.lines.findIndex(lineProduct => lineProduct.id === productCartToUpdate.id);
+        if (indexProductCart >= 0) {
+          this.cart!.lines[indexProductCart] = productCartToUpdate;
+        } else {
+          this.cart!.lines.push(productCartToUpdate);
+        }
+      }
+      if (product.quantity != null) {
+        product.quantity -= 1;
       }
-      product.quantity! -= 1;
       this.buildCartContentMap();
       this.calcTotal();
     });
@@ -99,7 +107,9 @@ export class CartService {
           const indexProductCart = this.cart.lines.indexOf(lineProduct);
           const oldQuantity: number = this.cart.lines[indexProductCart].quantity!;
           this.cart.lines[indexProductCart].quantity = quantity;
-          product.quantity! -= quantity - oldQuantity;
+          if (product.quantity != null) {
+            product.quantity -= quantity - oldQuantity;
+          }
           this.calcTotal();
         }
       });
@@ -114,7 +124,9 @@ export class CartService {
         if (this.cart?.lines != null) {
           const indexProductCart = this.cart.lines.indexOf(lineProduct);
           // Splice is a method to delete starting from <index> a given <number of elements>.
-          product.quantity! += this.cart.lines[indexProductCart].quantity!;
+          if (product.quantity != null) {
+            product.quantity += this.cart.lines[indexProductCart].quantity!;
+          }
           this.cart.lines.splice(indexProductCart, 1);
           this.buildCartContentMap();
           this.calcTotal();
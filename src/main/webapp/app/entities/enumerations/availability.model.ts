@@ -0,0 +1,7 @@
+export enum Availability {
+  IN_STOCK = 'IN_STOCK',
+
+  LOW = 'LOW',
+
+  OUT = 'OUT',
+}
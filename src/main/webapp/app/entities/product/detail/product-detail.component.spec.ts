@@ -1,6 +1,8 @@
 import { ComponentFixture, TestBed } from '@angular/core/testing';
 import { ActivatedRoute } from '@angular/router';
-import { of } from 'rxjs';
+import { EMPTY, of } from 'rxjs';
+
+import { ProductService } from '../service/product.service';
 
 import { ProductDetailComponent } from './product-detail.component';
 
@@ -16,6 +18,10 @@ describe('Product Management Detail Component', () => {
           provide: ActivatedRoute,
           useValue: { data: of({ product: { id: 123 } }) },
         },
+        {
+          provide: ProductService,
+          useValue: { streamStocks: jest.fn(() => EMPTY) },
+        },
       ],
     })
       .overrideTemplate(ProductDetailComponent, '')
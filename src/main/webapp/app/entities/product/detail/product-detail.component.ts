@@ -1,7 +1,9 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import { ActivatedRoute, Router } from '@angular/router';
+import { Subscription } from 'rxjs';
 
 import { IProduct } from '../product.model';
+import { ProductService } from '../service/product.service';
 import { WeightUnit } from '../../enumerations/weight-unit.model';
 import { PromotionService } from '../../../components/services/promotion.service';
 import { getPriceWeightStr } from '../../../components/products/products.module';
@@ -12,11 +14,14 @@ import { CartService } from '../../../components/services/cart.service';
   selector: 'jhi-product-detail',
   templateUrl: './product-detail.component.html',
 })
-export class ProductDetailComponent implements OnInit {
+export class ProductDetailComponent implements OnInit, OnDestroy {
   product: IProduct | null = null;
 
+  private stockSubscription?: Subscription;
+
   constructor(
     protected activatedRoute: ActivatedRoute,
+    protected productService: ProductService,
     public promotionService: PromotionService,
     public accountService: AccountService,
     public cartService: CartService,
@@ -26,9 +31,14 @@ export class ProductDetailComponent implements OnInit {
   ngOnInit(): void {
     this.activatedRoute.data.subscribe(({ product }) => {
       this.product = product;
+      this.followStock();
     });
   }
 
+  ngOnDestroy(): void {
+    this.stockSubscription?.unsubscribe();
+  }
+
   previousState(): void {
     window.history.back();
   }
@@ -112,6 +122,20 @@ export class ProductDetailComponent implements OnInit {
     this.cartService.updateQuantityProduct(item, quantity);
   }
 
+  protected followStock(): void {
+    this.stockSubscription?.unsubscribe();
+    const productId = this.product?.id;
+    if (productId == null) {
+      return;
+    }
+    // The stock shown follows the carts of the other shoppers
+    this.stockSubscription = this.productService.streamStocks([productId]).subscribe(level => {
+      if (this.product?.id === level.productId && level.quantity != null) {
+        this.product.quantity = level.quantity;
+      }
+    });
+  }
+
   updateQuantityProductByText(item: IProduct, event: any): void {
     if (event.target.value != null && event.target.value !== '') {
       if (!isNaN(Number(event.target.value))) {
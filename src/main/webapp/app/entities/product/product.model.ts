@@ -5,6 +5,7 @@ import { IPromotion } from 'app/entities/promotion/promotion.model';
 import { IPromotionalCode } from 'app/entities/promotional-code/promotional-code.model';
 import { IUserDetails } from 'app/entities/user-details/user-details.model';
 import { WeightUnit } from 'app/entities/enumerations/weight-unit.model';
+import { Availability } from 'app/entities/enumerations/availability.model';
 
 export interface IProduct {
   id?: number;
@@ -18,6 +19,8 @@ export interface IProduct {
   price?: number;
   weight?: number | null;
   weightUnit?: WeightUnit | null;
+  lowStockThreshold?: number | null;
+  availability?: Availability | null;
   category?: ICategory | null;
   relatedCategories?: ICategory[] | null;
   tags?: ITag[] | null;
@@ -46,10 +49,17 @@ export class Product implements IProduct {
     public recipes?: IRecipe[] | null,
     public associatedPromotions?: IPromotion[] | null,
     public associatedPromotionalCodes?: IPromotionalCode[] | null,
-    public favoritesOfs?: IUserDetails[] | null
+    public favoritesOfs?: IUserDetails[] | null,
+    public lowStockThreshold?: number | null,
+    public availability?: Availability | null
   ) {}
 }
 
+export interface IStockLevel {
+  productId: number;
+  quantity: number | null;
+}
+
 export function getProductIdentifier(product: IProduct): number | undefined {
   return product.id;
 }
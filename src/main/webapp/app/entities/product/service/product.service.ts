@@ -5,7 +5,7 @@ import { Observable } from 'rxjs';
 import { isPresent } from 'app/core/util/operators';
 import { ApplicationConfigService } from 'app/core/config/application-config.service';
 import { createRequestOption } from 'app/core/request/request-util';
-import { getProductIdentifier, IProduct } from '../product.model';
+import { getProductIdentifier, IProduct, IStockLevel } from '../product.model';
 
 export type EntityResponseType = HttpResponse<IProduct>;
 export type EntityArrayResponseType = HttpResponse<IProduct[]>;
@@ -32,6 +32,17 @@ export class ProductService {
     return this.http.get<IProduct>(`${this.resourceUrl}/${id}`, { observe: 'response' });
   }
 
+  /**
+   * Follow the stock levels of products: the current ones first, then every change, until unsubscribed.
+   */
+  streamStocks(ids: number[]): Observable<IStockLevel> {
+    return new Observable<IStockLevel>(subscriber => {
+      const source = new EventSource(`${this.resourceUrl}/stock-stream?ids=${ids.join(',')}`);
+      source.addEventListener('stock', event => subscriber.next(JSON.parse((event as MessageEvent).data)));
+      return () => source.close();
+    });
+  }
+
   query(req?: any): Observable<EntityArrayResponseType> {
     const options = createRequestOption(req);
     return this.http.get<IProduct[]>(this.resourceUrl, { params: options, observe: 'response' });
@@ -0,0 +1,90 @@
+package com.m2gi.ecom.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.service.impl.CartLocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class CartLocksTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CartLocks cartLocks;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getCartLock().setStripes(16);
+        applicationProperties.getCartLock().setTimeout(Duration.ofMillis(50));
+        cartLocks = new CartLocks(meterRegistry, applicationProperties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testSameCartIsLockedUntilCompletion() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        cartLocks.lockUntilCompletion(1L);
+
+        assertThatThrownBy(() -> lockInOtherTransaction(1L)).hasCauseInstanceOf(CannotAcquireLockException.class);
+        lockInOtherTransaction(2L);
+
+        complete();
+        lockInOtherTransaction(1L);
+        assertThat(meterRegistry.get("cart.lock.wait").timer().count()).isEqualTo(4);
+    }
+
+    @Test
+    void testLockIsReentrant() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        cartLocks.lockUntilCompletion(1L);
+        cartLocks.lockUntilCompletion(1L);
+
+        complete();
+        lockInOtherTransaction(1L);
+    }
+
+    @Test
+    void testLockRequiresATransaction() {
+        assertThatThrownBy(() -> cartLocks.lockUntilCompletion(1L)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private void complete() {
+        TransactionSynchronizationManager
+            .getSynchronizations()
+            .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private void lockInOtherTransaction(Long cartId) throws InterruptedException, ExecutionException {
+        CompletableFuture
+            .runAsync(() -> {
+                TransactionSynchronizationManager.initSynchronization();
+                try {
+                    cartLocks.lockUntilCompletion(cartId);
+                    complete();
+                } finally {
+                    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                        TransactionSynchronizationManager.clearSynchronization();
+                    }
+                }
+            })
+            .get();
+    }
+}
@@ -0,0 +1,360 @@
+package com.m2gi.ecom.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.m2gi.ecom.IntegrationTest;
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.domain.Cart;
+import com.m2gi.ecom.domain.Order;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.domain.ProductCart;
+import com.m2gi.ecom.domain.ProductOrder;
+import com.m2gi.ecom.domain.User;
+import com.m2gi.ecom.domain.UserDetails;
+import com.m2gi.ecom.domain.enumeration.Role;
+import com.m2gi.ecom.service.dto.CartLineOperationDTO;
+import com.m2gi.ecom.service.errors.InsufficientQuantityException;
+import com.m2gi.ecom.service.errors.InvalidCartOperationException;
+import com.m2gi.ecom.service.inventory.InventoryEngine;
+import com.m2gi.ecom.service.inventory.ReservationLedger;
+import com.m2gi.ecom.web.rest.ProductResourceIT;
+import com.m2gi.ecom.web.rest.UserResourceIT;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Stress test of the stock path: threads apply random cart operations and checkouts to a few shared products, through
+ * the batch and the single line methods, while another thread expires the cart lines with a short time to live. Then the
+ * stock of every product plus the units held by the carts and the units sold must still equal its initial stock.
+ * <p>
+ * Reports the throughput and the p99 latency of the operations. The load is sized with the {@code stress.threads},
+ * {@code stress.operations} (per thread), {@code stress.users} and {@code stress.products} system properties; the defaults
+ * keep it short enough for every build.
+ */
+@IntegrationTest
+class CartStockStressIT {
+
+    private final Logger log = LoggerFactory.getLogger(CartStockStressIT.class);
+
+    private static final int THREADS = Integer.getInteger("stress.threads", 8);
+
+    private static final int OPERATIONS = Integer.getInteger("stress.operations", 200);
+
+    private static final int USERS = Integer.getInteger("stress.users", 4);
+
+    private static final int PRODUCTS = Integer.getInteger("stress.products", 3);
+
+    private static final int INITIAL_QUANTITY = 50;
+
+    private static final Duration RESERVATION_TTL = Duration.ofMillis(100);
+
+    private enum Operation {
+        ADD,
+        UPDATE,
+        REMOVE,
+        CHECKOUT,
+    }
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private InventoryEngine inventoryEngine;
+
+    @Autowired
+    private ReservationLedger reservationLedger;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final List<Long> productIds = new ArrayList<>();
+
+    private final List<String> logins = new ArrayList<>();
+
+    private final Map<String, Long> cartIdByLogin = new HashMap<>();
+
+    private Duration reservationTtl;
+
+    @BeforeEach
+    public void init() {
+        reservationTtl = applicationProperties.getInventory().getReservation().getTtl();
+        applicationProperties.getInventory().getReservation().setTtl(RESERVATION_TTL);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < PRODUCTS; i++) {
+                Product product = ProductResourceIT.createEntity(em).quantity(INITIAL_QUANTITY).price(BigDecimal.ONE);
+                em.persist(product);
+                productIds.add(product.getId());
+            }
+            for (int i = 0; i < USERS; i++) {
+                User user = UserResourceIT.createEntity(em);
+                user.setLogin("stress-user-" + i);
+                em.persist(user);
+                Cart cart = new Cart();
+                em.persist(cart);
+                UserDetails details = new UserDetails().role(Role.CLIENT).user(user).cart(cart);
+                em.persist(details);
+                user.setDetails(details);
+                logins.add(user.getLogin());
+                cartIdByLogin.put(user.getLogin(), cart.getId());
+            }
+        });
+    }
+
+    @AfterEach
+    public void cleanup() {
+        applicationProperties.getInventory().getReservation().setTtl(reservationTtl);
+        transactionTemplate.executeWithoutResult(status -> {
+            final List<Long> detailsIds = em
+                .createQuery("select d.id from UserDetails d where d.user.login in :logins", Long.class)
+                .setParameter("logins", logins)
+                .getResultList();
+            final List<Long> cartIds = em
+                .createQuery("select d.cart.id from UserDetails d where d.id in :ids", Long.class)
+                .setParameter("ids", detailsIds)
+                .getResultList();
+            em.createQuery("delete from ProductOrder p where p.product.id in :ids").setParameter("ids", productIds).executeUpdate();
+            em.createQuery("delete from Order o where o.user.id in :ids").setParameter("ids", detailsIds).executeUpdate();
+            em.createQuery("delete from ProductCart p where p.cart.id in :ids").setParameter("ids", cartIds).executeUpdate();
+            em.createQuery("delete from UserDetails d where d.id in :ids").setParameter("ids", detailsIds).executeUpdate();
+            em.createQuery("delete from Cart c where c.id in :ids").setParameter("ids", cartIds).executeUpdate();
+            em.createQuery("delete from User u where u.login in :logins").setParameter("logins", logins).executeUpdate();
+            em.createQuery("delete from Product p where p.id in :ids").setParameter("ids", productIds).executeUpdate();
+        });
+        productIds.forEach(productId -> {
+            jdbcTemplate.update("delete from inventory_movement where product_id = ?", productId);
+            jdbcTemplate.update("delete from inventory_snapshot where product_id = ?", productId);
+        });
+    }
+
+    @Test
+    void testStockIsConservedUnderConcurrentCartOperations() throws Exception {
+        final AtomicInteger rejected = new AtomicInteger();
+        final Map<Operation, AtomicInteger> counts = new HashMap<>();
+        Arrays.stream(Operation.values()).forEach(operation -> counts.put(operation, new AtomicInteger()));
+        final long[][] latencies = new long[THREADS][OPERATIONS];
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicInteger expired = new AtomicInteger();
+        // Expires the lines of the carts while they are mutated, as the ticks of the ledger would
+        final Future<?> expiry = executor.submit(() -> {
+            while (running.get()) {
+                try {
+                    expired.addAndGet(expireLines());
+                } catch (ConcurrencyFailureException e) {
+                    rejected.incrementAndGet();
+                }
+                TimeUnit.MILLISECONDS.sleep(RESERVATION_TTL.toMillis() / 2);
+            }
+            return null;
+        });
+        final long start = System.nanoTime();
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures.add(
+                executor.submit(() -> {
+                    final ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        // Several threads per cart, so the mutations of a same cart race too
+                        final String login = logins.get(random.nextInt(logins.size()));
+                        final Operation operation = pickOperation(random);
+                        final long operationStart = System.nanoTime();
+                        try {
+                            apply(operation, login, random);
+                            counts.get(operation).incrementAndGet();
+                        } catch (
+                            InsufficientQuantityException
+                            | InvalidCartOperationException
+                            | ConcurrencyFailureException
+                            | NoSuchElementException e
+                        ) {
+                            rejected.incrementAndGet();
+                        }
+                        latencies[thread][i] = System.nanoTime() - operationStart;
+                    }
+                })
+            );
+        }
+        for (Future<?> future : futures) {
+            // Rethrows any unexpected failure of a thread
+            future.get(5, TimeUnit.MINUTES);
+        }
+        final long elapsed = System.nanoTime() - start;
+        running.set(false);
+        expiry.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+
+        final long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        log.info(
+            "Cart stress: {} operations in {} ms, {} ops/s, p99 {} ms, {} rejected, {} lines expired, {}",
+            all.length,
+            TimeUnit.NANOSECONDS.toMillis(elapsed),
+            all.length * 1_000_000_000L / Math.max(elapsed, 1),
+            TimeUnit.NANOSECONDS.toMicros(all[(int) Math.ceil(all.length * 0.99) - 1]) / 1000.0,
+            rejected.get(),
+            expired.get(),
+            counts
+        );
+
+        for (Long productId : productIds) {
+            final int stock = currentQuantity(productId);
+            final int held = sum("select coalesce(sum(quantity), 0) from product_cart where product_id = ?", productId);
+            final int sold = sum("select coalesce(sum(quantity), 0) from product_order where product_id = ?", productId);
+            assertThat(stock).as("stock of product %d", productId).isNotNegative();
+            assertThat(stock + held + sold).as("units of product %d", productId).isEqualTo(INITIAL_QUANTITY);
+        }
+    }
+
+    private static Operation pickOperation(ThreadLocalRandom random) {
+        final int draw = random.nextInt(100);
+        if (draw < 45) {
+            return Operation.ADD;
+        }
+        if (draw < 70) {
+            return Operation.UPDATE;
+        }
+        if (draw < 90) {
+            return Operation.REMOVE;
+        }
+        return Operation.CHECKOUT;
+    }
+
+    /**
+     * Apply an operation through the batch or the single line methods, at random.
+     */
+    private void apply(Operation operation, String login, ThreadLocalRandom random) {
+        final boolean batch = random.nextBoolean();
+        switch (operation) {
+            case ADD:
+                final Long productId = productIds.get(random.nextInt(productIds.size()));
+                final int quantity = 1 + random.nextInt(3);
+                if (batch) {
+                    cartService.applyLineOperations(login, List.of(CartLineOperationDTO.add(productId, quantity)));
+                } else {
+                    cartService.addLine(
+                        new ProductCart()
+                            .cart(new Cart().id(cartIdByLogin.get(login)))
+                            .product(new Product().id(productId))
+                            .quantity(quantity)
+                            .creationDatetime(Instant.now())
+                    );
+                }
+                break;
+            case UPDATE:
+                final int newQuantity = 1 + random.nextInt(5);
+                randomLine(login, random)
+                    .ifPresent(lineId -> {
+                        if (batch) {
+                            cartService.applyLineOperations(login, List.of(CartLineOperationDTO.update(lineId, newQuantity)));
+                        } else {
+                            cartService.updateLine(lineId, newQuantity);
+                        }
+                    });
+                break;
+            case REMOVE:
+                randomLine(login, random)
+                    .ifPresent(lineId -> {
+                        if (batch) {
+                            cartService.applyLineOperations(login, List.of(CartLineOperationDTO.remove(lineId)));
+                        } else {
+                            cartService.removeLine(lineId);
+                        }
+                    });
+                break;
+            case CHECKOUT:
+                checkout(login);
+                break;
+        }
+    }
+
+    private int expireLines() {
+        final Integer count = transactionTemplate.execute(status -> {
+            final List<Long> lineIds = em
+                .createQuery("select p.id from ProductCart p where p.cart.id in :ids", Long.class)
+                .setParameter("ids", cartIdByLogin.values())
+                .getResultList();
+            return reservationLedger.expire(lineIds);
+        });
+        return count != null ? count : 0;
+    }
+
+    private Optional<Long> randomLine(String login, ThreadLocalRandom random) {
+        final List<Long> lineIds = cartService
+            .findOneWithEagerRelationshipsByLogin(login)
+            .map(cart -> cart.getLines().stream().map(ProductCart::getId).collect(Collectors.toList()))
+            .orElse(List.of());
+        return lineIds.isEmpty() ? Optional.empty() : Optional.of(lineIds.get(random.nextInt(lineIds.size())));
+    }
+
+    /**
+     * Checkout as {@code POST /api/orders} does: the cart is read, then the order is created in another transaction.
+     */
+    private void checkout(String login) {
+        final Cart cart = cartService.findOneWithEagerRelationshipsByLogin(login).orElseThrow();
+        if (cart.getLines().isEmpty()) {
+            return;
+        }
+        final Order order = new Order();
+        order
+            .lines(cart.getLines().stream().map(line -> ProductOrder.fromProductCart(line).order(order)).collect(Collectors.toSet()))
+            .user(cart.getUser())
+            .paymentDate(Instant.now())
+            .receptionDate(Instant.now())
+            .totalPrice(order.getLines().stream().map(ProductOrder::getPrice).reduce(BigDecimal.ZERO, BigDecimal::add));
+        orderService.createOrder(order, cart);
+    }
+
+    private int currentQuantity(Long productId) {
+        // The stock of an engaged product is ahead of its row until the next flush
+        final Integer engineQuantity = inventoryEngine.availableQuantity(productId);
+        return engineQuantity != null ? engineQuantity : sum("select quantity from product where id = ?", productId);
+    }
+
+    private int sum(String sql, Long productId) {
+        final Integer value = jdbcTemplate.queryForObject(sql, Integer.class, productId);
+        return value != null ? value : 0;
+    }
+}
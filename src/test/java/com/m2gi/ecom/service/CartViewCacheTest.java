@@ -0,0 +1,81 @@
+package com.m2gi.ecom.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.m2gi.ecom.service.dto.CartDTO;
+import com.m2gi.ecom.service.impl.CartViewCache;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class CartViewCacheTest {
+
+    private static final String LOGIN = "cart-user";
+
+    private CartViewCache cartViewCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void setup() {
+        cartViewCache = new CartViewCache(new ConcurrentMapCacheManager(CartViewCache.CART_VIEWS_BY_LOGIN_CACHE));
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void testViewIsLoadedOnce() {
+        assertThat(cartViewCache.get(LOGIN, this::load)).isPresent();
+        assertThat(cartViewCache.get(LOGIN, this::load)).isPresent();
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testViewIsReloadedAfterEviction() {
+        cartViewCache.get(LOGIN, this::load);
+        cartViewCache.evictAfterCommit(LOGIN);
+        cartViewCache.get(LOGIN, this::load);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testViewLoadedDuringEvictionIsNotKept() {
+        cartViewCache.get(
+            LOGIN,
+            () -> {
+                cartViewCache.evict(LOGIN);
+                return load();
+            }
+        );
+        cartViewCache.get(LOGIN, this::load);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testEvictionWaitsForCommit() {
+        cartViewCache.get(LOGIN, this::load);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cartViewCache.evictAfterCommit(LOGIN);
+            cartViewCache.get(LOGIN, this::load);
+            assertThat(loads.get()).isEqualTo(1);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        cartViewCache.get(LOGIN, this::load);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private Optional<CartDTO> load() {
+        loads.incrementAndGet();
+        return Optional.of(new CartDTO(1L, Collections.emptyList()));
+    }
+}
@@ -0,0 +1,132 @@
+package com.m2gi.ecom.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.service.dto.CartLineOperationDTO;
+import com.m2gi.ecom.service.dto.GuestCartLineDTO;
+import com.m2gi.ecom.service.errors.FlashSaleAdmissionException;
+import com.m2gi.ecom.service.errors.InsufficientQuantityException;
+import com.m2gi.ecom.service.errors.InvalidCartOperationException;
+import com.m2gi.ecom.service.impl.GuestCartStore;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.CannotAcquireLockException;
+
+class GuestCartStoreTest {
+
+    private static final String LOGIN = "guest-cart-user";
+
+    private CartService cartService;
+    private GuestCartStore guestCartStore;
+    private String token;
+
+    @BeforeEach
+    public void setup() {
+        cartService = mock(CartService.class);
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.existsById(anyLong())).thenReturn(true);
+        when(productRepository.existsById(99L)).thenReturn(false);
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getGuestCart().setMaxLines(2);
+        guestCartStore =
+            new GuestCartStore(
+                new ConcurrentMapCacheManager(GuestCartStore.GUEST_CARTS_CACHE),
+                cartService,
+                productRepository,
+                applicationProperties
+            );
+        token = guestCartStore.newToken();
+    }
+
+    @Test
+    void testTokensAreValidAndDistinct() {
+        assertThat(guestCartStore.isValidToken(token)).isTrue();
+        assertThat(guestCartStore.newToken()).isNotEqualTo(token);
+        assertThat(guestCartStore.isValidToken("not-a-token")).isFalse();
+        assertThat(guestCartStore.isValidToken(null)).isFalse();
+    }
+
+    @Test
+    void testQuantitiesAreSetAndRemoved() {
+        guestCartStore.setQuantity(token, 1L, 2);
+        guestCartStore.setQuantity(token, 2L, 3);
+        guestCartStore.setQuantity(token, 1L, 5);
+        assertThat(guestCartStore.getLines(token))
+            .extracting(GuestCartLineDTO::getProductId, GuestCartLineDTO::getQuantity)
+            .containsExactly(tuple(1L, 5), tuple(2L, 3));
+
+        guestCartStore.setQuantity(token, 1L, 0);
+        assertThat(guestCartStore.getLines(token))
+            .extracting(GuestCartLineDTO::getProductId, GuestCartLineDTO::getQuantity)
+            .containsExactly(tuple(2L, 3));
+    }
+
+    @Test
+    void testInvalidLinesAreRejected() {
+        guestCartStore.setQuantity(token, 1L, 1);
+        guestCartStore.setQuantity(token, 2L, 1);
+
+        assertThatThrownBy(() -> guestCartStore.setQuantity(token, 3L, 1)).isInstanceOf(InvalidCartOperationException.class);
+        assertThatThrownBy(() -> guestCartStore.setQuantity(token, 99L, 1)).isInstanceOf(InvalidCartOperationException.class);
+        assertThatThrownBy(() -> guestCartStore.setQuantity(token, 1L, -1)).isInstanceOf(InvalidCartOperationException.class);
+        assertThatThrownBy(() -> guestCartStore.setQuantity("forged", 1L, 1)).isInstanceOf(InvalidCartOperationException.class);
+        assertThat(guestCartStore.getLines(token)).hasSize(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMergeAppliesOneBatchAndDropsTheCart() {
+        guestCartStore.setQuantity(token, 1L, 2);
+        guestCartStore.setQuantity(token, 2L, 3);
+
+        assertThat(guestCartStore.merge(token, LOGIN)).isTrue();
+
+        ArgumentCaptor<List<CartLineOperationDTO>> operations = ArgumentCaptor.forClass(List.class);
+        verify(cartService, times(1)).applyLineOperations(eq(LOGIN), operations.capture());
+        assertThat(operations.getValue())
+            .extracting(CartLineOperationDTO::getAction, CartLineOperationDTO::getProductId, CartLineOperationDTO::getQuantity)
+            .containsExactly(tuple(CartLineOperationDTO.Action.ADD, 1L, 2), tuple(CartLineOperationDTO.Action.ADD, 2L, 3));
+        assertThat(guestCartStore.getLines(token)).isEmpty();
+    }
+
+    @Test
+    void testRejectedMergeKeepsTheCart() {
+        guestCartStore.setQuantity(token, 1L, 2);
+        when(cartService.applyLineOperations(eq(LOGIN), anyList())).thenThrow(new InsufficientQuantityException());
+
+        assertThat(guestCartStore.merge(token, LOGIN)).isFalse();
+        assertThat(guestCartStore.getLines(token)).hasSize(1);
+    }
+
+    @Test
+    void testFailedMergeKeepsTheCart() {
+        guestCartStore.setQuantity(token, 1L, 2);
+        when(cartService.applyLineOperations(eq(LOGIN), anyList())).thenThrow(new FlashSaleAdmissionException("Not admitted"));
+
+        assertThat(guestCartStore.merge(token, LOGIN)).isFalse();
+        assertThat(guestCartStore.getLines(token)).hasSize(1);
+
+        doThrow(new CannotAcquireLockException("Lock conflict")).when(cartService).applyLineOperations(eq(LOGIN), anyList());
+
+        assertThat(guestCartStore.merge(token, LOGIN)).isFalse();
+        assertThat(guestCartStore.getLines(token)).hasSize(1);
+    }
+
+    @Test
+    void testMergeOfUnknownCartDoesNothing() {
+        assertThat(guestCartStore.merge(token, LOGIN)).isFalse();
+        verifyNoInteractions(cartService);
+    }
+}
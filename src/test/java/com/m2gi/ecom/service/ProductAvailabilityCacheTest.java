@@ -0,0 +1,81 @@
+package com.m2gi.ecom.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.domain.enumeration.Availability;
+import com.m2gi.ecom.service.dto.StockLevelDTO;
+import com.m2gi.ecom.service.impl.ProductAvailabilityCache;
+import com.m2gi.ecom.service.inventory.InventoryEngine;
+import com.m2gi.ecom.service.inventory.StockLevelsChangedEvent;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProductAvailabilityCacheTest {
+
+    private InventoryEngine inventoryEngine;
+    private ProductAvailabilityCache productAvailabilityCache;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getInventory().getAvailability().setLowQuantity(5);
+        inventoryEngine = mock(InventoryEngine.class);
+        productAvailabilityCache = new ProductAvailabilityCache(inventoryEngine, applicationProperties);
+    }
+
+    @Test
+    void testListingHidesTheQuantity() {
+        Product product = new Product().id(1L).name("product").quantity(3).version(7L);
+
+        List<Product> listing = productAvailabilityCache.toListing(List.of(product));
+
+        assertThat(listing).singleElement().satisfies(listed -> {
+            assertThat(listed.getName()).isEqualTo("product");
+            assertThat(listed.getAvailability()).isEqualTo(Availability.LOW);
+            assertThat(listed.getQuantity()).isNull();
+            assertThat(listed.getVersion()).isNull();
+        });
+        // The loaded entity is left untouched
+        assertThat(product.getQuantity()).isEqualTo(3);
+    }
+
+    @Test
+    void testStockLevelsChangeTheAvailability() {
+        assertThat(availability(new Product().id(1L).quantity(20))).isEqualTo(Availability.IN_STOCK);
+
+        changed(new StockLevelDTO(1L, 4));
+        assertThat(availability(new Product().id(1L).quantity(20))).isEqualTo(Availability.LOW);
+
+        changed(new StockLevelDTO(1L, 0));
+        assertThat(availability(new Product().id(1L).quantity(20))).isEqualTo(Availability.OUT);
+    }
+
+    @Test
+    void testEngineQuantityComesFirst() {
+        changed(new StockLevelDTO(1L, 20));
+        when(inventoryEngine.availableQuantity(1L)).thenReturn(2);
+
+        assertThat(availability(new Product().id(1L).quantity(20))).isEqualTo(Availability.LOW);
+    }
+
+    @Test
+    void testForgottenProductIsTakenFromItsQuantity() {
+        changed(new StockLevelDTO(1L, 0));
+        productAvailabilityCache.forget(1L);
+
+        assertThat(availability(new Product().id(1L).quantity(20))).isEqualTo(Availability.IN_STOCK);
+    }
+
+    private Availability availability(Product product) {
+        return productAvailabilityCache.toListing(List.of(product)).get(0).getAvailability();
+    }
+
+    private void changed(StockLevelDTO... levels) {
+        productAvailabilityCache.onStockLevelsChanged(new StockLevelsChangedEvent(List.of(levels)));
+    }
+}
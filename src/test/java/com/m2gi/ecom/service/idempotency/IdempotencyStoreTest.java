@@ -0,0 +1,83 @@
+package com.m2gi.ecom.service.idempotency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class IdempotencyStoreTest {
+
+    private ApplicationProperties applicationProperties;
+    private IdempotencyStore idempotencyStore;
+
+    @BeforeEach
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getIdempotency().setMaxEntries(2);
+        idempotencyStore = new IdempotencyStore(applicationProperties, mock(JdbcTemplate.class), mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void testCompletedKeyIsReplayed() {
+        assertThat(idempotencyStore.begin("user:key", "fingerprint").getStatus()).isEqualTo(IdempotencyStore.Status.STARTED);
+        assertThat(idempotencyStore.begin("user:key", "fingerprint").getStatus()).isEqualTo(IdempotencyStore.Status.IN_PROGRESS);
+
+        idempotencyStore.complete("user:key", response(201));
+
+        IdempotencyStore.Reservation reservation = idempotencyStore.begin("user:key", "fingerprint");
+        assertThat(reservation.getStatus()).isEqualTo(IdempotencyStore.Status.COMPLETED);
+        assertThat(reservation.getResponse().getStatus()).isEqualTo(201);
+        assertThat(idempotencyStore.begin("user:key", "other fingerprint").getStatus()).isEqualTo(IdempotencyStore.Status.MISMATCH);
+    }
+
+    @Test
+    void testAbortedKeyCanBeReserved() {
+        idempotencyStore.begin("user:key", "fingerprint");
+        idempotencyStore.abort("user:key");
+
+        assertThat(idempotencyStore.begin("user:key", "other fingerprint").getStatus()).isEqualTo(IdempotencyStore.Status.STARTED);
+    }
+
+    @Test
+    void testOldestCompletedKeysAreEvicted() {
+        idempotencyStore.begin("user:first", "fingerprint");
+        idempotencyStore.begin("user:second", "fingerprint");
+        idempotencyStore.complete("user:second", response(201));
+        idempotencyStore.begin("user:third", "fingerprint");
+
+        assertThat(idempotencyStore.size()).isEqualTo(2);
+        assertThat(idempotencyStore.begin("user:first", "fingerprint").getStatus()).isEqualTo(IdempotencyStore.Status.IN_PROGRESS);
+        assertThat(idempotencyStore.begin("user:second", "fingerprint").getStatus()).isEqualTo(IdempotencyStore.Status.UNAVAILABLE);
+    }
+
+    @Test
+    void testKeysInProgressAreNeverEvicted() {
+        idempotencyStore.begin("user:first", "fingerprint");
+        idempotencyStore.begin("user:second", "fingerprint");
+
+        assertThat(idempotencyStore.begin("user:third", "fingerprint").getStatus()).isEqualTo(IdempotencyStore.Status.UNAVAILABLE);
+        assertThat(idempotencyStore.begin("user:first", "fingerprint").getStatus()).isEqualTo(IdempotencyStore.Status.IN_PROGRESS);
+
+        idempotencyStore.abort("user:first");
+        assertThat(idempotencyStore.begin("user:third", "fingerprint").getStatus()).isEqualTo(IdempotencyStore.Status.STARTED);
+    }
+
+    @Test
+    void testExpiredKeysAreEvicted() {
+        applicationProperties.getIdempotency().setTtl(Duration.ZERO.minusSeconds(1));
+        idempotencyStore.begin("user:key", "fingerprint");
+        idempotencyStore.complete("user:key", response(201));
+
+        assertThat(idempotencyStore.begin("user:key", "fingerprint").getStatus()).isEqualTo(IdempotencyStore.Status.STARTED);
+    }
+
+    private static IdempotencyStore.StoredResponse response(int status) {
+        return new IdempotencyStore.StoredResponse(status, "application/json", null, "{}".getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,150 @@
+package com.m2gi.ecom.service.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.service.dto.FlashSaleTicketDTO;
+import com.m2gi.ecom.service.dto.StockLevelDTO;
+import com.m2gi.ecom.service.errors.FlashSaleAdmissionException;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FlashSaleQueueTest {
+
+    private static final Long PRODUCT_ID = 1L;
+
+    private StockLevelPublisher stockLevelPublisher;
+    private ApplicationProperties applicationProperties;
+    private FlashSaleQueue flashSaleQueue;
+
+    @BeforeEach
+    public void setup() {
+        stockLevelPublisher = mock(StockLevelPublisher.class);
+        givenStock(10);
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getInventory().getFlashSale().setMaxAdmitted(2);
+        flashSaleQueue = new FlashSaleQueue(stockLevelPublisher, applicationProperties);
+        flashSaleQueue.open(PRODUCT_ID);
+    }
+
+    @Test
+    void testShoppersAreAdmittedInOrder() {
+        FlashSaleTicketDTO first = join("first");
+        FlashSaleTicketDTO second = join("second");
+        FlashSaleTicketDTO third = join("third");
+        assertThat(List.of(first.getPosition(), second.getPosition(), third.getPosition())).containsExactly(1L, 2L, 3L);
+        assertThat(join("second").getId()).isEqualTo(second.getId());
+
+        flashSaleQueue.admit();
+
+        assertThat(status(first, "first").getStatus()).isEqualTo(FlashSaleTicketDTO.Status.ADMITTED);
+        assertThat(status(second, "second").getStatus()).isEqualTo(FlashSaleTicketDTO.Status.ADMITTED);
+        assertThat(status(third, "third").getStatus()).isEqualTo(FlashSaleTicketDTO.Status.WAITING);
+        assertThat(status(third, "third").getPosition()).isEqualTo(1L);
+        assertThat(flashSaleQueue.status(third.getId(), "first")).isEmpty();
+    }
+
+    @Test
+    void testAdmissionsAreBoundedByTheStock() {
+        givenStock(1);
+        FlashSaleTicketDTO first = join("first");
+        FlashSaleTicketDTO second = join("second");
+
+        flashSaleQueue.admit();
+
+        assertThat(status(first, "first").getStatus()).isEqualTo(FlashSaleTicketDTO.Status.ADMITTED);
+        assertThat(status(second, "second").getStatus()).isEqualTo(FlashSaleTicketDTO.Status.WAITING);
+    }
+
+    @Test
+    void testOnlyAdmittedShoppersCanWrite() {
+        FlashSaleTicketDTO first = join("first");
+        join("second");
+        FlashSaleTicketDTO third = join("third");
+
+        assertThatThrownBy(() -> flashSaleQueue.consume(PRODUCT_ID, "first")).isInstanceOf(FlashSaleAdmissionException.class);
+        flashSaleQueue.admit();
+        flashSaleQueue.consume(PRODUCT_ID, "first");
+
+        assertThat(status(first, "first").getStatus()).isEqualTo(FlashSaleTicketDTO.Status.USED);
+        assertThatThrownBy(() -> flashSaleQueue.consume(PRODUCT_ID, "first")).isInstanceOf(FlashSaleAdmissionException.class);
+        // The used token gives its slot to the next shopper
+        flashSaleQueue.admit();
+        assertThat(status(third, "third").getStatus()).isEqualTo(FlashSaleTicketDTO.Status.ADMITTED);
+    }
+
+    @Test
+    void testUnusedTokensExpire() throws InterruptedException {
+        applicationProperties.getInventory().getFlashSale().setTokenTtl(Duration.ZERO);
+        FlashSaleTicketDTO first = join("first");
+        flashSaleQueue.admit();
+
+        Thread.sleep(10);
+        flashSaleQueue.admit();
+
+        assertThat(status(first, "first").getStatus()).isEqualTo(FlashSaleTicketDTO.Status.EXPIRED);
+        assertThatThrownBy(() -> flashSaleQueue.consume(PRODUCT_ID, "first")).isInstanceOf(FlashSaleAdmissionException.class);
+    }
+
+    @Test
+    void testAbandonedTicketsAreDropped() {
+        applicationProperties.getInventory().getFlashSale().setAbandonTimeout(Duration.ofSeconds(-1));
+        FlashSaleTicketDTO first = join("first");
+
+        flashSaleQueue.admit();
+
+        assertThat(flashSaleQueue.status(first.getId(), "first")).isEmpty();
+    }
+
+    @Test
+    void testAbandonedTicketsAreDroppedWhileTheStockIsOut() {
+        applicationProperties.getInventory().getFlashSale().setMaxWaiting(2);
+        givenStock(0);
+        FlashSaleTicketDTO first = join("first");
+        join("second");
+
+        applicationProperties.getInventory().getFlashSale().setAbandonTimeout(Duration.ofSeconds(-1));
+        flashSaleQueue.admit();
+
+        assertThat(flashSaleQueue.status(first.getId(), "first")).isEmpty();
+        // Their places in the waiting room are given back
+        applicationProperties.getInventory().getFlashSale().setAbandonTimeout(Duration.ofMinutes(1));
+        FlashSaleTicketDTO third = join("third");
+        assertThat(join("fourth").getStatus()).isEqualTo(FlashSaleTicketDTO.Status.WAITING);
+        assertThat(third.getPosition()).isEqualTo(1L);
+    }
+
+    @Test
+    void testProductsNotOnFlashSaleNeedNoTicket() {
+        flashSaleQueue.close(PRODUCT_ID);
+
+        assertThat(flashSaleQueue.join(PRODUCT_ID, "first")).isEmpty();
+        flashSaleQueue.consume(PRODUCT_ID, "first");
+    }
+
+    @Test
+    void testFullWaitingRoomRejectsShoppers() {
+        applicationProperties.getInventory().getFlashSale().setMaxWaiting(1);
+        join("first");
+
+        assertThatThrownBy(() -> flashSaleQueue.join(PRODUCT_ID, "second")).isInstanceOf(FlashSaleAdmissionException.class);
+    }
+
+    private void givenStock(int quantity) {
+        when(stockLevelPublisher.findLevels(any())).thenReturn(List.of(new StockLevelDTO(PRODUCT_ID, quantity)));
+    }
+
+    private FlashSaleTicketDTO join(String login) {
+        return flashSaleQueue.join(PRODUCT_ID, login).orElseThrow();
+    }
+
+    private FlashSaleTicketDTO status(FlashSaleTicketDTO ticket, String login) {
+        return flashSaleQueue.status(ticket.getId(), login).orElseThrow();
+    }
+}
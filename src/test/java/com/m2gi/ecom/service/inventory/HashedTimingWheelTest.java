@@ -0,0 +1,73 @@
+package com.m2gi.ecom.service.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HashedTimingWheelTest {
+
+    private static final Duration TICK = Duration.ofSeconds(1);
+
+    private static final Instant START = Instant.parse("2021-12-01T10:00:00Z");
+
+    private HashedTimingWheel<Long> wheel;
+
+    @BeforeEach
+    public void setup() {
+        wheel = new HashedTimingWheel<>(TICK, 8, START);
+    }
+
+    @Test
+    void testKeysExpireAtTheirTick() {
+        wheel.schedule(1L, START.plusSeconds(2));
+        wheel.schedule(2L, START.plusMillis(2500));
+
+        assertThat(wheel.advance(START.plusSeconds(1))).isEmpty();
+        assertThat(wheel.advance(START.plusSeconds(2))).containsExactly(1L);
+        assertThat(wheel.advance(START.plusSeconds(3))).containsExactly(2L);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void testKeysBeyondOneRevolutionWaitForTheirOwnTick() {
+        wheel.schedule(1L, START.plusSeconds(10));
+
+        assertThat(wheel.advance(START.plusSeconds(2))).isEmpty();
+        assertThat(wheel.advance(START.plusSeconds(9))).isEmpty();
+        assertThat(wheel.advance(START.plusSeconds(10))).containsExactly(1L);
+    }
+
+    @Test
+    void testLongPauseExpiresEverythingDue() {
+        wheel.schedule(1L, START.plusSeconds(3));
+        wheel.schedule(2L, START.plusSeconds(30));
+        wheel.schedule(3L, START.plusSeconds(100));
+
+        assertThat(wheel.advance(START.plusSeconds(50))).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    void testPastDeadlineExpiresAtNextTick() {
+        wheel.advance(START.plusSeconds(5));
+        wheel.schedule(1L, START);
+
+        assertThat(wheel.advance(START.plusSeconds(5))).isEmpty();
+        assertThat(wheel.advance(START.plusSeconds(6))).containsExactly(1L);
+    }
+
+    @Test
+    void testCancelAndReschedule() {
+        wheel.schedule(1L, START.plusSeconds(2));
+        wheel.schedule(2L, START.plusSeconds(2));
+        assertThat(wheel.cancel(1L)).isTrue();
+        assertThat(wheel.cancel(1L)).isFalse();
+        wheel.schedule(2L, START.plusSeconds(4));
+
+        assertThat(wheel.advance(START.plusSeconds(3))).isEmpty();
+        assertThat(wheel.advance(START.plusSeconds(4))).containsExactly(2L);
+    }
+}
@@ -0,0 +1,154 @@
+package com.m2gi.ecom.service.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.repository.ProductStockBatchRepository;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class InventoryEngineTest {
+
+    private static final Long HOT_PRODUCT_ID = 1L;
+    private static final Long COLD_PRODUCT_ID = 2L;
+
+    private ProductRepository productRepository;
+    private ProductStockBatchRepository productStockBatchRepository;
+    private ApplicationProperties applicationProperties;
+    private InventoryEngine inventoryEngine;
+
+    @BeforeEach
+    public void setup() {
+        productRepository = mock(ProductRepository.class);
+        productStockBatchRepository = mock(ProductStockBatchRepository.class);
+        when(productRepository.findStockLevels(any())).thenReturn(List.of(stockLevel(HOT_PRODUCT_ID, 3)));
+
+        applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Inventory.Engine properties = applicationProperties.getInventory().getEngine();
+        properties.setEnabled(true);
+        properties.setHotProducts(Collections.singleton(HOT_PRODUCT_ID));
+        properties.setFlushInterval(Duration.ofHours(1));
+
+        inventoryEngine = new InventoryEngine(
+            productRepository,
+            productStockBatchRepository,
+            mock(PlatformTransactionManager.class),
+            applicationProperties
+        );
+    }
+
+    @AfterEach
+    public void tearDown() {
+        inventoryEngine.stop();
+    }
+
+    @Test
+    void testTakeOnEngagedProductIsAppliedInMemory() throws InterruptedException {
+        startAndWaitForEngagement();
+
+        assertThat(inventoryEngine.take(HOT_PRODUCT_ID, 2)).isTrue();
+        assertThat(inventoryEngine.take(HOT_PRODUCT_ID, 2)).isFalse();
+        inventoryEngine.giveBack(HOT_PRODUCT_ID, 1);
+        assertThat(inventoryEngine.take(HOT_PRODUCT_ID, 2)).isTrue();
+
+        verify(productRepository, never()).decrementQuantity(anyLong(), anyInt());
+        verify(productRepository, never()).incrementQuantity(anyLong(), anyInt());
+    }
+
+    @Test
+    void testPendingDeltasAreFlushedAsOneUpdateOnStop() throws InterruptedException {
+        startAndWaitForEngagement();
+
+        inventoryEngine.take(HOT_PRODUCT_ID, 1);
+        inventoryEngine.take(HOT_PRODUCT_ID, 1);
+        inventoryEngine.giveBack(HOT_PRODUCT_ID, 1);
+        inventoryEngine.take(HOT_PRODUCT_ID, 2);
+        inventoryEngine.stop();
+
+        verify(productRepository, times(1)).incrementQuantity(HOT_PRODUCT_ID, -3);
+        verify(productRepository, times(1)).incrementQuantity(anyLong(), anyInt());
+    }
+
+    @Test
+    void testTakeOnColdProductUsesConditionalUpdate() throws InterruptedException {
+        startAndWaitForEngagement();
+        when(productRepository.decrementQuantity(COLD_PRODUCT_ID, 5)).thenReturn(0);
+        when(productRepository.decrementQuantity(COLD_PRODUCT_ID, 1)).thenReturn(1);
+
+        assertThat(inventoryEngine.take(COLD_PRODUCT_ID, 5)).isFalse();
+        assertThat(inventoryEngine.take(COLD_PRODUCT_ID, 1)).isTrue();
+        assertThat(inventoryEngine.isEngaged(COLD_PRODUCT_ID)).isFalse();
+    }
+
+    @Test
+    void testDisabledEngineUsesConditionalUpdate() {
+        applicationProperties.getInventory().getEngine().setEnabled(false);
+        inventoryEngine.start();
+        when(productRepository.decrementQuantity(eq(HOT_PRODUCT_ID), anyInt())).thenReturn(1);
+
+        assertThat(inventoryEngine.isRunning()).isFalse();
+        assertThat(inventoryEngine.take(HOT_PRODUCT_ID, 1)).isTrue();
+        verify(productRepository).decrementQuantity(HOT_PRODUCT_ID, 1);
+    }
+
+    @Test
+    void testGiveBackAllGroupsTheColdProducts() throws InterruptedException {
+        startAndWaitForEngagement();
+        when(productStockBatchRepository.incrementQuantities(Map.of(COLD_PRODUCT_ID, 3))).thenReturn(1);
+
+        assertThat(inventoryEngine.giveBackAll(Map.of(HOT_PRODUCT_ID, 2, COLD_PRODUCT_ID, 3))).isEqualTo(2);
+        inventoryEngine.stop();
+
+        verify(productStockBatchRepository).incrementQuantities(Map.of(COLD_PRODUCT_ID, 3));
+        verify(productRepository).incrementQuantity(HOT_PRODUCT_ID, 2);
+    }
+
+    @Test
+    void testProductStaysEngagedUntilItsDeltasArePersisted() throws InterruptedException {
+        startAndWaitForEngagement();
+        inventoryEngine.take(HOT_PRODUCT_ID, 1);
+        when(productRepository.incrementQuantity(HOT_PRODUCT_ID, -1)).thenThrow(new IllegalStateException("Database down"));
+
+        inventoryEngine.disengage(HOT_PRODUCT_ID);
+        assertThat(inventoryEngine.take(HOT_PRODUCT_ID, 1)).isTrue();
+
+        assertThat(inventoryEngine.isEngaged(HOT_PRODUCT_ID)).isTrue();
+        verify(productRepository, never()).decrementQuantity(anyLong(), anyInt());
+
+        inventoryEngine.stop();
+        verify(productRepository).incrementQuantity(HOT_PRODUCT_ID, -2);
+    }
+
+    private void startAndWaitForEngagement() throws InterruptedException {
+        inventoryEngine.start();
+        for (int i = 0; i < 100 && !inventoryEngine.isEngaged(HOT_PRODUCT_ID); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(inventoryEngine.isEngaged(HOT_PRODUCT_ID)).isTrue();
+    }
+
+    private static ProductRepository.StockLevel stockLevel(Long id, int quantity) {
+        return new ProductRepository.StockLevel() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getQuantity() {
+                return quantity;
+            }
+        };
+    }
+}
@@ -0,0 +1,132 @@
+package com.m2gi.ecom.service.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.m2gi.ecom.IntegrationTest;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.service.dto.StockDiscrepancyDTO;
+import java.math.BigDecimal;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for {@link InventoryMovementLedger}, whose movements are only appended on commit.
+ */
+@IntegrationTest
+class InventoryMovementLedgerIT {
+
+    @Autowired
+    private InventoryMovementLedger inventoryMovementLedger;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Product product;
+
+    @BeforeEach
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        product = productRepository.saveAndFlush(new Product().name("AAAAAAAAAA").quantity(5).version(0L).price(BigDecimal.ONE));
+        jdbcTemplate.update(
+            "insert into inventory_snapshot (product_id, quantity, last_modified_date) values (?, 5, current_timestamp)",
+            product.getId()
+        );
+    }
+
+    @AfterEach
+    public void cleanup() {
+        jdbcTemplate.update("delete from inventory_movement where product_id = ?", product.getId());
+        jdbcTemplate.update("delete from inventory_snapshot where product_id = ?", product.getId());
+        productRepository.deleteById(product.getId());
+    }
+
+    @Test
+    void testMovementsAreAppendedOnCommit() {
+        transactionTemplate.executeWithoutResult(status -> {
+            inventoryMovementLedger.record(product.getId(), -2, InventoryMovementLedger.Reason.CART);
+            inventoryMovementLedger.recordAll(Map.of(product.getId(), 4), InventoryMovementLedger.Reason.RECEIPT);
+            assertThat(countMovements()).isZero();
+        });
+
+        assertThat(countMovements()).isEqualTo(2);
+        assertThat(inventoryMovementLedger.findQuantity(product.getId())).isEqualTo(7);
+    }
+
+    @Test
+    void testMovementsAreDiscardedOnRollback() {
+        assertThatThrownBy(() ->
+                transactionTemplate.executeWithoutResult(status -> {
+                    inventoryMovementLedger.record(product.getId(), -2, InventoryMovementLedger.Reason.CART);
+                    throw new IllegalStateException("rollback");
+                })
+            )
+            .isInstanceOf(IllegalStateException.class);
+
+        assertThat(countMovements()).isZero();
+        assertThat(inventoryMovementLedger.findQuantity(product.getId())).isEqualTo(5);
+    }
+
+    @Test
+    void testCompactionFoldsTheTailIntoTheSnapshot() {
+        transactionTemplate.executeWithoutResult(status -> {
+            inventoryMovementLedger.record(product.getId(), -2, InventoryMovementLedger.Reason.CART);
+            inventoryMovementLedger.record(product.getId(), -1, InventoryMovementLedger.Reason.CART);
+        });
+
+        inventoryMovementLedger.compact();
+
+        assertThat(
+            jdbcTemplate.queryForObject("select quantity from inventory_snapshot where product_id = ?", Integer.class, product.getId())
+        )
+            .isEqualTo(2);
+        assertThat(
+            jdbcTemplate.queryForObject(
+                "select count(*) from inventory_movement where product_id = ? and compacted = false",
+                Integer.class,
+                product.getId()
+            )
+        )
+            .isZero();
+        assertThat(inventoryMovementLedger.findQuantity(product.getId())).isEqualTo(2);
+    }
+
+    @Test
+    void testDiscrepancies() {
+        transactionTemplate.executeWithoutResult(status ->
+            inventoryMovementLedger.record(product.getId(), -2, InventoryMovementLedger.Reason.CART)
+        );
+
+        assertThat(inventoryMovementLedger.findDiscrepancies())
+            .filteredOn(discrepancy -> discrepancy.getProductId().equals(product.getId()))
+            .singleElement()
+            .satisfies(discrepancy -> {
+                assertThat(discrepancy.getQuantity()).isEqualTo(5);
+                assertThat(discrepancy.getLedgerQuantity()).isEqualTo(3);
+            });
+
+        transactionTemplate.executeWithoutResult(status -> productRepository.decrementQuantity(product.getId(), 2));
+        assertThat(inventoryMovementLedger.findDiscrepancies())
+            .extracting(StockDiscrepancyDTO::getProductId)
+            .doesNotContain(product.getId());
+    }
+
+    private int countMovements() {
+        return jdbcTemplate.queryForObject("select count(*) from inventory_movement where product_id = ?", Integer.class, product.getId());
+    }
+}
@@ -0,0 +1,113 @@
+package com.m2gi.ecom.service.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.domain.User;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.repository.UserRepository;
+import com.m2gi.ecom.security.AuthoritiesConstants;
+import com.m2gi.ecom.service.dto.LowStockDTO;
+import com.m2gi.ecom.service.dto.StockLevelDTO;
+import com.m2gi.ecom.service.impl.MailService;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class LowStockWatcherTest {
+
+    private ProductRepository productRepository;
+    private MailService mailService;
+    private User admin;
+    private LowStockWatcher lowStockWatcher;
+
+    @BeforeEach
+    public void setup() {
+        productRepository = mock(ProductRepository.class);
+        mailService = mock(MailService.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        admin = new User();
+        admin.setLogin("admin");
+        when(userRepository.findAllByActivatedIsTrueAndAuthoritiesName(AuthoritiesConstants.ADMIN)).thenReturn(List.of(admin));
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getInventory().getLowStock().setDefaultThreshold(2);
+        lowStockWatcher =
+            new LowStockWatcher(
+                productRepository,
+                userRepository,
+                mailService,
+                mock(PlatformTransactionManager.class),
+                applicationProperties
+            );
+    }
+
+    @Test
+    void testLevelsCrossingTheThresholdMoveTheProducts() {
+        lowStockWatcher.thresholdChangedAfterCommit(2L, 10, null);
+
+        changed(new StockLevelDTO(1L, 5), new StockLevelDTO(2L, 8), new StockLevelDTO(3L, 1));
+        assertThat(lowStockWatcher.getAtRisk()).containsExactly(new LowStockDTO(3L, 1, 2), new LowStockDTO(2L, 8, 10));
+
+        changed(new StockLevelDTO(1L, 0), new StockLevelDTO(3L, 4));
+        assertThat(lowStockWatcher.getAtRisk()).containsExactly(new LowStockDTO(1L, 0, 2), new LowStockDTO(2L, 8, 10));
+    }
+
+    @Test
+    void testThresholdChangeChecksTheStock() {
+        changed(new StockLevelDTO(1L, 5));
+        assertThat(lowStockWatcher.getAtRisk()).isEmpty();
+
+        lowStockWatcher.thresholdChangedAfterCommit(1L, 5, 5);
+        assertThat(lowStockWatcher.getAtRisk()).containsExactly(new LowStockDTO(1L, 5, 5));
+
+        lowStockWatcher.forget(1L);
+        assertThat(lowStockWatcher.getAtRisk()).isEmpty();
+    }
+
+    @Test
+    void testDigestListsTheProductsNewlyAtRiskOnce() {
+        changed(new StockLevelDTO(1L, 1), new StockLevelDTO(2L, 0), new StockLevelDTO(3L, 1));
+        changed(new StockLevelDTO(3L, 6));
+
+        lowStockWatcher.sendDigest();
+        verify(mailService).sendLowStockDigest(admin, List.of(new LowStockDTO(2L, 0, 2), new LowStockDTO(1L, 1, 2)));
+
+        changed(new StockLevelDTO(1L, 0));
+        lowStockWatcher.sendDigest();
+        verify(mailService, times(1)).sendLowStockDigest(any(), anyList());
+    }
+
+    @Test
+    void testRebuildDoesNotReportTheProductsAlreadyAtRisk() {
+        when(productRepository.findAllAtRisk(2)).thenReturn(List.of(stockLevel(1L, 0)));
+
+        lowStockWatcher.rebuild();
+        lowStockWatcher.sendDigest();
+
+        assertThat(lowStockWatcher.getAtRisk()).containsExactly(new LowStockDTO(1L, 0, 2));
+        verifyNoInteractions(mailService);
+    }
+
+    private void changed(StockLevelDTO... levels) {
+        lowStockWatcher.onStockLevelsChanged(new StockLevelsChangedEvent(List.of(levels)));
+    }
+
+    private static ProductRepository.StockLevel stockLevel(Long id, int quantity) {
+        return new ProductRepository.StockLevel() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getQuantity() {
+                return quantity;
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package com.m2gi.ecom.service.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.m2gi.ecom.IntegrationTest;
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.domain.ProductCart;
+import com.m2gi.ecom.repository.ProductCartRepository;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.service.impl.ProductCartServiceImpl;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for {@link ReservationLedger}.
+ */
+@IntegrationTest
+@Transactional
+class ReservationLedgerIT {
+
+    @Autowired
+    private ReservationLedger reservationLedger;
+
+    @Autowired
+    private ProductCartServiceImpl productCartService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCartRepository productCartRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private EntityManager em;
+
+    private Product product;
+
+    private ProductCart expiredLine;
+
+    private ProductCart recentLine;
+
+    @BeforeEach
+    public void init() {
+        product = productRepository.saveAndFlush(new Product().name("AAAAAAAAAA").quantity(5).version(0L).price(BigDecimal.ONE));
+        expiredLine = createLine(2, Instant.now().minus(4, ChronoUnit.DAYS));
+        recentLine = createLine(1, Instant.now().minus(1, ChronoUnit.HOURS));
+    }
+
+    @Test
+    void assertThatExpiredLinesGiveTheirStockBack() {
+        int expired = reservationLedger.expire(List.of(expiredLine.getId(), recentLine.getId()));
+
+        assertThat(expired).isEqualTo(1);
+        assertThat(getProductQuantity()).isEqualTo(7);
+        assertThat(productCartRepository.findById(expiredLine.getId())).isEmpty();
+        assertThat(productCartRepository.findById(recentLine.getId())).isPresent();
+    }
+
+    @Test
+    void assertThatNightlySweepGivesStockBack() {
+        productCartService.removeNotBoughtProducts();
+
+        assertThat(getProductQuantity()).isEqualTo(7);
+        assertThat(productCartRepository.findById(expiredLine.getId())).isEmpty();
+        assertThat(productCartRepository.findById(recentLine.getId())).isPresent();
+    }
+
+    @Test
+    void assertThatNightlySweepWalksThroughChunks() {
+        ProductCart otherExpiredLine = createLine(3, Instant.now().minus(5, ChronoUnit.DAYS));
+        ApplicationProperties.Inventory.Reservation properties = applicationProperties.getInventory().getReservation();
+        int expiryBatchSize = properties.getExpiryBatchSize();
+        properties.setExpiryBatchSize(1);
+        try {
+            productCartService.removeNotBoughtProducts();
+        } finally {
+            properties.setExpiryBatchSize(expiryBatchSize);
+        }
+
+        assertThat(getProductQuantity()).isEqualTo(10);
+        assertThat(productCartRepository.findById(expiredLine.getId())).isEmpty();
+        assertThat(productCartRepository.findById(otherExpiredLine.getId())).isEmpty();
+        assertThat(productCartRepository.findById(recentLine.getId())).isPresent();
+    }
+
+    @Test
+    void assertThatHoldsAreTracked() {
+        int sizeBefore = reservationLedger.size();
+        reservationLedger.hold(recentLine);
+        assertThat(reservationLedger.size()).isEqualTo(sizeBefore + 1);
+
+        reservationLedger.release(recentLine.getId());
+        assertThat(reservationLedger.size()).isEqualTo(sizeBefore);
+    }
+
+    private ProductCart createLine(int quantity, Instant creationDatetime) {
+        return productCartRepository.saveAndFlush(
+            new ProductCart().product(product).quantity(quantity).creationDatetime(creationDatetime)
+        );
+    }
+
+    /**
+     * Read the product quantity from the database, after the bulk updates which bypass the persistence context.
+     */
+    private int getProductQuantity() {
+        em.flush();
+        em.clear();
+        return productRepository.findById(product.getId()).orElseThrow().getQuantity();
+    }
+}
@@ -0,0 +1,102 @@
+package com.m2gi.ecom.service.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.service.errors.VersionConflictException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class StockConflictRetryPolicyTest {
+
+    private static final Long PRODUCT_ID = 21L;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ApplicationProperties applicationProperties;
+    private StockConflictRetryPolicy retryPolicy;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Inventory.Retry properties = applicationProperties.getInventory().getRetry();
+        properties.setMaxAttempts(3);
+        properties.setInitialBackoff(Duration.ofMillis(1));
+        properties.setMaxBackoff(Duration.ofMillis(2));
+        properties.setMetricBuckets(16);
+        retryPolicy = new StockConflictRetryPolicy(mock(PlatformTransactionManager.class), meterRegistry, applicationProperties);
+    }
+
+    @Test
+    void testConflictingActionIsRetried() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = retryPolicy.execute(
+            PRODUCT_ID,
+            () -> {
+                if (calls.incrementAndGet() < 3) {
+                    throw conflict();
+                }
+                return "done";
+            }
+        );
+
+        assertThat(result).isEqualTo("done");
+        assertThat(calls.get()).isEqualTo(3);
+        assertThat(count("stock.conflict.attempts")).isEqualTo(3);
+        assertThat(count("stock.conflict.conflicts")).isEqualTo(2);
+        assertThat(meterRegistry.find("stock.conflict.give-ups").counter()).isNull();
+    }
+
+    @Test
+    void testGivesUpAfterMaxAttempts() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() ->
+                retryPolicy.execute(
+                    PRODUCT_ID,
+                    () -> {
+                        calls.incrementAndGet();
+                        throw conflict();
+                    }
+                )
+            )
+            .isInstanceOf(VersionConflictException.class);
+        assertThat(calls.get()).isEqualTo(3);
+        assertThat(count("stock.conflict.give-ups")).isEqualTo(1);
+        assertThat(meterRegistry.get("stock.conflict.duration").tag("bucket", "5").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testFailFastDoesNotRetry() {
+        applicationProperties.getInventory().getRetry().setFailFast(true);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() ->
+                retryPolicy.execute(
+                    PRODUCT_ID,
+                    () -> {
+                        calls.incrementAndGet();
+                        throw conflict();
+                    }
+                )
+            )
+            .isInstanceOf(VersionConflictException.class);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).tag("bucket", String.valueOf(PRODUCT_ID % 16)).counter().count();
+    }
+
+    private static ObjectOptimisticLockingFailureException conflict() {
+        return new ObjectOptimisticLockingFailureException("Product", PRODUCT_ID);
+    }
+}
@@ -0,0 +1,106 @@
+package com.m2gi.ecom.service.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.service.dto.StockLevelDTO;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class StockLevelPublisherTest {
+
+    private ProductRepository productRepository;
+    private InventoryEngine inventoryEngine;
+    private ApplicationEventPublisher eventPublisher;
+    private StockLevelPublisher stockLevelPublisher;
+
+    private Map<Long, Integer> quantities;
+
+    @BeforeEach
+    public void setup() {
+        productRepository = mock(ProductRepository.class);
+        inventoryEngine = mock(InventoryEngine.class);
+        when(inventoryEngine.availableQuantity(any())).thenReturn(null);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        quantities = Map.of(1L, 5, 2L, 7);
+        when(productRepository.findStockLevels(any()))
+            .thenAnswer(invocation ->
+                invocation
+                    .<Collection<Long>>getArgument(0)
+                    .stream()
+                    .map(id -> stockLevel(id, quantities.get(id)))
+                    .collect(Collectors.toList())
+            );
+
+        stockLevelPublisher =
+            new StockLevelPublisher(productRepository, inventoryEngine, eventPublisher, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void testChangesAreCoalescedPerProduct() {
+        stockLevelPublisher.changedAfterCommit(1L);
+        stockLevelPublisher.changedAfterCommit(1L);
+        stockLevelPublisher.changedAfterCommit(List.of(1L, 2L));
+
+        stockLevelPublisher.publish();
+
+        assertThat(publishedLevels()).containsExactlyInAnyOrder(new StockLevelDTO(1L, 5), new StockLevelDTO(2L, 7));
+        verify(productRepository, times(1)).findStockLevels(any());
+    }
+
+    @Test
+    void testUnchangedLevelsAreNotPublishedAgain() {
+        stockLevelPublisher.changedAfterCommit(1L);
+        stockLevelPublisher.publish();
+        stockLevelPublisher.changedAfterCommit(1L);
+        stockLevelPublisher.publish();
+
+        verify(eventPublisher, times(1)).publishEvent(any(StockLevelsChangedEvent.class));
+    }
+
+    @Test
+    void testEngagedProductsArePublishedFromTheEngine() {
+        when(inventoryEngine.availableQuantity(1L)).thenReturn(3);
+
+        stockLevelPublisher.changedAfterCommit(1L);
+        stockLevelPublisher.publish();
+
+        assertThat(publishedLevels()).containsExactly(new StockLevelDTO(1L, 3));
+    }
+
+    @Test
+    void testNothingIsPublishedWithoutChange() {
+        stockLevelPublisher.publish();
+
+        verifyNoInteractions(productRepository, eventPublisher);
+    }
+
+    private List<StockLevelDTO> publishedLevels() {
+        ArgumentCaptor<StockLevelsChangedEvent> event = ArgumentCaptor.forClass(StockLevelsChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        return event.getValue().getLevels();
+    }
+
+    private static ProductRepository.StockLevel stockLevel(Long id, int quantity) {
+        return new ProductRepository.StockLevel() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getQuantity() {
+                return quantity;
+            }
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package com.m2gi.ecom.service.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class LevenshteinAutomatonTest {
+
+    @Test
+    void testAcceptsTheWordsWithinTheDistance() {
+        LevenshteinAutomaton automaton = new LevenshteinAutomaton("chocolat", 1);
+
+        assertThat(distance(automaton, "chocolat")).isZero();
+        assertThat(distance(automaton, "chocolta")).isEqualTo(1);
+        assertThat(distance(automaton, "chocolats")).isEqualTo(1);
+        assertThat(distance(automaton, "chocola")).isEqualTo(1);
+        assertThat(distance(automaton, "chocalat")).isEqualTo(1);
+        assertThat(isMatch(automaton, "chacalat")).isFalse();
+    }
+
+    @Test
+    void testAcceptsTwoEdits() {
+        LevenshteinAutomaton automaton = new LevenshteinAutomaton("confiture", 2);
+
+        assertThat(distance(automaton, "confitrue")).isEqualTo(1);
+        assertThat(distance(automaton, "konfitur")).isEqualTo(2);
+        assertThat(isMatch(automaton, "kanfitur")).isFalse();
+    }
+
+    @Test
+    void testRejectsThePrefixesTooFarFromTheTerm() {
+        LevenshteinAutomaton automaton = new LevenshteinAutomaton("chocolat", 1);
+
+        assertThat(automaton.canMatch(read(automaton, "cho"))).isTrue();
+        assertThat(automaton.canMatch(read(automaton, "chx"))).isTrue();
+        assertThat(automaton.canMatch(read(automaton, "cxx"))).isFalse();
+    }
+
+    private static LevenshteinAutomaton.State read(LevenshteinAutomaton automaton, String word) {
+        LevenshteinAutomaton.State state = automaton.start();
+        for (char c : word.toCharArray()) {
+            state = automaton.step(state, c);
+        }
+        return state;
+    }
+
+    private static boolean isMatch(LevenshteinAutomaton automaton, String word) {
+        return automaton.isMatch(read(automaton, word));
+    }
+
+    private static int distance(LevenshteinAutomaton automaton, String word) {
+        LevenshteinAutomaton.State state = read(automaton, word);
+        assertThat(automaton.isMatch(state)).isTrue();
+        return automaton.distance(state);
+    }
+}
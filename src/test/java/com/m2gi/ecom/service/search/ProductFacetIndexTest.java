@@ -0,0 +1,134 @@
+package com.m2gi.ecom.service.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.m2gi.ecom.domain.Category;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.domain.Tag;
+import com.m2gi.ecom.domain.enumeration.WeightUnit;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.service.dto.FacetCountDTO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class ProductFacetIndexTest {
+
+    private ProductRepository productRepository;
+    private ProductFacetIndex productFacetIndex;
+    private List<Product> products;
+
+    @BeforeEach
+    public void setup() {
+        productRepository = mock(ProductRepository.class);
+        products = new ArrayList<>();
+        when(productRepository.findAllWithEagerRelationships(any(Sort.class))).thenAnswer(invocation -> new ArrayList<>(products));
+        productFacetIndex = new ProductFacetIndex(productRepository, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void testCountsOnlyTheProductsFound() {
+        products.add(new Product().id(1L).brand("Lindt").origin("Suisse").weightUnit(WeightUnit.G));
+        products.add(new Product().id(2L).brand("Lindt").origin("France").weightUnit(WeightUnit.G));
+        products.add(new Product().id(3L).brand("Bonne Maman").origin("France").weightUnit(WeightUnit.KG));
+        productFacetIndex.rebuild();
+
+        Map<String, List<FacetCountDTO>> counts = productFacetIndex.count(List.of(1L, 2L));
+
+        assertThat(counts.get(ProductFacetIndex.BRAND)).containsExactly(new FacetCountDTO("Lindt", "Lindt", 2));
+        assertThat(counts.get(ProductFacetIndex.ORIGIN))
+            .containsExactly(new FacetCountDTO("France", "France", 1), new FacetCountDTO("Suisse", "Suisse", 1));
+        assertThat(counts.get(ProductFacetIndex.WEIGHT_UNIT)).containsExactly(new FacetCountDTO("G", "G", 2));
+    }
+
+    @Test
+    void testMostFrequentValuesComeFirst() {
+        products.add(new Product().id(1L).tags(Set.of(new Tag().name("Bio"))));
+        products.add(new Product().id(2L).tags(Set.of(new Tag().name("Bio"), new Tag().name("Vegan"))));
+        products.add(new Product().id(3L).tags(Set.of(new Tag().name("Bio"))));
+        productFacetIndex.rebuild();
+
+        assertThat(productFacetIndex.count(List.of(1L, 2L, 3L)).get(ProductFacetIndex.TAG))
+            .containsExactly(new FacetCountDTO("Bio", "Bio", 3), new FacetCountDTO("Vegan", "Vegan", 1));
+    }
+
+    @Test
+    void testCategoriesAreCountedByIdWithTheirAncestors() {
+        Category sweets = new Category().id(10L).name("Épicerie sucrée");
+        Category chocolates = new Category().id(11L).name("Chocolats");
+        products.add(new Product().id(1L).relatedCategories(Set.of(sweets, chocolates)));
+        products.add(new Product().id(2L).relatedCategories(Set.of(sweets)));
+        productFacetIndex.rebuild();
+
+        assertThat(productFacetIndex.count(List.of(1L, 2L)).get(ProductFacetIndex.CATEGORY))
+            .containsExactly(new FacetCountDTO("10", "Épicerie sucrée", 2), new FacetCountDTO("11", "Chocolats", 1));
+    }
+
+    @Test
+    void testCountsBeyondTheFirstWord() {
+        for (long id = 1; id <= 200; id++) {
+            products.add(new Product().id(id).brand(id % 2 == 0 ? "Even" : "Odd"));
+        }
+        productFacetIndex.rebuild();
+
+        List<Long> found = new ArrayList<>();
+        for (long id = 100; id <= 200; id++) {
+            found.add(id);
+        }
+
+        assertThat(productFacetIndex.count(found).get(ProductFacetIndex.BRAND))
+            .containsExactly(new FacetCountDTO("Even", "Even", 51), new FacetCountDTO("Odd", "Odd", 50));
+    }
+
+    @Test
+    void testChangedAndRemovedProductsAreRecounted() {
+        products.add(new Product().id(1L).brand("Lindt"));
+        products.add(new Product().id(2L).brand("Milka"));
+        productFacetIndex.rebuild();
+
+        when(productRepository.findAllWithEagerRelationshipsByIdIn(anyCollection(), any(Sort.class)))
+            .thenReturn(new ArrayList<>(List.of(new Product().id(1L).brand("Côte d'Or"))));
+        productFacetIndex.indexAfterCommit(1L);
+        productFacetIndex.removeAfterCommit(2L);
+
+        assertThat(productFacetIndex.count(List.of(1L, 2L)).get(ProductFacetIndex.BRAND))
+            .containsExactly(new FacetCountDTO("Côte d'Or", "Côte d'Or", 1));
+    }
+
+    @Test
+    void testProductsChangedDuringARebuildAreReplayed() {
+        products.add(new Product().id(1L).brand("Lindt"));
+        products.add(new Product().id(2L).brand("Milka"));
+        when(productRepository.findAllWithEagerRelationshipsByIdIn(anyCollection(), any(Sort.class)))
+            .thenReturn(new ArrayList<>(List.of(new Product().id(1L).brand("Côte d'Or"))));
+        // The products change once loaded by the rebuild, before it replaces the bitsets
+        when(productRepository.findAllWithEagerRelationships(any(Sort.class)))
+            .thenAnswer(invocation -> {
+                List<Product> loaded = new ArrayList<>(products);
+                productFacetIndex.indexAfterCommit(1L);
+                productFacetIndex.removeAfterCommit(2L);
+                return loaded;
+            });
+        productFacetIndex.rebuild();
+
+        assertThat(productFacetIndex.count(List.of(1L, 2L)).get(ProductFacetIndex.BRAND))
+            .containsExactly(new FacetCountDTO("Côte d'Or", "Côte d'Or", 1));
+    }
+
+    @Test
+    void testUnknownProductsAreIgnored() {
+        products.add(new Product().id(1L).brand("Lindt"));
+        productFacetIndex.rebuild();
+
+        assertThat(productFacetIndex.count(List.of(42L)).get(ProductFacetIndex.BRAND)).isEmpty();
+    }
+}
@@ -0,0 +1,185 @@
+package com.m2gi.ecom.service.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.domain.Category;
+import com.m2gi.ecom.domain.Product;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class ProductResultCacheTest {
+
+    private static final List<Long> MANY_IDS = List.of(10L, 11L, 12L, 13L, 14L);
+
+    private ApplicationProperties applicationProperties;
+    private ProductResultCache productResultCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        productResultCache = new ProductResultCache(applicationProperties);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void testQueriesAreNormalized() {
+        search("Chocolat noir", MANY_IDS);
+        List<Long> ids = search("  chocolat   NOIR ", MANY_IDS);
+
+        assertThat(ids).isEqualTo(MANY_IDS);
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testSortsAreCachedApart() {
+        listing(null, Sort.by("name"), List.of(1L, 2L));
+        listing(null, Sort.by(Sort.Direction.DESC, "name"), List.of(2L, 1L));
+        listing(null, Sort.by("name"), List.of(1L, 2L));
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testProductChangeEvictsOnlyTheResultsItMayChange() {
+        search("chocolat", MANY_IDS);
+        search("miel", MANY_IDS);
+        listing(1L, Sort.by("name"), List.of(10L));
+        listing(2L, Sort.by("name"), List.of(11L));
+        listing(null, Sort.by("name"), MANY_IDS);
+        loads.set(0);
+
+        productResultCache.evictAfterCommit(
+            new Product().id(20L).name("Chocolat au lait").relatedCategories(Set.of(new Category().id(1L).name("Épicerie")))
+        );
+
+        search("chocolat", MANY_IDS);
+        search("miel", MANY_IDS);
+        listing(1L, Sort.by("name"), List.of(10L, 20L));
+        listing(2L, Sort.by("name"), List.of(11L));
+        listing(null, Sort.by("name"), MANY_IDS);
+        // The search for chocolat, the listing of its category and the catalog listing
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    void testProductChangeEvictsTheSearchesWithTypos() {
+        search("chocolta", MANY_IDS);
+
+        productResultCache.evictAfterCommit(new Product().id(20L).name("Chocolat"));
+
+        search("chocolta", MANY_IDS);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testProductChangeEvictsTheSearchesWithFewResults() {
+        search("tablette", List.of());
+
+        productResultCache.evictAfterCommit(new Product().id(20L).name("Confiture"));
+
+        search("tablette", List.of());
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testProductRemovalEvictsTheResultsHoldingIt() {
+        search("chocolat", MANY_IDS);
+        search("miel", List.of(20L));
+
+        productResultCache.evictRemovedAfterCommit(20L);
+
+        search("chocolat", MANY_IDS);
+        search("miel", List.of());
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    void testCategoryChangesKeepTheCatalogListing() {
+        listing(1L, Sort.by("name"), List.of(10L));
+        listing(null, Sort.by("name"), MANY_IDS);
+        search("miel", MANY_IDS);
+
+        productResultCache.evictCategoriesAfterCommit();
+        productResultCache.evictSearchesAfterCommit();
+
+        listing(1L, Sort.by("name"), List.of(10L));
+        listing(null, Sort.by("name"), MANY_IDS);
+        search("miel", MANY_IDS);
+        assertThat(loads.get()).isEqualTo(5);
+    }
+
+    @Test
+    void testOnlyMorePopularQueriesReplaceTheLeastRecentlyUsed() {
+        applicationProperties.getSearch().getResultCache().setMaxEntries(2);
+        productResultCache = new ProductResultCache(applicationProperties);
+        search("a", MANY_IDS);
+        search("a", MANY_IDS);
+        search("b", MANY_IDS);
+        search("b", MANY_IDS);
+
+        // Asked less often than the least recently used query
+        search("c", MANY_IDS);
+        search("c", MANY_IDS);
+        assertThat(loads.get()).isEqualTo(4);
+        search("a", MANY_IDS);
+        search("b", MANY_IDS);
+        assertThat(loads.get()).isEqualTo(4);
+
+        // Asked more often, it takes the place of the least recently used query
+        search("c", MANY_IDS);
+        search("c", MANY_IDS);
+        search("c", MANY_IDS);
+        assertThat(loads.get()).isEqualTo(6);
+        search("a", MANY_IDS);
+        assertThat(loads.get()).isEqualTo(7);
+    }
+
+    @Test
+    void testResultLoadedDuringEvictionIsNotKept() {
+        productResultCache.get(
+            "miel",
+            null,
+            Sort.unsorted(),
+            () -> {
+                productResultCache.evictSearchesAfterCommit();
+                return load(MANY_IDS);
+            }
+        );
+        search("miel", MANY_IDS);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testResultsLoadedInReadWriteTransactionsAreNotCached() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            search("miel", MANY_IDS);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        search("miel", MANY_IDS);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private List<Long> search(String query, List<Long> ids) {
+        return productResultCache.get(query, null, Sort.unsorted(), () -> load(ids));
+    }
+
+    private List<Long> listing(Long categoryId, Sort sort, List<Long> ids) {
+        return productResultCache.get(null, categoryId, sort, () -> load(ids));
+    }
+
+    private List<Long> load(List<Long> ids) {
+        loads.incrementAndGet();
+        return ids;
+    }
+}
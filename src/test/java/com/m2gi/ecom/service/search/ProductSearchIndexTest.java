@@ -0,0 +1,212 @@
+package com.m2gi.ecom.service.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.m2gi.ecom.config.ApplicationProperties;
+import com.m2gi.ecom.domain.Category;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.domain.Tag;
+import com.m2gi.ecom.repository.ProductRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class ProductSearchIndexTest {
+
+    private ProductRepository productRepository;
+    private ProductSearchIndex productSearchIndex;
+    private List<Product> products;
+
+    @BeforeEach
+    public void setup() {
+        productRepository = mock(ProductRepository.class);
+        products = new ArrayList<>();
+        when(productRepository.findAllWithEagerRelationships(any(Sort.class))).thenAnswer(invocation -> new ArrayList<>(products));
+        productSearchIndex = new ProductSearchIndex(productRepository, mock(PlatformTransactionManager.class), new ApplicationProperties());
+    }
+
+    @Test
+    void testOtherStrategiesDoNotBuildTheIndex() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSearch().setStrategy(ApplicationProperties.Search.Strategy.POSTGRESQL);
+        productSearchIndex = new ProductSearchIndex(productRepository, mock(PlatformTransactionManager.class), applicationProperties);
+        products.add(new Product().id(1L).name("Chocolat"));
+
+        productSearchIndex.rebuild();
+
+        assertThat(productSearchIndex.isReady()).isFalse();
+    }
+
+    @Test
+    void testIsNotReadyBeforeBeingBuilt() {
+        assertThat(productSearchIndex.isReady()).isFalse();
+        productSearchIndex.rebuild();
+        assertThat(productSearchIndex.isReady()).isTrue();
+    }
+
+    @Test
+    void testSearchIgnoresCaseAndAccents() {
+        products.add(new Product().id(1L).name("Crème brûlée"));
+        products.add(new Product().id(2L).name("Pain d'épices"));
+        productSearchIndex.rebuild();
+
+        assertThat(productSearchIndex.search("CREME BRULEE", ProductSearchIndex.Operator.AND)).containsExactly(1L);
+        assertThat(productSearchIndex.search("épices", ProductSearchIndex.Operator.AND)).containsExactly(2L);
+        assertThat(productSearchIndex.search("epices", ProductSearchIndex.Operator.AND)).containsExactly(2L);
+    }
+
+    @Test
+    void testLastTermMatchesTheTermsItStarts() {
+        products.add(new Product().id(1L).name("Chocolat noir"));
+        products.add(new Product().id(2L).name("Confiture de fraises"));
+        products.add(new Product().id(3L).name("Choco"));
+        productSearchIndex.rebuild();
+
+        // The exact match ranks first
+        assertThat(productSearchIndex.search("choco", ProductSearchIndex.Operator.AND)).containsExactly(3L, 1L);
+        assertThat(productSearchIndex.search("confi", ProductSearchIndex.Operator.AND)).containsExactly(2L);
+        assertThat(productSearchIndex.search("fraises confi", ProductSearchIndex.Operator.AND)).containsExactly(2L);
+        assertThat(productSearchIndex.searchFuzzy("fraises confi", ProductSearchIndex.Operator.AND)).containsExactly(2L);
+        // Only the last term, which may still be typed
+        assertThat(productSearchIndex.search("confi fraises", ProductSearchIndex.Operator.AND)).isEmpty();
+        // Shorter terms start too many others
+        assertThat(productSearchIndex.search("ch", ProductSearchIndex.Operator.AND)).isEmpty();
+    }
+
+    @Test
+    void testAndRequiresEveryTermWhileOrRequiresOne() {
+        products.add(new Product().id(1L).name("Chocolat noir"));
+        products.add(new Product().id(2L).name("Chocolat au lait"));
+        products.add(new Product().id(3L).name("Café noir"));
+        productSearchIndex.rebuild();
+
+        assertThat(productSearchIndex.search("chocolat noir", ProductSearchIndex.Operator.AND)).containsExactly(1L);
+        assertThat(productSearchIndex.search("chocolat noir", ProductSearchIndex.Operator.OR)).containsExactlyInAnyOrder(1L, 2L, 3L);
+        // Stop words are not searched
+        assertThat(productSearchIndex.search("le chocolat", ProductSearchIndex.Operator.AND)).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void testNameMatchesRankAboveDescriptionMatches() {
+        products.add(new Product().id(1L).name("Biscuits").description("Biscuits au miel"));
+        products.add(new Product().id(2L).name("Miel de montagne").description("Pot de 500 g"));
+        products.add(new Product().id(3L).name("Confiture").brand("Miel & Co"));
+        productSearchIndex.rebuild();
+
+        assertThat(productSearchIndex.search("miel", ProductSearchIndex.Operator.AND)).containsExactly(2L, 3L, 1L);
+    }
+
+    @Test
+    void testTagsAndCategoriesAreSearched() {
+        products.add(
+            new Product()
+                .id(1L)
+                .name("Comté")
+                .tags(Set.of(new Tag().name("Bio")))
+                .relatedCategories(Set.of(new Category().name("Fromages")))
+        );
+        productSearchIndex.rebuild();
+
+        assertThat(productSearchIndex.search("bio", ProductSearchIndex.Operator.AND)).containsExactly(1L);
+        assertThat(productSearchIndex.search("fromages", ProductSearchIndex.Operator.AND)).containsExactly(1L);
+    }
+
+    @Test
+    void testChangedAndRemovedProductsAreReindexed() {
+        products.add(new Product().id(1L).name("Thé vert"));
+        products.add(new Product().id(2L).name("Thé noir"));
+        productSearchIndex.rebuild();
+
+        when(productRepository.findAllWithEagerRelationshipsByIdIn(anyCollection(), any(Sort.class)))
+            .thenReturn(new ArrayList<>(List.of(new Product().id(1L).name("Infusion verveine"))));
+        productSearchIndex.indexAfterCommit(1L);
+        productSearchIndex.removeAfterCommit(2L);
+
+        assertThat(productSearchIndex.search("the", ProductSearchIndex.Operator.OR)).isEmpty();
+        assertThat(productSearchIndex.search("verveine", ProductSearchIndex.Operator.AND)).containsExactly(1L);
+
+        // The ordinal of the removed product is reused
+        when(productRepository.findAllWithEagerRelationshipsByIdIn(anyCollection(), any(Sort.class)))
+            .thenReturn(new ArrayList<>(List.of(new Product().id(3L).name("Thé blanc"))));
+        productSearchIndex.indexAfterCommit(3L);
+        assertThat(productSearchIndex.search("the", ProductSearchIndex.Operator.AND)).containsExactly(3L);
+    }
+
+    @Test
+    void testFuzzySearchToleratesTypos() {
+        products.add(new Product().id(1L).name("Chocolat noir"));
+        products.add(new Product().id(2L).name("Confiture de fraises"));
+        productSearchIndex.rebuild();
+
+        assertThat(productSearchIndex.search("chocolta", ProductSearchIndex.Operator.AND)).isEmpty();
+        assertThat(productSearchIndex.searchFuzzy("chocolta", ProductSearchIndex.Operator.AND)).containsExactly(1L);
+        assertThat(productSearchIndex.searchFuzzy("confitrue frasies", ProductSearchIndex.Operator.AND)).containsExactly(2L);
+    }
+
+    @Test
+    void testFuzzySearchRanksExactMatchesFirst() {
+        products.add(new Product().id(1L).name("Pâtes fraîches"));
+        products.add(new Product().id(2L).name("Pâté de campagne"));
+        productSearchIndex.rebuild();
+
+        assertThat(productSearchIndex.searchFuzzy("pates", ProductSearchIndex.Operator.AND)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void testFuzzySearchKeepsShortTermsExact() {
+        products.add(new Product().id(1L).name("Riz basmati"));
+        productSearchIndex.rebuild();
+
+        assertThat(productSearchIndex.searchFuzzy("ris", ProductSearchIndex.Operator.AND)).isEmpty();
+    }
+
+    @Test
+    void testFuzzySearchFollowsTheChangedProducts() {
+        products.add(new Product().id(1L).name("Moutarde"));
+        productSearchIndex.rebuild();
+
+        productSearchIndex.removeAfterCommit(1L);
+
+        assertThat(productSearchIndex.searchFuzzy("moutrade", ProductSearchIndex.Operator.OR)).isEmpty();
+    }
+
+    @Test
+    void testRebuildAfterCommitMarksTheIndexStale() {
+        productSearchIndex.rebuild();
+        products.add(new Product().id(1L).name("Moutarde"));
+
+        productSearchIndex.rebuildAfterCommit();
+        assertThat(productSearchIndex.search("moutarde", ProductSearchIndex.Operator.AND)).isEmpty();
+
+        productSearchIndex.rebuildIfStale();
+        assertThat(productSearchIndex.search("moutarde", ProductSearchIndex.Operator.AND)).containsExactly(1L);
+    }
+
+    @Test
+    void testProductsChangedDuringARebuildAreReplayed() {
+        products.add(new Product().id(1L).name("Moutarde"));
+        products.add(new Product().id(2L).name("Ketchup"));
+        when(productRepository.findAllWithEagerRelationshipsByIdIn(anyCollection(), any(Sort.class)))
+            .thenReturn(new ArrayList<>(List.of(new Product().id(1L).name("Mayonnaise"))));
+        // The products change once loaded by the rebuild, before it replaces the index
+        when(productRepository.findAllWithEagerRelationships(any(Sort.class)))
+            .thenAnswer(invocation -> {
+                List<Product> loaded = new ArrayList<>(products);
+                productSearchIndex.indexAfterCommit(1L);
+                productSearchIndex.removeAfterCommit(2L);
+                return loaded;
+            });
+        productSearchIndex.rebuild();
+
+        assertThat(productSearchIndex.search("mayonnaise", ProductSearchIndex.Operator.AND)).containsExactly(1L);
+        assertThat(productSearchIndex.search("moutarde ketchup", ProductSearchIndex.Operator.OR)).isEmpty();
+    }
+}
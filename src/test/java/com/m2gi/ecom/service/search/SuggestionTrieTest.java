@@ -0,0 +1,61 @@
+package com.m2gi.ecom.service.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.m2gi.ecom.service.dto.SuggestionDTO;
+import org.junit.jupiter.api.Test;
+
+class SuggestionTrieTest {
+
+    private static SuggestionDTO product(long id, String name) {
+        return new SuggestionDTO(SuggestionDTO.Type.PRODUCT, id, name);
+    }
+
+    @Test
+    void testSuggestsThePrefixesOfEveryWord() {
+        SuggestionTrie trie = new SuggestionTrie.Builder(10).add(product(1L, "Chocolat noir"), 1).build();
+
+        assertThat(trie.suggest("choc", 10)).containsExactly(product(1L, "Chocolat noir"));
+        assertThat(trie.suggest("noi", 10)).containsExactly(product(1L, "Chocolat noir"));
+        assertThat(trie.suggest("chocolat n", 10)).containsExactly(product(1L, "Chocolat noir"));
+        assertThat(trie.suggest("hoc", 10)).isEmpty();
+        assertThat(trie.suggest("chocolats", 10)).isEmpty();
+    }
+
+    @Test
+    void testIgnoresCaseAccentsAndSeparators() {
+        SuggestionTrie trie = new SuggestionTrie.Builder(10).add(product(1L, "Crème brûlée"), 1).build();
+
+        assertThat(trie.suggest("CREME", 10)).hasSize(1);
+        assertThat(trie.suggest("crème  brû", 10)).hasSize(1);
+        assertThat(trie.suggest("creme-bru", 10)).hasSize(1);
+        assertThat(trie.suggest("  ", 10)).isEmpty();
+    }
+
+    @Test
+    void testMostPopularComeFirstAndAreLimited() {
+        SuggestionTrie trie = new SuggestionTrie.Builder(2)
+            .add(product(1L, "Café moulu"), 3)
+            .add(product(2L, "Café en grains"), 10)
+            .add(new SuggestionDTO(SuggestionDTO.Type.CATEGORY, 3L, "Cafés"), 13)
+            .add(product(4L, "Caramel"), 1)
+            .build();
+
+        assertThat(trie.suggest("caf", 10))
+            .containsExactly(new SuggestionDTO(SuggestionDTO.Type.CATEGORY, 3L, "Cafés"), product(2L, "Café en grains"));
+        assertThat(trie.suggest("ca", 1)).containsExactly(new SuggestionDTO(SuggestionDTO.Type.CATEGORY, 3L, "Cafés"));
+        assertThat(trie.suggest("car", 10)).containsExactly(product(4L, "Caramel"));
+    }
+
+    @Test
+    void testSuggestsOnceASuggestionWithRepeatedWords() {
+        SuggestionTrie trie = new SuggestionTrie.Builder(10).add(product(1L, "Pain de pain"), 1).build();
+
+        assertThat(trie.suggest("pai", 10)).containsExactly(product(1L, "Pain de pain"));
+    }
+
+    @Test
+    void testEmptyTrieSuggestsNothing() {
+        assertThat(SuggestionTrie.EMPTY.suggest("a", 10)).isEmpty();
+    }
+}
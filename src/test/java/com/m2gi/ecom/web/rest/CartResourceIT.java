@@ -1,15 +1,29 @@
 package com.m2gi.ecom.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasItem;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.m2gi.ecom.IntegrationTest;
 import com.m2gi.ecom.domain.Cart;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.domain.ProductCart;
+import com.m2gi.ecom.domain.User;
+import com.m2gi.ecom.domain.UserDetails;
+import com.m2gi.ecom.domain.enumeration.Role;
 import com.m2gi.ecom.repository.CartRepository;
+import com.m2gi.ecom.repository.ProductCartRepository;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.service.dto.CartLineOperationDTO;
+import com.m2gi.ecom.service.dto.FlashSaleTicketDTO;
+import com.m2gi.ecom.service.inventory.FlashSaleQueue;
+import com.m2gi.ecom.web.filter.IdempotencyFilter;
+import java.time.Instant;
 import java.util.List;
 import java.util.Random;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
@@ -32,12 +46,27 @@ class CartResourceIT {
     private static final String ENTITY_API_URL = "/api/carts";
     private static final String ENTITY_API_URL_ID = ENTITY_API_URL + "/{id}";
 
+    private static final String CART_LINE_API_URL_ID = "/api/cart/products/{id}";
+    private static final String CART_LINES_BATCH_API_URL = "/api/cart/lines:batch";
+    private static final String FLASH_SALE_TICKETS_API_URL = "/api/flash-sales/{productId}/tickets";
+
+    private static final String CART_USER_LOGIN = "cart-user";
+
     private static Random random = new Random();
     private static AtomicLong count = new AtomicLong(random.nextInt() + (2 * Integer.MAX_VALUE));
 
     @Autowired
     private CartRepository cartRepository;
 
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCartRepository productCartRepository;
+
+    @Autowired
+    private FlashSaleQueue flashSaleQueue;
+
     @Autowired
     private EntityManager em;
 
@@ -349,4 +378,340 @@ class CartResourceIT {
         List<Cart> cartList = cartRepository.findAll();
         assertThat(cartList).hasSize(databaseSizeBeforeDelete - 1);
     }
+
+    /**
+     * Create the cart of the {@link #CART_USER_LOGIN} user, which is the authenticated user of the cart line tests.
+     */
+    private Cart createCartForCurrentUser() {
+        User user = UserResourceIT.createEntity(em);
+        user.setLogin(CART_USER_LOGIN);
+        em.persist(user);
+        Cart userCart = createEntity(em);
+        em.persist(userCart);
+        UserDetails details = new UserDetails().role(Role.CLIENT).user(user).cart(userCart);
+        em.persist(details);
+        user.setDetails(details);
+        em.flush();
+        return userCart;
+    }
+
+    private ProductCart createLine(Cart userCart, Product product, int quantity) {
+        ProductCart line = new ProductCart().cart(userCart).product(product).quantity(quantity).creationDatetime(Instant.now());
+        return productCartRepository.saveAndFlush(line);
+    }
+
+    private int getProductQuantity(Long productId) {
+        em.flush();
+        em.clear();
+        return productRepository.findById(productId).orElseThrow().getQuantity();
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void getCartForCurrentUser() throws Exception {
+        Cart userCart = createCartForCurrentUser();
+        Product product = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(10));
+        ProductCart line = createLine(userCart, product, 2);
+        em.clear();
+
+        restCartMockMvc
+            .perform(get("/api/cart"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(userCart.getId().intValue()))
+            .andExpect(jsonPath("$.lines[0].id").value(line.getId().intValue()))
+            .andExpect(jsonPath("$.lines[0].quantity").value(2))
+            .andExpect(jsonPath("$.lines[0].product.id").value(product.getId().intValue()))
+            .andExpect(jsonPath("$.lines[0].product.name").value(product.getName()));
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void addProductToCart() throws Exception {
+        createCartForCurrentUser();
+        Product product = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(10));
+
+        restCartMockMvc.perform(post(CART_LINE_API_URL_ID, product.getId())).andExpect(status().isCreated());
+
+        assertThat(getProductQuantity(product.getId())).isEqualTo(9);
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void addSameProductToCartTwice() throws Exception {
+        Cart userCart = createCartForCurrentUser();
+        Product product = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(10));
+        int databaseSizeBeforeCreate = productCartRepository.findAll().size();
+
+        restCartMockMvc.perform(post(CART_LINE_API_URL_ID, product.getId())).andExpect(status().isCreated());
+        restCartMockMvc
+            .perform(post(CART_LINE_API_URL_ID, product.getId()))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.quantity").value(2));
+
+        assertThat(getProductQuantity(product.getId())).isEqualTo(8);
+        List<ProductCart> productCartList = productCartRepository.findAll();
+        assertThat(productCartList).hasSize(databaseSizeBeforeCreate + 1);
+        assertThat(cartRepository.findById(userCart.getId()).orElseThrow().getLines())
+            .singleElement()
+            .satisfies(line -> assertThat(line.getQuantity()).isEqualTo(2));
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void addProductToCartWithInsufficientQuantity() throws Exception {
+        createCartForCurrentUser();
+        Product product = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(0));
+        int databaseSizeBeforeCreate = productCartRepository.findAll().size();
+
+        restCartMockMvc.perform(post(CART_LINE_API_URL_ID, product.getId())).andExpect(status().isBadRequest());
+
+        assertThat(getProductQuantity(product.getId())).isZero();
+        assertThat(productCartRepository.findAll()).hasSize(databaseSizeBeforeCreate);
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void updateCartLineQuantity() throws Exception {
+        Cart userCart = createCartForCurrentUser();
+        Product product = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(9));
+        ProductCart line = createLine(userCart, product, 1);
+
+        restCartMockMvc.perform(patch(CART_LINE_API_URL_ID, line.getId()).param("quantity", "3")).andExpect(status().isCreated());
+        assertThat(getProductQuantity(product.getId())).isEqualTo(7);
+
+        restCartMockMvc.perform(patch(CART_LINE_API_URL_ID, line.getId()).param("quantity", "2")).andExpect(status().isCreated());
+        assertThat(getProductQuantity(product.getId())).isEqualTo(8);
+        assertThat(productCartRepository.findById(line.getId()).orElseThrow().getQuantity()).isEqualTo(2);
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void updateCartLineQuantityWithInsufficientQuantity() throws Exception {
+        Cart userCart = createCartForCurrentUser();
+        Product product = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(1));
+        ProductCart line = createLine(userCart, product, 1);
+
+        restCartMockMvc.perform(patch(CART_LINE_API_URL_ID, line.getId()).param("quantity", "3")).andExpect(status().isBadRequest());
+
+        assertThat(getProductQuantity(product.getId())).isEqualTo(1);
+        assertThat(productCartRepository.findById(line.getId()).orElseThrow().getQuantity()).isEqualTo(1);
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void removeCartLine() throws Exception {
+        Cart userCart = createCartForCurrentUser();
+        Product product = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(5));
+        ProductCart line = createLine(userCart, product, 4);
+
+        restCartMockMvc.perform(delete(CART_LINE_API_URL_ID, line.getId())).andExpect(status().isNoContent());
+
+        assertThat(getProductQuantity(product.getId())).isEqualTo(9);
+        assertThat(productCartRepository.findById(line.getId())).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void applyCartLineOperations() throws Exception {
+        Cart userCart = createCartForCurrentUser();
+        Product first = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(10));
+        Product second = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(10));
+        ProductCart updatedLine = createLine(userCart, first, 2);
+        ProductCart removedLine = createLine(userCart, second, 3);
+        em.clear();
+
+        List<CartLineOperationDTO> operations = List.of(
+            CartLineOperationDTO.update(updatedLine.getId(), 5),
+            CartLineOperationDTO.remove(removedLine.getId()),
+            CartLineOperationDTO.add(second.getId(), 4)
+        );
+        restCartMockMvc
+            .perform(
+                post(CART_LINES_BATCH_API_URL)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(operations))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(userCart.getId().intValue()))
+            .andExpect(jsonPath("$.lines.length()").value(2))
+            .andExpect(jsonPath("$.lines[*].quantity").value(containsInAnyOrder(4, 5)));
+
+        assertThat(getProductQuantity(first.getId())).isEqualTo(7);
+        assertThat(getProductQuantity(second.getId())).isEqualTo(9);
+        assertThat(productCartRepository.findById(updatedLine.getId()).orElseThrow().getQuantity()).isEqualTo(5);
+        assertThat(productCartRepository.findById(removedLine.getId())).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void applyCartLineOperationsMergesAddedProducts() throws Exception {
+        Cart userCart = createCartForCurrentUser();
+        Product first = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(10));
+        Product second = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(10));
+        ProductCart line = createLine(userCart, first, 2);
+        em.clear();
+
+        List<CartLineOperationDTO> operations = List.of(
+            CartLineOperationDTO.add(first.getId(), 1),
+            CartLineOperationDTO.add(second.getId(), 2),
+            CartLineOperationDTO.add(second.getId(), 3)
+        );
+        restCartMockMvc
+            .perform(
+                post(CART_LINES_BATCH_API_URL)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(operations))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.lines.length()").value(2))
+            .andExpect(jsonPath("$.lines[*].quantity").value(containsInAnyOrder(3, 5)));
+
+        assertThat(getProductQuantity(first.getId())).isEqualTo(9);
+        assertThat(getProductQuantity(second.getId())).isEqualTo(5);
+        assertThat(productCartRepository.findById(line.getId()).orElseThrow().getQuantity()).isEqualTo(3);
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void applyCartLineOperationsWithInsufficientQuantity() throws Exception {
+        Cart userCart = createCartForCurrentUser();
+        Product scarce = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(1));
+        Product plenty = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(10));
+        ProductCart line = createLine(userCart, plenty, 2);
+        em.clear();
+        int databaseSizeBeforeBatch = productCartRepository.findAll().size();
+
+        List<CartLineOperationDTO> operations = List.of(
+            CartLineOperationDTO.update(line.getId(), 1),
+            CartLineOperationDTO.add(scarce.getId(), 2)
+        );
+        restCartMockMvc
+            .perform(
+                post(CART_LINES_BATCH_API_URL)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(operations))
+            )
+            .andExpect(status().isBadRequest());
+
+        assertThat(getProductQuantity(scarce.getId())).isEqualTo(1);
+        assertThat(getProductQuantity(plenty.getId())).isEqualTo(10);
+        assertThat(productCartRepository.findById(line.getId()).orElseThrow().getQuantity()).isEqualTo(2);
+        assertThat(productCartRepository.findAll()).hasSize(databaseSizeBeforeBatch);
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void applyCartLineOperationsOnUnknownLine() throws Exception {
+        createCartForCurrentUser();
+
+        List<CartLineOperationDTO> operations = List.of(CartLineOperationDTO.remove(Long.MAX_VALUE));
+        restCartMockMvc
+            .perform(
+                post(CART_LINES_BATCH_API_URL)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(operations))
+            )
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void addProductToCartTwiceWithSameIdempotencyKey() throws Exception {
+        createCartForCurrentUser();
+        Product product = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(10));
+        int databaseSizeBeforeCreate = productCartRepository.findAll().size();
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        restCartMockMvc
+            .perform(post(CART_LINE_API_URL_ID, product.getId()).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, idempotencyKey))
+            .andExpect(status().isCreated())
+            .andExpect(header().doesNotExist(IdempotencyFilter.IDEMPOTENT_REPLAYED_HEADER));
+        restCartMockMvc
+            .perform(post(CART_LINE_API_URL_ID, product.getId()).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, idempotencyKey))
+            .andExpect(status().isCreated())
+            .andExpect(header().string(IdempotencyFilter.IDEMPOTENT_REPLAYED_HEADER, "true"))
+            .andExpect(jsonPath("$.quantity").value(1));
+
+        assertThat(getProductQuantity(product.getId())).isEqualTo(9);
+        assertThat(productCartRepository.findAll()).hasSize(databaseSizeBeforeCreate + 1);
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void reuseIdempotencyKeyForAnotherProduct() throws Exception {
+        createCartForCurrentUser();
+        Product product = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(10));
+        Product otherProduct = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(10));
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        restCartMockMvc
+            .perform(post(CART_LINE_API_URL_ID, product.getId()).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, idempotencyKey))
+            .andExpect(status().isCreated());
+        restCartMockMvc
+            .perform(post(CART_LINE_API_URL_ID, otherProduct.getId()).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, idempotencyKey))
+            .andExpect(status().isUnprocessableEntity());
+
+        assertThat(getProductQuantity(otherProduct.getId())).isEqualTo(10);
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void retryRejectedFlashSaleProductWithSameIdempotencyKey() throws Exception {
+        createCartForCurrentUser();
+        Product product = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(10));
+        String idempotencyKey = UUID.randomUUID().toString();
+        flashSaleQueue.open(product.getId());
+        try {
+            restCartMockMvc
+                .perform(post(CART_LINE_API_URL_ID, product.getId()).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, idempotencyKey))
+                .andExpect(status().isTooManyRequests());
+        } finally {
+            flashSaleQueue.close(product.getId());
+        }
+
+        // The rejection was not stored, so the retry is executed
+        restCartMockMvc
+            .perform(post(CART_LINE_API_URL_ID, product.getId()).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, idempotencyKey))
+            .andExpect(status().isCreated())
+            .andExpect(header().doesNotExist(IdempotencyFilter.IDEMPOTENT_REPLAYED_HEADER));
+
+        assertThat(getProductQuantity(product.getId())).isEqualTo(9);
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(CART_USER_LOGIN)
+    void addFlashSaleProductToCart() throws Exception {
+        createCartForCurrentUser();
+        Product product = productRepository.saveAndFlush(ProductResourceIT.createEntity(em).quantity(10));
+        flashSaleQueue.open(product.getId());
+        try {
+            restCartMockMvc.perform(post(CART_LINE_API_URL_ID, product.getId())).andExpect(status().isTooManyRequests());
+
+            restCartMockMvc
+                .perform(post(FLASH_SALE_TICKETS_API_URL, product.getId()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.status").value(FlashSaleTicketDTO.Status.WAITING.toString()));
+            flashSaleQueue.admit();
+            restCartMockMvc.perform(post(CART_LINE_API_URL_ID, product.getId())).andExpect(status().isCreated());
+
+            assertThat(getProductQuantity(product.getId())).isEqualTo(9);
+        } finally {
+            flashSaleQueue.close(product.getId());
+        }
+    }
 }
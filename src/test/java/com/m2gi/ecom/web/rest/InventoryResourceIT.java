@@ -0,0 +1,115 @@
+package com.m2gi.ecom.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.m2gi.ecom.IntegrationTest;
+import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.security.AuthoritiesConstants;
+import com.m2gi.ecom.service.dto.StockReceiptDTO;
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for the {@link InventoryResource} REST controller.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+class InventoryResourceIT {
+
+    private static final String RECEIPTS_API_URL = "/api/inventory/receipts";
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private MockMvc restInventoryMockMvc;
+
+    private Product product;
+
+    private Product otherProduct;
+
+    @BeforeEach
+    public void initTest() {
+        product = ProductResourceIT.createEntity(em).quantity(5);
+        otherProduct = ProductResourceIT.createEntity(em).quantity(0);
+    }
+
+    @Test
+    @Transactional
+    void receiveStock() throws Exception {
+        productRepository.saveAndFlush(product);
+        productRepository.saveAndFlush(otherProduct);
+        List<StockReceiptDTO> receipts = List.of(
+            new StockReceiptDTO(product.getId(), 10),
+            new StockReceiptDTO(otherProduct.getId(), 3),
+            new StockReceiptDTO(product.getId(), 2)
+        );
+
+        restInventoryMockMvc
+            .perform(post(RECEIPTS_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(receipts)))
+            .andExpect(status().isOk())
+            .andExpect(content().string("2"));
+
+        assertThat(getProductQuantity(product.getId())).isEqualTo(17);
+        assertThat(getProductQuantity(otherProduct.getId())).isEqualTo(3);
+    }
+
+    @Test
+    @Transactional
+    void receiveStockWithUnknownProduct() throws Exception {
+        productRepository.saveAndFlush(product);
+        List<StockReceiptDTO> receipts = List.of(new StockReceiptDTO(product.getId(), 10), new StockReceiptDTO(Long.MAX_VALUE, 1));
+
+        restInventoryMockMvc
+            .perform(post(RECEIPTS_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(receipts)))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void receiveStockWithNegativeDelta() throws Exception {
+        productRepository.saveAndFlush(product);
+        List<StockReceiptDTO> receipts = List.of(new StockReceiptDTO(product.getId(), -1));
+
+        restInventoryMockMvc
+            .perform(post(RECEIPTS_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(receipts)))
+            .andExpect(status().isBadRequest());
+
+        assertThat(getProductQuantity(product.getId())).isEqualTo(5);
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser
+    void receiveStockAsUser() throws Exception {
+        productRepository.saveAndFlush(product);
+        List<StockReceiptDTO> receipts = List.of(new StockReceiptDTO(product.getId(), 10));
+
+        restInventoryMockMvc
+            .perform(post(RECEIPTS_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(receipts)))
+            .andExpect(status().isForbidden());
+
+        assertThat(getProductQuantity(product.getId())).isEqualTo(5);
+    }
+
+    private int getProductQuantity(Long productId) {
+        em.flush();
+        em.clear();
+        return productRepository.findById(productId).orElseThrow().getQuantity();
+    }
+}
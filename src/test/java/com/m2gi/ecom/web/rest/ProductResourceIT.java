@@ -2,21 +2,28 @@ package com.m2gi.ecom.web.rest;
 
 import static com.m2gi.ecom.web.rest.TestUtil.sameNumber;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.m2gi.ecom.IntegrationTest;
 import com.m2gi.ecom.domain.Product;
+import com.m2gi.ecom.domain.enumeration.Availability;
 import com.m2gi.ecom.domain.enumeration.WeightUnit;
 import com.m2gi.ecom.repository.ProductRepository;
+import com.m2gi.ecom.security.AuthoritiesConstants;
 import com.m2gi.ecom.service.ProductService;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import javax.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,9 +34,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithAnonymousUser;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -266,8 +276,8 @@ class ProductResourceIT {
             .andExpect(jsonPath("$.[*].id").value(hasItem(product.getId().intValue())))
             .andExpect(jsonPath("$.[*].name").value(hasItem(DEFAULT_NAME)))
             .andExpect(jsonPath("$.[*].description").value(hasItem(DEFAULT_DESCRIPTION)))
-            .andExpect(jsonPath("$.[*].quantity").value(hasItem(DEFAULT_QUANTITY)))
-            .andExpect(jsonPath("$.[*].version").value(hasItem(DEFAULT_VERSION.intValue())))
+            .andExpect(jsonPath("$.[*].availability").value(hasItem(Availability.LOW.toString())))
+            .andExpect(jsonPath("$.[*].quantity").value(hasItem(nullValue())))
             .andExpect(jsonPath("$.[*].origin").value(hasItem(DEFAULT_ORIGIN)))
             .andExpect(jsonPath("$.[*].brand").value(hasItem(DEFAULT_BRAND)))
             .andExpect(jsonPath("$.[*].imagePath").value(hasItem(DEFAULT_IMAGE_PATH)))
@@ -276,6 +286,81 @@ class ProductResourceIT {
             .andExpect(jsonPath("$.[*].weightUnit").value(hasItem(DEFAULT_WEIGHT_UNIT.toString())));
     }
 
+    @Test
+    @Transactional
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    void getAllProductsAsAdmin() throws Exception {
+        // Initialize the database
+        product = productRepository.saveAndFlush(product);
+
+        // The administrators manage the stock, so they get the quantities
+        restProductMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(product.getId().intValue())))
+            .andExpect(jsonPath("$.[*].quantity").value(hasItem(DEFAULT_QUANTITY)));
+    }
+
+    @Test
+    @Transactional
+    void getProductsByPages() throws Exception {
+        // The most expensive products, so that they come first
+        List<Product> products = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            products.add(productRepository.saveAndFlush(createEntity(em).price(new BigDecimal("999999990").add(BigDecimal.valueOf(i)))));
+        }
+
+        MvcResult firstPage = restProductMockMvc
+            .perform(get(ENTITY_API_URL + "?sortBy=price&sortOrder=DESC&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(products.get(2).getId().intValue(), products.get(1).getId().intValue())))
+            .andExpect(jsonPath("$.[*].availability").value(hasItem(Availability.LOW.toString())))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andReturn();
+        String cursor = firstPage.getResponse().getHeader(ProductResource.NEXT_CURSOR_HEADER);
+        assertThat(cursor).isNotNull();
+
+        restProductMockMvc
+            .perform(get(ENTITY_API_URL + "?sortBy=price&sortOrder=DESC&size=2&cursor=" + cursor))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].id").value(products.get(0).getId().intValue()));
+
+        // A cursor only applies to the sort it was given with
+        restProductMockMvc
+            .perform(get(ENTITY_API_URL + "?sortBy=name&sortOrder=ASC&size=2&cursor=" + cursor))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void getProductsWithInvalidCursor() throws Exception {
+        restProductMockMvc.perform(get(ENTITY_API_URL + "?size=2&cursor=invalid")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void getLastPageOfProducts() throws Exception {
+        product = productRepository.saveAndFlush(product);
+
+        restProductMockMvc
+            .perform(get(ENTITY_API_URL + "?size=" + Integer.MAX_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(product.getId().intValue())))
+            .andExpect(header().doesNotExist(ProductResource.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    @Transactional
+    void getProductsByPagesWithBlankQuery() throws Exception {
+        product = productRepository.saveAndFlush(product);
+
+        // A blank query is no research, so the products are paged by name
+        restProductMockMvc
+            .perform(get(ENTITY_API_URL + "?query=&size=" + Integer.MAX_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(product.getId().intValue())));
+    }
+
     @SuppressWarnings({ "unchecked" })
     void getAllProductsWithEagerRelationshipsIsEnabled() throws Exception {
         when(productServiceMock.findAllWithEagerRelationships(any())).thenReturn(new PageImpl(new ArrayList<>()));
@@ -318,6 +403,42 @@ class ProductResourceIT {
             .andExpect(jsonPath("$.weightUnit").value(DEFAULT_WEIGHT_UNIT.toString()));
     }
 
+    @Test
+    @Transactional
+    void streamProductStocks() throws Exception {
+        // Initialize the database
+        product = productRepository.saveAndFlush(product);
+
+        // The stream starts with the current stock of the product
+        restProductMockMvc
+            .perform(get(ENTITY_API_URL + "/stock-stream").param("ids", product.getId().toString()))
+            .andExpect(request().asyncStarted())
+            .andExpect(content().string(containsString("event:stock")))
+            .andExpect(content().string(containsString("\"productId\":" + product.getId())))
+            .andExpect(content().string(containsString("\"quantity\":" + DEFAULT_QUANTITY)));
+    }
+
+    @Test
+    @Transactional
+    @WithAnonymousUser
+    void streamProductStocksWithoutAuthentication() throws Exception {
+        // Initialize the database
+        product = productRepository.saveAndFlush(product);
+
+        // An EventSource cannot authenticate
+        restProductMockMvc
+            .perform(get(ENTITY_API_URL + "/stock-stream").param("ids", product.getId().toString()))
+            .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    @Transactional
+    void streamTooManyProductStocks() throws Exception {
+        String ids = LongStream.rangeClosed(1, 51).mapToObj(Long::toString).collect(Collectors.joining(","));
+
+        restProductMockMvc.perform(get(ENTITY_API_URL + "/stock-stream").param("ids", ids)).andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     void getNonExistingProduct() throws Exception {